@@ -0,0 +1,211 @@
+package me.wmh.clockprogress;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.TextView;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CustomListView和CustomRecyclerView的滚动对比测试
+ * <br>同样的数据，每帧滚动固定的距离，记录帧间隔，输出平均值、95分位和掉帧数
+ * <br>要求两者都确实滚动了，掉帧比例不超过上限，并且CustomRecyclerView的95分位不明显差于CustomListView
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class ScrollBenchmarkTest extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String TAG = "ScrollBenchmark";
+
+    private static final int ITEM_COUNT = 1000;
+    private static final int FRAME_COUNT = 300;
+    private static final int SCROLL_STEP_PX = 40;
+
+    /**
+     * 超过这个间隔(纳秒)的帧算作掉帧(60Hz下1.5帧)
+     */
+    private static final long JANK_THRESHOLD_NANOS = 25000000L;
+
+    /**
+     * 允许的最大掉帧比例
+     */
+    private static final double MAX_JANK_FRACTION = 0.1;
+
+    /**
+     * CustomRecyclerView的95分位帧间隔最多是CustomListView的多少倍(留出设备上的抖动)
+     */
+    private static final double P95_TOLERANCE = 1.5;
+
+    private String[] mItems;
+
+    public ScrollBenchmarkTest() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mItems = new String[ITEM_COUNT];
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            mItems[i] = "item " + i;
+        }
+    }
+
+    public void testScrollListViewVsRecyclerView() throws Exception {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+        final MainActivity activity = getActivity();
+
+        final CustomListView[] listView = new CustomListView[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                listView[0] = new CustomListView(activity);
+                listView[0].setAdapter(new ArrayAdapter<String>(activity, android.R.layout.simple_list_item_1, mItems));
+                activity.setContentView(listView[0]);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        long[] listFrames = runScroll(new Runnable() {
+            @Override
+            public void run() {
+                listView[0].smoothScrollBy(SCROLL_STEP_PX, 0);
+            }
+        });
+
+        final CustomRecyclerView[] recyclerView = new CustomRecyclerView[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                recyclerView[0] = new CustomRecyclerView(activity);
+                recyclerView[0].setAdapter(new TextAdapter(mItems));
+                activity.setContentView(recyclerView[0]);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        long[] recyclerFrames = runScroll(new Runnable() {
+            @Override
+            public void run() {
+                recyclerView[0].getRecyclerView().scrollBy(0, SCROLL_STEP_PX);
+            }
+        });
+
+        getInstrumentation().waitForIdleSync();
+        assertTrue("CustomListView did not scroll", listView[0].getFirstVisiblePosition() > 0);
+        LinearLayoutManager layoutManager =
+                (LinearLayoutManager) recyclerView[0].getRecyclerView().getLayoutManager();
+        assertTrue("CustomRecyclerView did not scroll", layoutManager.findFirstVisibleItemPosition() > 0);
+
+        long[] listStats = report("CustomListView", listFrames);
+        long[] recyclerStats = report("CustomRecyclerView", recyclerFrames);
+        assertTrue("CustomListView jank frames: " + listStats[1],
+                listStats[1] <= FRAME_COUNT * MAX_JANK_FRACTION);
+        assertTrue("CustomRecyclerView jank frames: " + recyclerStats[1],
+                recyclerStats[1] <= FRAME_COUNT * MAX_JANK_FRACTION);
+        assertTrue("CustomRecyclerView p95 " + recyclerStats[0] + "ns vs CustomListView " + listStats[0] + "ns",
+                recyclerStats[0] <= listStats[0] * P95_TOLERANCE);
+    }
+
+    /**
+     * 每帧执行一次滚动，返回每帧的间隔(纳秒)
+     */
+    private long[] runScroll(final Runnable scrollStep) throws InterruptedException {
+        final long[] frames = new long[FRAME_COUNT];
+        final CountDownLatch done = new CountDownLatch(1);
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private long mLastFrameNanos;
+                    private int mIndex = -1;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (mIndex >= 0) {
+                            frames[mIndex] = frameTimeNanos - mLastFrameNanos;
+                        }
+                        mLastFrameNanos = frameTimeNanos;
+                        mIndex++;
+                        if (mIndex < FRAME_COUNT) {
+                            scrollStep.run();
+                            Choreographer.getInstance().postFrameCallback(this);
+                        } else {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+        });
+        assertTrue("scroll benchmark timed out", done.await(60, TimeUnit.SECONDS));
+        return frames;
+    }
+
+    /**
+     * 输出统计结果
+     *
+     * @return {95分位帧间隔(纳秒), 掉帧数}
+     */
+    private long[] report(String name, long[] frames) {
+        long[] sorted = frames.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        int jank = 0;
+        for (long frame : sorted) {
+            total += frame;
+            if (frame > JANK_THRESHOLD_NANOS) {
+                jank++;
+            }
+        }
+        double meanMs = total / (double) sorted.length / 1000000.0;
+        double p95Ms = sorted[(int) (sorted.length * 0.95)] / 1000000.0;
+        Log.d(TAG, name + ": frames=" + sorted.length + " mean=" + meanMs + "ms p95=" + p95Ms
+                + "ms jank=" + jank);
+        return new long[]{sorted[(int) (sorted.length * 0.95)], jank};
+    }
+
+    private static class TextAdapter extends RecyclerView.Adapter<TextAdapter.Holder> {
+
+        private final String[] mItems;
+
+        TextAdapter(String[] items) {
+            mItems = items;
+        }
+
+        @Override
+        public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = View.inflate(parent.getContext(), android.R.layout.simple_list_item_1, null);
+            view.setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new Holder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(Holder holder, int position) {
+            holder.mText.setText(mItems[position]);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItems.length;
+        }
+
+        static class Holder extends RecyclerView.ViewHolder {
+            final TextView mText;
+
+            Holder(View itemView) {
+                super(itemView);
+                mText = (TextView) itemView.findViewById(android.R.id.text1);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package me.wmh.clockprogress;
+
+/**
+ * 下拉距离和秒针角度之间的换算(不依赖Android)
+ */
+public final class ClockAngles {
+
+    private ClockAngles() {
+    }
+
+    /**
+     * 每像素对应的角度，HeadView从隐藏拉到刚好完全显示时秒针正好转一周
+     *
+     * @param defaultPadding HeadView隐藏时的paddingTop(负数)
+     * @return
+     */
+    public static double ratioFor(int defaultPadding) {
+        return -360.0 / defaultPadding;
+    }
+
+    /**
+     * 根据下拉距离计算秒针角度
+     *
+     * @param ratio ratioFor的返回值
+     * @param defaultPadding 默认距离
+     * @param currentPadding 实际距离
+     * @param resolution 量化的步长(度)，小于等于0时不量化
+     * @return
+     */
+    public static float pullDegree(double ratio, int defaultPadding, int currentPadding, float resolution) {
+        return quantize((float) (-ratio * (defaultPadding - currentPadding)), resolution);
+    }
+
+    /**
+     * 按步长量化角度
+     *
+     * @param degree 角度
+     * @param resolution 步长，小于等于0时不量化
+     * @return 量化后的角度
+     */
+    public static float quantize(float degree, float resolution) {
+        if (resolution <= 0) {
+            return degree;
+        }
+        return Math.round(degree / resolution) * resolution;
+    }
+}
@@ -0,0 +1,91 @@
+package me.wmh.clockprogress;
+
+/**
+ * 表针动画引擎
+ * <br>运行时注册到进程共享的FrameTicker，多个表同时转动时每个vsync也只有一次帧回调。
+ * <br>停止后从FrameTicker取消注册，不会让UI线程一直重绘。
+ */
+public class ClockAnimator implements FrameTicker.OnTickListener {
+
+    /**
+     * 帧回调
+     */
+    public interface OnFrameListener {
+        /**
+         * 每帧回调一次，此时kinematics里的角度已经按当前时间更新
+         * @param kinematics 表针运动学
+         */
+        void onFrame(ClockKinematics kinematics);
+    }
+
+    private final ClockKinematics kinematics = new ClockKinematics();
+    private final OnFrameListener listener;
+    private TimeSource timeSource = TimeSource.SYSTEM;
+    private final FrameTicker ticker = FrameTicker.getInstance();
+
+    /**
+     * 动画是否在运行
+     */
+    private boolean running = false;
+
+    public ClockAnimator(OnFrameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 设置时间源，用于测试
+     * @param timeSource 时间源，为null时使用系统时间
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        this.timeSource = timeSource == null ? TimeSource.SYSTEM : timeSource;
+    }
+
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    public ClockKinematics getKinematics() {
+        return kinematics;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 开始动画，表针从零开始转动
+     */
+    public void start() {
+        kinematics.start(timeSource.nanoTime());
+        running = true;
+        ticker.add(this);
+    }
+
+    /**
+     * 继续之前停止的动画，不重置开始时间，表针角度仍按开始后经过的时间计算
+     */
+    public void resume() {
+        running = true;
+        ticker.add(this);
+    }
+
+    /**
+     * 停止动画并从FrameTicker取消注册
+     */
+    public void stop() {
+        running = false;
+        ticker.remove(this);
+    }
+
+    /**
+     * 处理一帧：按当前时间计算角度，通知监听者
+     */
+    @Override
+    public void onTick(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        kinematics.update(timeSource.nanoTime());
+        listener.onFrame(kinematics);
+    }
+}
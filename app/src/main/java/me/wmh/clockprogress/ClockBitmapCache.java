@@ -0,0 +1,461 @@
+package me.wmh.clockprogress;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.LruCache;
+import android.util.SparseArray;
+import android.util.TypedValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * 进程内共享的时钟图片缓存
+ * <br>以(资源id, 目标宽, 目标高)为key，每个尺寸只解码一次，所有ClockProgress实例共用。
+ * <br>有view正在使用的图片单独保存，不会被淘汰；不再被任何view使用的图片留在按字节数限制的LRU缓存里，
+ * 同一尺寸再次使用时不用重新解码，超出预算时淘汰最久未使用的图片。
+ * <br>图片直接解码到目标尺寸：先只读取宽高，再用inSampleSize和密度缩放一次解码出来，不保留原始尺寸的图片。
+ * <br>被淘汰的图片放进复用池，API 19以上解码新尺寸时通过inBitmap复用它们的内存。
+ */
+public class ClockBitmapCache {
+
+    /**
+     * 默认内存预算占最大堆内存的比例(1/32)
+     */
+    private static final int DEFAULT_BUDGET_DIVIDER = 32;
+
+    /**
+     * 复用池占内存预算的比例(1/4)
+     */
+    private static final int POOL_BUDGET_DIVIDER = 4;
+
+    private static ClockBitmapCache sInstance;
+
+    /**
+     * 有view正在使用的图片，引用计数大于0，不参与淘汰
+     */
+    private final HashMap<Key, Entry> mInUse = new HashMap<Key, Entry>();
+    private int mInUseBytes = 0;
+
+    /**
+     * 没有view使用的图片，超出预算时淘汰到复用池
+     */
+    private final LruCache<Key, Entry> mCache;
+
+    /**
+     * 用于查找的key，避免每次查找都创建对象(只在持有锁时使用)
+     */
+    private final Key mLookupKey = new Key(0, 0, 0);
+
+    /**
+     * 按屏幕密度缩放后的原图宽高，只读取过文件头，没有解码像素
+     */
+    private final SparseArray<int[]> mSourceSizes = new SparseArray<int[]>();
+
+    /**
+     * 不透明的资源，解码为RGB_565
+     */
+    private final SparseArray<Boolean> mOpaqueResources = new SparseArray<Boolean>();
+
+    /**
+     * 可以通过inBitmap复用的图片
+     */
+    private final ArrayList<Bitmap> mPool = new ArrayList<Bitmap>();
+    private final int mMaxPoolBytes;
+    private int mPoolBytes = 0;
+
+    private int mDecodeCount = 0;
+    private int mReuseCount = 0;
+
+    /**
+     * 获取共享的缓存
+     * @return
+     */
+    public static synchronized ClockBitmapCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new ClockBitmapCache(defaultBudget());
+        }
+        return sInstance;
+    }
+
+    /**
+     * 设置缓存的内存预算，之前缓存的图片会被丢弃
+     * <br>需要在ClockProgress创建前调用
+     * @param maxBytes 最大字节数
+     */
+    public static synchronized void setMemoryBudget(int maxBytes) {
+        if (sInstance != null) {
+            sInstance.clear();
+        }
+        sInstance = new ClockBitmapCache(maxBytes);
+    }
+
+    private static int defaultBudget() {
+        return (int) (Runtime.getRuntime().maxMemory() / DEFAULT_BUDGET_DIVIDER);
+    }
+
+    ClockBitmapCache(int maxBytes) {
+        mMaxPoolBytes = maxBytes / POOL_BUDGET_DIVIDER;
+        mCache = new LruCache<Key, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Entry value) {
+                return value.bytes;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Key key, Entry oldValue, Entry newValue) {
+                // 只有被淘汰的图片进复用池，重新被使用时是从这里移到mInUse
+                if (evicted) {
+                    addToPool(oldValue.bitmap);
+                }
+            }
+        };
+    }
+
+    /**
+     * 标记不透明的图片资源，之后按RGB_565解码，内存减半
+     * <br>需要在第一次getScaled之前调用；自带的bg_clock四角是透明的，不能这样解码
+     * @param resId 图片资源id
+     */
+    public synchronized void setOpaqueResource(int resId) {
+        mOpaqueResources.put(resId, Boolean.TRUE);
+    }
+
+    /**
+     * 原图按屏幕密度缩放后的宽度，只读取文件头
+     * @param res Resources
+     * @param resId 图片资源id
+     * @return
+     */
+    public synchronized int getSourceWidth(Resources res, int resId) {
+        return getSourceSize(res, resId)[0];
+    }
+
+    /**
+     * 原图按屏幕密度缩放后的高度，只读取文件头
+     * @param res Resources
+     * @param resId 图片资源id
+     * @return
+     */
+    public synchronized int getSourceHeight(Resources res, int resId) {
+        return getSourceSize(res, resId)[1];
+    }
+
+    private int[] getSourceSize(Resources res, int resId) {
+        int[] size = mSourceSizes.get(resId);
+        if (size == null) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            options.inScaled = false;
+            BitmapFactory.decodeResource(res, resId, options);
+            // 和decodeResource一样按资源所在目录的密度换算到屏幕密度
+            TypedValue value = new TypedValue();
+            res.getValue(resId, value, true);
+            int density = value.density;
+            if (density == TypedValue.DENSITY_DEFAULT) {
+                density = 160;
+            }
+            int targetDensity = res.getDisplayMetrics().densityDpi;
+            if (density == TypedValue.DENSITY_NONE || density == targetDensity) {
+                size = new int[]{options.outWidth, options.outHeight};
+            } else {
+                float scale = targetDensity / (float) density;
+                size = new int[]{(int) (options.outWidth * scale + 0.5f), (int) (options.outHeight * scale + 0.5f)};
+            }
+            mSourceSizes.put(resId, size);
+        }
+        return size;
+    }
+
+    /**
+     * 获取指定大小的图片，没有缓存时直接解码到这个大小
+     * <br>不再使用时调用release，图片内存可以被其它尺寸复用
+     * @param res Resources
+     * @param resId 图片资源id
+     * @param width 目标宽度
+     * @param height 目标高度
+     * @return
+     */
+    public synchronized Bitmap getScaled(Resources res, int resId, int width, int height) {
+        mLookupKey.set(resId, width, height);
+        Entry entry = mInUse.get(mLookupKey);
+        if (entry == null) {
+            entry = mCache.remove(mLookupKey);
+            if (entry == null) {
+                Bitmap.Config config = mOpaqueResources.get(resId) != null
+                        ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+                entry = new Entry(new Key(resId, width, height),
+                        decodeScaled(res, resId, width, height, config));
+            }
+            mInUse.put(entry.key, entry);
+            mInUseBytes += entry.bytes;
+        }
+        entry.refCount++;
+        return entry.bitmap;
+    }
+
+    /**
+     * 一次解码到目标尺寸
+     * <br>inSampleSize取不小于目标尺寸的最大2的幂，剩下的比例用inDensity/inTargetDensity在解码时缩放
+     */
+    private Bitmap decodeScaled(Resources res, int resId, int width, int height, Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        decodeResource(res, resId, options);
+        int sampleSize = sampleSizeFor(options.outWidth, options.outHeight, width, height);
+        int sampledWidth = Math.max(1, options.outWidth / sampleSize);
+
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        // 采样后的宽度作为图片密度、目标宽度作为目标密度，解码时直接缩放到目标宽度
+        options.inScaled = true;
+        options.inDensity = sampledWidth;
+        options.inTargetDensity = width;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            options.inBitmap = takeFromPool(width, height, config);
+        }
+
+        Bitmap bitmap;
+        try {
+            bitmap = decodeResource(res, resId, options);
+        } catch (IllegalArgumentException e) {
+            // 复用失败时重新分配内存
+            options.inBitmap = null;
+            bitmap = decodeResource(res, resId, options);
+        }
+        if (options.inBitmap != null && bitmap == options.inBitmap) {
+            mReuseCount++;
+        }
+        mDecodeCount++;
+
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            // 宽高比例和原图不同时才需要再缩放一次
+            Bitmap exact = Bitmap.createScaledBitmap(bitmap, width, height, true);
+            if (exact != bitmap) {
+                bitmap.recycle();
+                bitmap = exact;
+            }
+        }
+        // 按屏幕密度绘制，不让Canvas再按图片密度缩放
+        bitmap.setDensity(res.getDisplayMetrics().densityDpi);
+        return bitmap;
+    }
+
+    /**
+     * 解码资源，测试时替换成不依赖图片文件的实现
+     */
+    Bitmap decodeResource(Resources res, int resId, BitmapFactory.Options options) {
+        return BitmapFactory.decodeResource(res, resId, options);
+    }
+
+    /**
+     * 不小于目标尺寸的最大采样率(2的幂)
+     * @param srcWidth 原图宽
+     * @param srcHeight 原图高
+     * @param width 目标宽
+     * @param height 目标高
+     * @return
+     */
+    static int sampleSizeFor(int srcWidth, int srcHeight, int width, int height) {
+        int sampleSize = 1;
+        while (srcWidth / (sampleSize * 2) >= width && srcHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 一个view不再使用getScaled返回的图片，例如重新测量后换了尺寸
+     * <br>没有view使用时图片移回LRU缓存，之后随时可能被淘汰到复用池
+     * <br>进复用池后内存可能马上被解码覆盖，所以调用前这个view必须已经不再绘制它(绘制线程要先确认)
+     * @param resId 图片资源id
+     * @param width 宽度
+     * @param height 高度
+     */
+    public synchronized void release(int resId, int width, int height) {
+        mLookupKey.set(resId, width, height);
+        Entry entry = mInUse.get(mLookupKey);
+        if (entry == null) {
+            return;
+        }
+        entry.refCount--;
+        if (entry.refCount == 0) {
+            mInUse.remove(entry.key);
+            mInUseBytes -= entry.bytes;
+            // 超出预算时put会通过entryRemoved把最久未使用的图片放进复用池
+            mCache.put(entry.key, entry);
+        }
+    }
+
+    /**
+     * 从复用池中取出能装下目标尺寸的最小的图片
+     */
+    private Bitmap takeFromPool(int width, int height, Bitmap.Config config) {
+        int needed = width * height * (config == Bitmap.Config.RGB_565 ? 2 : 4);
+        int best = -1;
+        for (int i = 0; i < mPool.size(); i++) {
+            Bitmap candidate = mPool.get(i);
+            int bytes = candidate.getAllocationByteCount();
+            if (candidate.getConfig() == config && bytes >= needed
+                    && (best < 0 || bytes < mPool.get(best).getAllocationByteCount())) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        Bitmap bitmap = mPool.remove(best);
+        mPoolBytes -= bitmap.getAllocationByteCount();
+        return bitmap;
+    }
+
+    private void addToPool(Bitmap bitmap) {
+        // config未知的图片takeFromPool永远不会选中
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT
+                || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null) {
+            return;
+        }
+        int bytes = bitmap.getAllocationByteCount();
+        if (bytes > mMaxPoolBytes) {
+            return;
+        }
+        while (mPoolBytes + bytes > mMaxPoolBytes && !mPool.isEmpty()) {
+            mPoolBytes -= mPool.remove(0).getAllocationByteCount();
+        }
+        mPool.add(bitmap);
+        mPoolBytes += bytes;
+    }
+
+    /**
+     * 清空没有view使用的缓存和复用池，正在使用的图片不受影响
+     */
+    public synchronized void clear() {
+        mCache.evictAll();
+        mPool.clear();
+        mPoolBytes = 0;
+    }
+
+    /**
+     * 当前缓存占用的字节数，包括正在使用的图片
+     * @return
+     */
+    public synchronized int size() {
+        return mInUseBytes + mCache.size();
+    }
+
+    /**
+     * 正在被view使用的图片占用的字节数
+     * @return
+     */
+    public synchronized int inUseSize() {
+        return mInUseBytes;
+    }
+
+    /**
+     * 指定尺寸的图片正在被多少个view使用
+     * @return
+     */
+    synchronized int getRefCount(int resId, int width, int height) {
+        mLookupKey.set(resId, width, height);
+        Entry entry = mInUse.get(mLookupKey);
+        return entry == null ? 0 : entry.refCount;
+    }
+
+    public synchronized int maxSize() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * 复用池占用的字节数
+     * @return
+     */
+    public synchronized int poolSize() {
+        return mPoolBytes;
+    }
+
+    /**
+     * 到目前为止解码的次数
+     * @return
+     */
+    public synchronized int getDecodeCount() {
+        return mDecodeCount;
+    }
+
+    /**
+     * 复用了池中图片内存的次数
+     * @return
+     */
+    public synchronized int getReuseCount() {
+        return mReuseCount;
+    }
+
+    /**
+     * 图片占用的字节数，config不是公开格式(getConfig返回null)时按ARGB_8888估算
+     */
+    private static int byteCountOf(Bitmap bitmap) {
+        if (bitmap.getConfig() == null) {
+            return bitmap.getWidth() * bitmap.getHeight() * 4;
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * 缓存的图片和正在使用它的view数量
+     */
+    private static final class Entry {
+        final Key key;
+        final Bitmap bitmap;
+        final int bytes;
+        int refCount;
+
+        Entry(Key key, Bitmap bitmap) {
+            this.key = key;
+            this.bitmap = bitmap;
+            this.bytes = byteCountOf(bitmap);
+        }
+    }
+
+    /**
+     * 缓存的key：资源id + 目标宽高
+     */
+    private static final class Key {
+        private int resId;
+        private int width;
+        private int height;
+
+        Key(int resId, int width, int height) {
+            set(resId, width, height);
+        }
+
+        void set(int resId, int width, int height) {
+            this.resId = resId;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return resId == other.resId && width == other.width && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resId;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return result;
+        }
+    }
+}
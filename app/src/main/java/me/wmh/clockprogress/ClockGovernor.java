@@ -0,0 +1,209 @@
+package me.wmh.clockprogress;
+
+/**
+ * 表针动画的省电控制(不依赖Android)
+ * <br>表针在看不到的时候(离开窗口、窗口不可见、view不可见、HeadView滚出屏幕)暂停，不再注册帧回调；
+ * 重新可见时继续，角度仍按开始后经过的时间计算。
+ * <br>可以限制最大帧率，省电模式下使用单独的上限；统计因为暂停和限帧而少画的帧数。
+ */
+public class ClockGovernor {
+
+    /**
+     * 不限制帧率
+     */
+    public static final int UNLIMITED = 0;
+
+    /**
+     * 省电模式下默认的最大帧率
+     */
+    public static final int DEFAULT_POWER_SAVE_MAX_FPS = 15;
+
+    /**
+     * 估算暂停期间少画的帧数时使用的帧间隔(60Hz)
+     */
+    private static final long NOMINAL_FRAME_NANOS = 1000000000L / 60;
+
+    /**
+     * 限帧时允许的提前量：帧回调的时间有抖动，差不到这么多也算到了下一帧
+     */
+    private static final long FRAME_TOLERANCE_NANOS = 4000000L;
+
+    private boolean mRequested = false;
+    private boolean mAttached = false;
+    private boolean mWindowVisible = true;
+    private boolean mShown = true;
+    private boolean mOnScreen = true;
+    private boolean mPowerSave = false;
+
+    private int mMaxFps = UNLIMITED;
+    private int mPowerSaveMaxFps = DEFAULT_POWER_SAVE_MAX_FPS;
+
+    /**
+     * 开始暂停的时间，没有暂停时为-1
+     */
+    private long mPausedSinceNanos = -1;
+
+    /**
+     * 上一次绘制的时间，-1表示下一帧一定绘制
+     */
+    private long mLastRenderNanos = -1;
+
+    private long mPausedNanos = 0;
+    private int mCappedFrameCount = 0;
+    private int mRenderedFrameCount = 0;
+
+    /**
+     * 是否需要转动(开始/停止自动转动)
+     */
+    public void setRequested(boolean requested, long nowNanos) {
+        if (requested && !mRequested) {
+            mLastRenderNanos = -1;
+        }
+        mRequested = requested;
+        update(nowNanos);
+    }
+
+    public void setAttached(boolean attached, long nowNanos) {
+        mAttached = attached;
+        update(nowNanos);
+    }
+
+    public void setWindowVisible(boolean windowVisible, long nowNanos) {
+        mWindowVisible = windowVisible;
+        update(nowNanos);
+    }
+
+    /**
+     * view和所有上层view是否都是VISIBLE
+     */
+    public void setShown(boolean shown, long nowNanos) {
+        mShown = shown;
+        update(nowNanos);
+    }
+
+    /**
+     * HeadView是否在屏幕内，由列表在滚动时设置
+     */
+    public void setOnScreen(boolean onScreen, long nowNanos) {
+        mOnScreen = onScreen;
+        update(nowNanos);
+    }
+
+    public boolean isOnScreen() {
+        return mOnScreen;
+    }
+
+    public void setPowerSave(boolean powerSave) {
+        mPowerSave = powerSave;
+    }
+
+    /**
+     * 设置最大帧率
+     * @param maxFps 每秒帧数，UNLIMITED表示每个vsync都绘制
+     */
+    public void setMaxFps(int maxFps) {
+        mMaxFps = Math.max(UNLIMITED, maxFps);
+    }
+
+    /**
+     * 设置省电模式下的最大帧率
+     * @param maxFps 每秒帧数，UNLIMITED表示和普通模式一样
+     */
+    public void setPowerSaveMaxFps(int maxFps) {
+        mPowerSaveMaxFps = Math.max(UNLIMITED, maxFps);
+    }
+
+    /**
+     * 是否应该运行动画(需要转动并且看得到)
+     */
+    public boolean shouldRun() {
+        return mRequested && isVisible();
+    }
+
+    /**
+     * 是否看得到(已经attach、窗口可见、view可见并且在屏幕内)
+     */
+    public boolean isVisible() {
+        return mAttached && mWindowVisible && mShown && mOnScreen;
+    }
+
+    private void update(long nowNanos) {
+        boolean paused = mRequested && !isVisible();
+        if (paused && mPausedSinceNanos < 0) {
+            mPausedSinceNanos = nowNanos;
+        } else if (!paused && mPausedSinceNanos >= 0) {
+            mPausedNanos += Math.max(0, nowNanos - mPausedSinceNanos);
+            mPausedSinceNanos = -1;
+            // 恢复后第一帧马上绘制到当前角度
+            mLastRenderNanos = -1;
+        }
+    }
+
+    /**
+     * 当前生效的帧率上限
+     */
+    public int getEffectiveMaxFps() {
+        if (mPowerSave && mPowerSaveMaxFps != UNLIMITED) {
+            return mMaxFps == UNLIMITED ? mPowerSaveMaxFps : Math.min(mMaxFps, mPowerSaveMaxFps);
+        }
+        return mMaxFps;
+    }
+
+    /**
+     * 每帧调用，判断这一帧是否需要绘制
+     * @param frameTimeNanos 这一帧的时间
+     * @return false表示因为限帧跳过
+     */
+    public boolean shouldRender(long frameTimeNanos) {
+        int maxFps = getEffectiveMaxFps();
+        if (maxFps != UNLIMITED && mLastRenderNanos >= 0
+                && frameTimeNanos - mLastRenderNanos < 1000000000L / maxFps - FRAME_TOLERANCE_NANOS) {
+            mCappedFrameCount++;
+            return false;
+        }
+        mLastRenderNanos = frameTimeNanos;
+        mRenderedFrameCount++;
+        return true;
+    }
+
+    /**
+     * 因为限帧跳过的帧数
+     */
+    public int getCappedFrameCount() {
+        return mCappedFrameCount;
+    }
+
+    /**
+     * 暂停期间按60Hz估算少画的帧数
+     */
+    public long getPausedFrameCount(long nowNanos) {
+        long paused = mPausedNanos;
+        if (mPausedSinceNanos >= 0) {
+            paused += Math.max(0, nowNanos - mPausedSinceNanos);
+        }
+        return paused / NOMINAL_FRAME_NANOS;
+    }
+
+    /**
+     * 一共少画的帧数(暂停 + 限帧)
+     */
+    public long getSavedFrameCount(long nowNanos) {
+        return getPausedFrameCount(nowNanos) + mCappedFrameCount;
+    }
+
+    public int getRenderedFrameCount() {
+        return mRenderedFrameCount;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void resetCounts(long nowNanos) {
+        mPausedNanos = 0;
+        if (mPausedSinceNanos >= 0) {
+            mPausedSinceNanos = nowNanos;
+        }
+        mCappedFrameCount = 0;
+        mRenderedFrameCount = 0;
+    }
+}
@@ -0,0 +1,43 @@
+package me.wmh.clockprogress;
+
+/**
+ * HeadView中的表需要支持的操作
+ * <br>CustomListView和CustomRecyclerView只通过这个接口使用表，list_header_view.xml中可以换成ClockProgress或ClockSurfaceView
+ */
+public interface ClockIndicator {
+
+    /**
+     * 下拉时根据headerview的距离顶部的高度来设置秒针的旋转角度
+     * @param defaultPadding 默认距离
+     * @param currentPadding 实际距离
+     */
+    void setClockByPaddingTop(int defaultPadding, int currentPadding);
+
+    /**
+     * 开始自动转动表针
+     */
+    void setStartAutoRotate();
+
+    /**
+     * 停止转动，表针归零
+     */
+    void setClockToZero();
+
+    /**
+     * 显示确定的进度，可以在任意线程调用
+     * @param progress 0~1
+     */
+    void setProgress(float progress);
+
+    /**
+     * 是否正在自动转动表针
+     * @return
+     */
+    boolean isAutoRotating();
+
+    /**
+     * HeadView是否在屏幕内，滚出屏幕时暂停动画
+     * @param onScreen
+     */
+    void setOnScreen(boolean onScreen);
+}
@@ -0,0 +1,83 @@
+package me.wmh.clockprogress;
+
+/**
+ * 表针运动学计算(不依赖Android，可以直接在JVM上测试)
+ * <br>表针角度由动画开始后经过的时间计算，而不是按帧累加，所以在60/90/120Hz的屏幕上转速一致
+ */
+public class ClockKinematics {
+
+    /**
+     * 一秒的纳秒数
+     */
+    public static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * 秒针每秒旋转的角度(原先每帧3度，按60帧计算)
+     */
+    public static final float SECOND_DEGREES_PER_SECOND = 180f;
+
+    /**
+     * 分针每秒旋转的角度(原先每帧0.25度，按60帧计算)
+     */
+    public static final float MINUTE_DEGREES_PER_SECOND = 15f;
+
+    /**
+     * 动画开始的时间
+     */
+    private long startNanos;
+
+    /**
+     * 秒针旋转的角度
+     */
+    private float secondDegree = 0;
+    /**
+     * 分针旋转的角度
+     */
+    private float minuteDegree = 0;
+
+    /**
+     * 从指定时间开始计时，表针归零
+     * @param nowNanos 当前时间
+     */
+    public void start(long nowNanos) {
+        startNanos = nowNanos;
+        secondDegree = 0;
+        minuteDegree = 0;
+    }
+
+    /**
+     * 根据当前时间更新表针角度
+     * @param nowNanos 当前时间
+     */
+    public void update(long nowNanos) {
+        long elapsed = nowNanos - startNanos;
+        if (elapsed < 0) {
+            elapsed = 0;
+        }
+        double seconds = (double) elapsed / NANOS_PER_SECOND;
+        secondDegree = degreesAt(seconds, SECOND_DEGREES_PER_SECOND);
+        minuteDegree = degreesAt(seconds, MINUTE_DEGREES_PER_SECOND);
+    }
+
+    /**
+     * 计算经过一段时间后的角度，结果在[0,360)之间
+     * @param seconds 经过的秒数
+     * @param degreesPerSecond 每秒旋转的角度
+     * @return 角度
+     */
+    public static float degreesAt(double seconds, float degreesPerSecond) {
+        return (float) ((seconds * degreesPerSecond) % 360.0);
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public float getSecondDegree() {
+        return secondDegree;
+    }
+
+    public float getMinuteDegree() {
+        return minuteDegree;
+    }
+}
@@ -1,13 +1,24 @@
 package me.wmh.clockprogress;
 
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.ColorFilter;
 import android.graphics.Matrix;
-import android.graphics.drawable.BitmapDrawable;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.os.Build;
 import android.os.Handler;
-import android.os.Message;
+import android.os.Looper;
+import android.os.PowerManager;
 import android.util.AttributeSet;
 import android.view.View;
 
@@ -16,7 +27,66 @@ import java.text.DecimalFormat;
 /**
  * Created by Jeremy on 2015/2/4.
  */
-public class ClockProgress extends View {
+public class ClockProgress extends View implements ClockIndicator {
+
+    /**
+     * 使用图片绘制表盘和表针
+     */
+    public static final int RENDER_MODE_BITMAP = 0;
+
+    /**
+     * 使用Path绘制表盘和表针，不需要解码图片
+     */
+    public static final int RENDER_MODE_VECTOR = 1;
+
+    /**
+     * 矢量模式下的默认大小(dp)
+     */
+    private static final int DEFAULT_VECTOR_SIZE_DP = 40;
+
+    /**
+     * 表针扫过的范围的半径与表盘半径的比例(包括秒针末端的圆环和线宽)
+     */
+    private static final float HAND_SWEEP_RADIUS = 0.72f;
+
+    /**
+     * 默认的角度量化单位(度)
+     */
+    public static final float DEFAULT_ANGLE_RESOLUTION = 1f;
+
+    /**
+     * <p/>0:RENDER_MODE_BITMAP;
+     * <p/>1:RENDER_MODE_VECTOR;
+     */
+    private int renderMode = RENDER_MODE_BITMAP;
+
+    /**
+     * 矢量模式的绘制
+     */
+    private ClockVectorRenderer vectorRenderer;
+
+    /**
+     * 静态的表盘图层：图片模式下是缩放后的背景图；矢量模式下为null，刻度直接用Path绘制，不占图片内存
+     */
+    private Bitmap dialLayer;
+
+    /**
+     * 把表盘画在view的背景里
+     * <br>硬件加速时背景有自己的显示列表，表针转动invalidate只重新录制onDraw中的表针，表盘的绘制命令直接复用；
+     * 只有尺寸或绘制方式变化时才通过invalidateSelf重新录制表盘
+     */
+    private DialDrawable dialDrawable;
+
+    /**
+     * 布局或者setBackground设置的背景，画在表盘下面
+     * <br>View的构造函数中就会设置，不能有初始值
+     */
+    private Drawable userBackground;
+
+    /**
+     * 表针扫过的区域，软件绘制时转动只刷新这个区域
+     */
+    private final Rect handsDirtyRect = new Rect();
 
     /**
      * 时钟背景图片
@@ -31,6 +101,19 @@ public class ClockProgress extends View {
      */
     private Bitmap bitmapClockSecond;
 
+    /**
+     * 共享的图片缓存
+     */
+    private ClockBitmapCache bitmapCache;
+    /**
+     * 当前图片缩放到的宽度
+     */
+    private int scaledWidth = -1;
+    /**
+     * 当前图片缩放到的高度
+     */
+    private int scaledHeight = -1;
+
     /**
      * 用于旋转分针的Matrix
      */
@@ -61,11 +144,25 @@ public class ClockProgress extends View {
     private float minuteDegree = 0;
 
     /**
-     * 旋转动画的handle信息
+     * 表针旋转动画，由帧回调驱动，角度按经过的时间计算
+     */
+    private ClockAnimator animator;
+
+    /**
+     * 看不到时暂停动画，限制帧率
      */
-    private final int CLOCK_ROTATE = 1;
+    private ClockGovernor governor;
 
-    private Message msg;
+    /**
+     * 监听省电模式的变化，attach期间注册(只有API 21以上注册)
+     */
+    private final BroadcastReceiver powerSaveReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            updatePowerSave();
+        }
+    };
+    private boolean powerSaveReceiverRegistered = false;
 
     /**
      * 秒针旋转的中心点x坐标
@@ -98,66 +195,173 @@ public class ClockProgress extends View {
      */
     private double ratio = 0.00;
 
+    /**
+     * 计算ratio时使用的默认距离，没有变化时不重新计算
+     */
+    private int ratioPadding = 0;
+
+    /**
+     * 下拉时秒针角度的最小变化单位(度)，角度量化后没有变化就不重绘
+     */
+    private float angleResolution = DEFAULT_ANGLE_RESOLUTION;
+
+    /**
+     * 是否处于确定进度模式：秒针按setProgress设置的进度转动，不自动转动
+     */
+    private boolean determinate = false;
+
+    /**
+     * 当前显示的进度(0~1)
+     */
+    private float progress = 0;
+
+    /**
+     * 工作线程写入的最新进度，每帧最多取一次
+     */
+    private final ProgressSlot progressSlot = new ProgressSlot();
+
+    /**
+     * 把工作线程的进度转到UI线程
+     */
+    private Handler mainHandler;
+
+    /**
+     * 在UI线程注册progressTick，下一帧再取进度
+     */
+    private Runnable progressPoster;
+
+    /**
+     * 只监听一帧的FrameTicker回调，取出最新进度后立即取消注册
+     */
+    private FrameTicker.OnTickListener progressTick;
+
+    /**
+     * 因为角度和状态没有变化而跳过的重绘次数
+     */
+    private int skippedRedrawCount = 0;
+    /**
+     * 实际执行的重绘次数
+     */
+    private int performedRedrawCount = 0;
+
     public ClockProgress(Context context) {
         super(context);
-        init();
+        init(null);
     }
 
     public ClockProgress(Context context, AttributeSet attrs) {
         super(context, attrs);
-        init();
+        init(attrs);
     }
 
     public ClockProgress(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        init();
+        init(attrs);
     }
 
     /**
      * 初始化相关
      */
-    private void init() {
-        bitmapClockBackground = ((BitmapDrawable) getResources().getDrawable(R.drawable.bg_clock)).getBitmap();
-        bitmapClockMinute = ((BitmapDrawable) getResources().getDrawable(R.drawable.bg_clock_minute)).getBitmap();
-        bitmapClockSecond = ((BitmapDrawable) getResources().getDrawable(R.drawable.bg_clock_second)).getBitmap();
-
-        DEFAULT_VIEW_WIDTH = bitmapClockBackground.getWidth();
-        DEFAULT_VIEW_HEIGHT = bitmapClockBackground.getHeight();
+    private void init(AttributeSet attrs) {
+        if (attrs != null) {
+            TypedArray a = getContext().obtainStyledAttributes(attrs, R.styleable.ClockProgress);
+            renderMode = a.getInt(R.styleable.ClockProgress_renderMode, RENDER_MODE_BITMAP);
+            a.recycle();
+        }
+        bitmapCache = ClockBitmapCache.getInstance();
+        dialDrawable = new DialDrawable();
+        applyBackground();
+        applyRenderMode();
 
         matrixMinute = new Matrix();
         matrixSecond = new Matrix();
         matrixSecondManual = new Matrix();
-        msg = new Message();
+        governor = new ClockGovernor();
+        animator = new ClockAnimator(new ClockAnimator.OnFrameListener() {
+            @Override
+            public void onFrame(ClockKinematics kinematics) {
+                if (!governor.shouldRender(now())) {
+                    // 限帧跳过这一帧，下一次绘制时角度仍按时间计算
+                    return;
+                }
+                minuteDegree = kinematics.getMinuteDegree();
+                secondDegree = kinematics.getSecondDegree();
+                setMinuteMatrix(minuteDegree, rotateMinuteX, rotateMinuteY);
+                setSecondMatrix(secondDegree, rotateSecondX, rotateSecondY);
+                invalidateHands();
+            }
+        });
+        mainHandler = new Handler(Looper.getMainLooper());
+        progressTick = new FrameTicker.OnTickListener() {
+            @Override
+            public void onTick(long frameTimeNanos) {
+                FrameTicker.getInstance().remove(this);
+                applyProgress(progressSlot.take());
+            }
+        };
+        progressPoster = new Runnable() {
+            @Override
+            public void run() {
+                FrameTicker.getInstance().add(progressTick);
+            }
+        };
+    }
+
+
+    /**
+     * 根据绘制方式准备资源：图片模式解码图片，矢量模式只生成Path
+     */
+    private void applyRenderMode() {
+        dialLayer = null;
+        if (renderMode == RENDER_MODE_VECTOR) {
+            bitmapClockBackground = null;
+            bitmapClockMinute = null;
+            bitmapClockSecond = null;
+            if (vectorRenderer == null) {
+                vectorRenderer = new ClockVectorRenderer();
+            }
+            DEFAULT_VIEW_WIDTH = DEFAULT_VIEW_HEIGHT =
+                    (int) (DEFAULT_VECTOR_SIZE_DP * getResources().getDisplayMetrics().density + 0.5f);
+        } else {
+            // 只读取原图的宽高作为默认大小，测量后再直接解码到实际大小
+            bitmapClockBackground = null;
+            bitmapClockMinute = null;
+            bitmapClockSecond = null;
+            DEFAULT_VIEW_WIDTH = bitmapCache.getSourceWidth(getResources(), R.drawable.bg_clock);
+            DEFAULT_VIEW_HEIGHT = bitmapCache.getSourceHeight(getResources(), R.drawable.bg_clock);
+        }
+        scaledWidth = -1;
+        scaledHeight = -1;
+        dialDrawable.invalidateSelf();
+    }
+
+    /**
+     * 设置绘制方式
+     * @param renderMode RENDER_MODE_BITMAP或RENDER_MODE_VECTOR
+     */
+    public void setRenderMode(int renderMode) {
+        if (this.renderMode == renderMode) {
+            return;
+        }
+        releaseScaledBitmaps();
+        this.renderMode = renderMode;
+        applyRenderMode();
+        requestLayout();
+        invalidate();
     }
 
+    public int getRenderMode() {
+        return renderMode;
+    }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int width = measureDimension(DEFAULT_VIEW_WIDTH, widthMeasureSpec);
         int height = measureDimension(DEFAULT_VIEW_HEIGHT, heightMeasureSpec);
 
-        // 计算缩放比例
-        float scaleWidth = ((float)width)/bitmapClockBackground.getWidth();
-        float scaleHeight = ((float)height)/bitmapClockBackground.getHeight();
-        // 取得想要缩放的matrix参数
-        Matrix matrix = new Matrix();
-        matrix.setScale(scaleWidth, scaleHeight);
-        // 得到新的图片
-        bitmapClockBackground = Bitmap.createBitmap(bitmapClockBackground, 0, 0, bitmapClockBackground.getWidth(), bitmapClockBackground.getHeight(), matrix,true);
-
-        scaleWidth = ((float)width)/bitmapClockMinute.getWidth();
-        scaleHeight = ((float)height)/bitmapClockMinute.getHeight();
-        // 取得想要缩放的matrix参数
-        matrix.setScale(scaleWidth, scaleHeight);
-        // 得到新的图片
-        bitmapClockMinute = Bitmap.createBitmap(bitmapClockMinute, 0, 0, bitmapClockMinute.getWidth(), bitmapClockMinute.getHeight(), matrix,true);
-
-        scaleWidth = ((float)width)/bitmapClockSecond.getWidth();
-        scaleHeight = ((float)height)/bitmapClockSecond.getHeight();
-        // 取得想要缩放的matrix参数
-        matrix.setScale(scaleWidth, scaleHeight);
-        // 得到新的图片
-        bitmapClockSecond = Bitmap.createBitmap(bitmapClockSecond, 0, 0, bitmapClockSecond.getWidth(), bitmapClockSecond.getHeight(), matrix,true);
+        if (width > 0 && height > 0 && (width != scaledWidth || height != scaledHeight)) {
+            loadScaledBitmaps(width, height);
+        }
 
         rotateMinuteX = rotateSecondX = width / 2;
         rotateMinuteY = rotateSecondY = height / 2;
@@ -166,18 +370,72 @@ public class ClockProgress extends View {
         setMeasuredDimension(width, height);
     }
 
+    /**
+     * 从共享缓存中取对应尺寸的图片，同一尺寸只解码一次
+     * <br>先放开之前尺寸的图片，没有其它view使用时它的内存可以被新尺寸复用
+     */
+    private void loadScaledBitmaps(int width, int height) {
+        releaseScaledBitmaps();
+        scaledWidth = width;
+        scaledHeight = height;
+        if (renderMode == RENDER_MODE_VECTOR) {
+            vectorRenderer.setSize(width, height);
+        } else {
+            bitmapClockBackground = bitmapCache.getScaled(getResources(), R.drawable.bg_clock, width, height);
+            bitmapClockMinute = bitmapCache.getScaled(getResources(), R.drawable.bg_clock_minute, width, height);
+            bitmapClockSecond = bitmapCache.getScaled(getResources(), R.drawable.bg_clock_second, width, height);
+            dialLayer = bitmapClockBackground;
+        }
+        computeHandsDirtyRect(width, height);
+        dialDrawable.invalidateSelf();
+    }
+
+    /**
+     * 通知共享缓存不再使用当前尺寸的图片，之后需要重新load才能绘制
+     */
+    private void releaseScaledBitmaps() {
+        int width = scaledWidth;
+        int height = scaledHeight;
+        scaledWidth = -1;
+        scaledHeight = -1;
+        if (width <= 0 || height <= 0 || renderMode == RENDER_MODE_VECTOR) {
+            return;
+        }
+        dialLayer = null;
+        bitmapClockBackground = null;
+        bitmapClockMinute = null;
+        bitmapClockSecond = null;
+        bitmapCache.release(R.drawable.bg_clock, width, height);
+        bitmapCache.release(R.drawable.bg_clock_minute, width, height);
+        bitmapCache.release(R.drawable.bg_clock_second, width, height);
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        long start = FrameTimings.begin();
+        drawClock(canvas);
+        FrameTimings.end(FrameTimings.SECTION_CLOCK_DRAW, start);
+    }
+
+    /**
+     * 只绘制表针，表盘由背景中的DialDrawable绘制
+     */
+    private void drawClock(Canvas canvas) {
+        if (renderMode == RENDER_MODE_VECTOR) {
+            if (scaledWidth <= 0) {
+                return;
+            }
+            vectorRenderer.drawHands(canvas, startRotate ? minuteDegree : 0, secondDegree);
+            return;
+        }
+        if (dialLayer == null) {
+            return;
+        }
         if (startRotate) {
-            canvas.drawBitmap(bitmapClockBackground, 0, 0, null);
             canvas.drawBitmap(bitmapClockMinute, matrixMinute, null);
             canvas.drawBitmap(bitmapClockSecond, matrixSecond, null);
-
-            msg.what = CLOCK_ROTATE;
-            handler.handleMessage(msg);
         } else {
-            canvas.drawBitmap(bitmapClockBackground, 0, 0, null);
             canvas.drawBitmap(bitmapClockMinute, 0, 0, null);
             canvas.drawBitmap(bitmapClockSecond, matrixSecondManual, null);
         }
@@ -188,40 +446,165 @@ public class ClockProgress extends View {
      * @param defaultPadding 默认距离
      * @param currentPadding 实际距离
      */
+    @Override
     public void setClockByPaddingTop(int defaultPadding,int currentPadding){
-        ratio = -360.0/defaultPadding;
+        if (ratioPadding != defaultPadding) {
+            ratioPadding = defaultPadding;
+            ratio = ClockAngles.ratioFor(defaultPadding);
+        }
         if(currentPadding == defaultPadding){
             setClockToZero();
         }else if(currentPadding < 0 && currentPadding > defaultPadding){
             //根据高度换算出秒针旋转的角度，旋转到当前的角度正好等于默认的高度时表针正好旋转一周，之后不再旋转
-            secondDegree = (float)(-ratio*(defaultPadding-currentPadding));
+            float degree = ClockAngles.pullDegree(ratio, defaultPadding, currentPadding, angleResolution);
+            determinate = false;
+            if (!startRotate && degree == secondDegree) {
+                // 量化后的角度和状态都没有变化，不需要重绘
+                skippedRedrawCount++;
+                return;
+            }
+            secondDegree = degree;
             matrixSecondManual.setRotate(secondDegree, rotateSecondX, rotateSecondY);
-            invalidate();
+            performedRedrawCount++;
+            invalidateHands();
         }
     }
 
     /**
      * 设置开始自动转动表针
      */
+    @Override
     public void setStartAutoRotate(){
+        progressSlot.clear();
+        determinate = false;
         this.startRotate = true;
         minuteDegree = 0;
         secondDegree = 0;
         setMinuteMatrix(minuteDegree, rotateMinuteX, rotateMinuteY);
         setSecondMatrix(secondDegree, rotateSecondX, rotateSecondY);
+        animator.start();
+        governor.setRequested(true, now());
+        updateAnimation();
         invalidate();
     }
 
     /**
      * 设置是否开始自动转动表针
      */
+    @Override
     public void setClockToZero(){
+        progressSlot.clear();
+        determinate = false;
+        if (!startRotate && secondDegree == 0 && !animator.isRunning()) {
+            // 已经在零位，不需要重绘
+            skippedRedrawCount++;
+            return;
+        }
         this.startRotate = false;
+        governor.setRequested(false, now());
+        animator.stop();
         secondDegree = 0;
         matrixSecondManual.setRotate(secondDegree,rotateSecondX,rotateSecondY);
+        performedRedrawCount++;
         invalidate();
     }
 
+    /**
+     * 设置确定的进度，秒针从零转到一周表示0到1，例如刷新时已下载的比例
+     * <br>可以在任意线程频繁调用：只保留最新的值，每帧最多在UI线程重绘一次
+     * <br>之后调用setStartAutoRotate或setClockToZero会退出确定进度模式，还没有显示的进度被丢弃
+     * @param progress 进度，超出0~1时取边界值
+     */
+    @Override
+    public void setProgress(float progress) {
+        if (progressSlot.offer(Math.max(0f, Math.min(1f, progress)))) {
+            mainHandler.post(progressPoster);
+        }
+    }
+
+    /**
+     * 在UI线程显示最新的进度
+     * @param value 进度，NaN表示已经被丢弃
+     */
+    private void applyProgress(float value) {
+        if (Float.isNaN(value)) {
+            return;
+        }
+        float degree = ClockAngles.quantize(value * 360f, angleResolution);
+        if (determinate && degree == secondDegree) {
+            progress = value;
+            skippedRedrawCount++;
+            return;
+        }
+        boolean wasRotating = startRotate;
+        determinate = true;
+        progress = value;
+        startRotate = false;
+        governor.setRequested(false, now());
+        animator.stop();
+        secondDegree = degree;
+        matrixSecondManual.setRotate(secondDegree, rotateSecondX, rotateSecondY);
+        performedRedrawCount++;
+        if (wasRotating) {
+            // 分针也要回到零位，整个重绘
+            invalidate();
+        } else {
+            invalidateHands();
+        }
+    }
+
+    /**
+     * 当前显示的进度，只在确定进度模式下有意义
+     * @return
+     */
+    public float getProgress() {
+        return progress;
+    }
+
+    /**
+     * 是否处于确定进度模式
+     * @return
+     */
+    public boolean isDeterminate() {
+        return determinate;
+    }
+
+    /**
+     * 设置下拉时秒针角度的量化单位
+     * @param angleResolution 角度(度)，小于等于0时不量化
+     */
+    public void setAngleResolution(float angleResolution) {
+        this.angleResolution = angleResolution;
+    }
+
+    public float getAngleResolution() {
+        return angleResolution;
+    }
+
+    /**
+     * 获取因为角度和状态没有变化而跳过的重绘次数
+     * @return
+     */
+    public int getSkippedRedrawCount() {
+        return skippedRedrawCount;
+    }
+
+    /**
+     * 获取实际执行的重绘次数
+     * @return
+     */
+    public int getPerformedRedrawCount() {
+        return performedRedrawCount;
+    }
+
+    /**
+     * 重置重绘计数
+     */
+    public void resetRedrawCounts() {
+        skippedRedrawCount = 0;
+        performedRedrawCount = 0;
+    }
+
     /**
      * 测量view大小
      * @param defaultSize 默认大小
@@ -271,27 +654,222 @@ public class ClockProgress extends View {
         matrixSecond.setRotate(degrees, px, py);
     }
 
-    private Handler handler = new Handler() {
+    /**
+     * 计算表针扫过的区域：以旋转中心为圆心、HAND_SWEEP_RADIUS为半径的外接正方形
+     * @param width 宽
+     * @param height 高
+     */
+    private void computeHandsDirtyRect(int width, int height) {
+        int radius = (int) Math.ceil(Math.min(width, height) / 2f * HAND_SWEEP_RADIUS);
+        int cx = width / 2;
+        int cy = height / 2;
+        handsDirtyRect.set(Math.max(0, cx - radius), Math.max(0, cy - radius),
+                Math.min(width, cx + radius), Math.min(height, cy + radius));
+    }
+
+    /**
+     * 刷新表针
+     * <br>硬件加速时脏区域不起作用，onDraw总是整个重新录制，表盘在背景的显示列表里不受影响；
+     * 软件绘制时只刷新表针扫过的区域，背景和表针都只重画这一块
+     */
+    private void invalidateHands() {
+        if (handsDirtyRect.isEmpty() || isHardwareAccelerated()) {
+            invalidate();
+        } else {
+            invalidate(handsDirtyRect.left, handsDirtyRect.top, handsDirtyRect.right, handsDirtyRect.bottom);
+        }
+    }
+
+    /**
+     * 设置背景：表盘始终画在最上层
+     */
+    @SuppressWarnings("deprecation")
+    @Override
+    public void setBackgroundDrawable(Drawable background) {
+        userBackground = background;
+        if (dialDrawable == null) {
+            // View的构造函数中读取布局里的背景，这时还没有初始化，init中再合并
+            super.setBackgroundDrawable(background);
+        } else {
+            applyBackground();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void applyBackground() {
+        if (userBackground == null) {
+            super.setBackgroundDrawable(dialDrawable);
+        } else {
+            super.setBackgroundDrawable(new LayerDrawable(new Drawable[]{userBackground, dialDrawable}));
+        }
+    }
+
+    /**
+     * 绘制表盘的背景：图片模式下贴缩放好的表盘图片，矢量模式下绘制刻度的Path
+     */
+    private class DialDrawable extends Drawable {
+
         @Override
-        public void handleMessage(Message msg) {
-            super.handleMessage(msg);
-            switch (msg.what) {
-                case CLOCK_ROTATE:
-                    if (secondDegree == 360) {
-                        secondDegree = 0;
-
-                        if (minuteDegree == 360) {
-                            minuteDegree = 0;
-                        }
-                    }
-                    //秒针转3度分针转0.25度
-                    minuteDegree += 0.25;
-                    secondDegree += 3;
-                    setMinuteMatrix(minuteDegree, rotateMinuteX, rotateMinuteY);
-                    setSecondMatrix(secondDegree, rotateSecondX, rotateSecondY);
-                    invalidate();
-                    break;
+        public void draw(Canvas canvas) {
+            if (renderMode == RENDER_MODE_VECTOR) {
+                if (scaledWidth > 0) {
+                    vectorRenderer.drawDial(canvas);
+                }
+            } else if (dialLayer != null) {
+                canvas.drawBitmap(dialLayer, 0, 0, null);
             }
         }
-    };
+
+        @Override
+        public void setAlpha(int alpha) {
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+    }
+
+    /**
+     * 设置动画使用的时间源，用于测试
+     * @param timeSource 时间源，为null时使用系统时间
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        animator.setTimeSource(timeSource);
+    }
+
+    /**
+     * 是否正在自动转动表针(看不到而暂停时返回false)
+     * @return
+     */
+    @Override
+    public boolean isAutoRotating() {
+        return animator.isRunning();
+    }
+
+    /**
+     * 设置HeadView是否在屏幕内，滚出屏幕时暂停动画
+     * @param onScreen
+     */
+    @Override
+    public void setOnScreen(boolean onScreen) {
+        if (governor.isOnScreen() == onScreen) {
+            return;
+        }
+        governor.setOnScreen(onScreen, now());
+        updateAnimation();
+    }
+
+    /**
+     * 设置最大帧率
+     * @param maxFps 每秒帧数，ClockGovernor.UNLIMITED表示每个vsync都绘制
+     */
+    public void setMaxFrameRate(int maxFps) {
+        governor.setMaxFps(maxFps);
+    }
+
+    /**
+     * 设置省电模式下的最大帧率，默认ClockGovernor.DEFAULT_POWER_SAVE_MAX_FPS
+     * @param maxFps 每秒帧数，ClockGovernor.UNLIMITED表示和普通模式一样
+     */
+    public void setPowerSaveMaxFrameRate(int maxFps) {
+        governor.setPowerSaveMaxFps(maxFps);
+    }
+
+    /**
+     * 因为暂停(按60Hz估算)和限帧少画的帧数
+     * @return
+     */
+    public long getSavedFrameCount() {
+        return governor.getSavedFrameCount(now());
+    }
+
+    public ClockGovernor getGovernor() {
+        return governor;
+    }
+
+    private long now() {
+        return animator.getTimeSource().nanoTime();
+    }
+
+    /**
+     * 按ClockGovernor的判断注册或取消帧回调
+     * <br>恢复时不重置开始时间，表针直接转到按时间计算的角度
+     */
+    private void updateAnimation() {
+        boolean run = startRotate && governor.shouldRun();
+        if (run && !animator.isRunning()) {
+            animator.resume();
+        } else if (!run && animator.isRunning()) {
+            animator.stop();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        if (governor == null) {
+            // View的构造函数中就可能回调，这时还没有初始化
+            return;
+        }
+        governor.setShown(isShown(), now());
+        updateAnimation();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        governor.setWindowVisible(visibility == VISIBLE, now());
+        updateAnimation();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        long now = now();
+        governor.setAttached(true, now);
+        governor.setWindowVisible(getWindowVisibility() == VISIBLE, now);
+        governor.setShown(isShown(), now);
+        if (scaledWidth < 0 && getMeasuredWidth() > 0 && getMeasuredHeight() > 0) {
+            // detach时放开了图片，尺寸没有变化时不一定会重新测量
+            loadScaledBitmaps(getMeasuredWidth(), getMeasuredHeight());
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            updatePowerSave();
+            getContext().registerReceiver(powerSaveReceiver,
+                    new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+            powerSaveReceiverRegistered = true;
+        }
+        updateAnimation();
+    }
+
+    /**
+     * 读取当前是否处于省电模式，只在API 21以上调用
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updatePowerSave() {
+        PowerManager powerManager = (PowerManager) getContext().getSystemService(Context.POWER_SERVICE);
+        governor.setPowerSave(powerManager.isPowerSaveMode());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        governor.setAttached(false, now());
+        if (powerSaveReceiverRegistered) {
+            getContext().unregisterReceiver(powerSaveReceiver);
+            powerSaveReceiverRegistered = false;
+        }
+        // 离开窗口后不再需要动画，从共享的FrameTicker取消注册
+        animator.stop();
+        // 还没有显示的进度直接丢弃，并清除post标记，重新attach后setProgress还能正常post
+        FrameTicker.getInstance().remove(progressTick);
+        progressSlot.take();
+        // 放开共享缓存中的图片，否则引用计数不会归零，图片一直留在缓存里不能复用
+        releaseScaledBitmaps();
+        super.onDetachedFromWindow();
+    }
 }
@@ -0,0 +1,305 @@
+package me.wmh.clockprogress;
+
+import android.annotation.TargetApi;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 表针的独立绘制线程
+ * <br>在自己的Looper上注册Choreographer帧回调(API 16以下退化为Handler按帧间隔定时)，直接lockCanvas绘制到Surface，
+ * 主线程被解析数据、绑定列表项等工作阻塞时表针仍然按时间继续转动。
+ * <br>状态可以在任意线程设置，绘制只在这个线程进行；同一帧内的多次设置只绘制一次，静止时不注册帧回调。
+ */
+public class ClockRenderThread extends HandlerThread {
+
+    /**
+     * 没有Choreographer时的帧间隔(毫秒)
+     */
+    private static final long FALLBACK_FRAME_DELAY_MS = 16;
+
+    /**
+     * 实际的绘制
+     */
+    public interface Painter {
+        /**
+         * 在绘制线程中绘制一帧
+         * @param canvas Surface的画布，需要先清除背景
+         * @param minuteDegree 分针角度
+         * @param secondDegree 秒针角度
+         */
+        void paint(Canvas canvas, float minuteDegree, float secondDegree);
+    }
+
+    private final Painter painter;
+    private final ClockKinematics kinematics = new ClockKinematics();
+
+    /**
+     * 转动时的限帧，和主线程共用，访问时持有它的锁
+     */
+    private final ClockGovernor governor;
+
+    /**
+     * 保护下面的状态，任意线程都可以修改
+     */
+    private final Object stateLock = new Object();
+    private boolean rotating = false;
+    private long rotateStartNanos;
+    private float stillSecondDegree = 0;
+    private boolean paused = false;
+    private TimeSource timeSource = TimeSource.SYSTEM;
+
+    /**
+     * 保护Surface，surfaceDestroyed返回前要等正在进行的绘制结束
+     */
+    private final Object surfaceLock = new Object();
+    private SurfaceHolder surfaceHolder;
+
+    /**
+     * 绘制线程的Handler，Looper准备好之前为null
+     */
+    private volatile Handler handler;
+
+    /**
+     * 已经post了scheduleRunnable还没有执行，任意线程频繁请求时只post一次
+     */
+    private final AtomicBoolean renderRequested = new AtomicBoolean(false);
+    private final Runnable scheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            renderRequested.set(false);
+            scheduleFrame();
+        }
+    };
+
+    /**
+     * 以下只在绘制线程使用
+     */
+    private boolean frameScheduled = false;
+    private Object frameCallback;
+    private Runnable fallbackRunnable;
+
+    private volatile long frameCount = 0;
+
+    private final Runnable quitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            quit();
+        }
+    };
+
+    /**
+     * @param painter 绘制
+     * @param governor 限帧和统计，由view持有，重新attach时沿用
+     */
+    public ClockRenderThread(Painter painter, ClockGovernor governor) {
+        super("ClockRender");
+        this.painter = painter;
+        this.governor = governor;
+    }
+
+    @Override
+    protected void onLooperPrepared() {
+        handler = new Handler(getLooper());
+        // 之前设置的状态在Looper准备好之前没有办法请求绘制，这里补一帧
+        scheduleFrame();
+    }
+
+    /**
+     * 设置时间源，用于测试
+     * @param timeSource 时间源，为null时使用系统时间
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        synchronized (stateLock) {
+            this.timeSource = timeSource == null ? TimeSource.SYSTEM : timeSource;
+        }
+    }
+
+    /**
+     * Surface可用或者尺寸变化，在主线程调用
+     * @param holder 为null表示Surface已经销毁，返回时绘制线程不会再使用它
+     */
+    public void setSurface(SurfaceHolder holder) {
+        synchronized (surfaceLock) {
+            surfaceHolder = holder;
+        }
+        requestRender();
+    }
+
+    /**
+     * 开始按时间自动转动，表针从零开始
+     */
+    public void startRotate() {
+        synchronized (stateLock) {
+            rotating = true;
+            rotateStartNanos = timeSource.nanoTime();
+        }
+        requestRender();
+    }
+
+    /**
+     * 停止转动，表针停在指定角度，分针归零
+     * @param secondDegree 秒针角度
+     */
+    public void setStill(float secondDegree) {
+        synchronized (stateLock) {
+            rotating = false;
+            stillSecondDegree = secondDegree;
+        }
+        requestRender();
+    }
+
+    /**
+     * 暂停时不绘制也不注册帧回调，恢复后转动的角度仍按开始后经过的时间计算
+     * @param paused
+     */
+    public void setPaused(boolean paused) {
+        synchronized (stateLock) {
+            if (this.paused == paused) {
+                return;
+            }
+            this.paused = paused;
+        }
+        if (!paused) {
+            requestRender();
+        }
+    }
+
+    public boolean isRotating() {
+        synchronized (stateLock) {
+            return rotating;
+        }
+    }
+
+    /**
+     * 到目前为止绘制到Surface的帧数
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 在绘制线程执行一个任务，例如放开绘制用的图片；任务执行时这个线程一定不在绘制
+     * <br>Looper还没有准备好时还没有绘制过，直接在调用的线程执行
+     * @param task
+     */
+    public void runOnRenderThread(Runnable task) {
+        Handler h = handler;
+        if (h == null || !h.post(task)) {
+            task.run();
+        }
+    }
+
+    /**
+     * 执行完之前runOnRenderThread的任务后退出，quit会直接丢掉它们
+     */
+    public void quitWhenDone() {
+        Handler h = handler;
+        if (h == null || !h.post(quitRunnable)) {
+            quit();
+        }
+    }
+
+    /**
+     * 请求下一帧重绘，可以在任意线程调用
+     */
+    public void requestRender() {
+        Handler h = handler;
+        if (h != null && !renderRequested.getAndSet(true)) {
+            h.post(scheduleRunnable);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled) {
+            return;
+        }
+        frameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            if (fallbackRunnable == null) {
+                fallbackRunnable = new Runnable() {
+                    @Override
+                    public void run() {
+                        doFrame();
+                    }
+                };
+            }
+            handler.postDelayed(fallbackRunnable, FALLBACK_FRAME_DELAY_MS);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (frameCallback == null) {
+            frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    ClockRenderThread.this.doFrame();
+                }
+            };
+        }
+        // 在绘制线程中获取，得到的是这个Looper自己的Choreographer，不经过主线程
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+    }
+
+    /**
+     * 绘制一帧，转动时注册下一帧
+     * <br>转动时先由ClockGovernor判断限帧，跳过的帧不绘制，只注册下一帧
+     */
+    private void doFrame() {
+        frameScheduled = false;
+        boolean rotate;
+        float minuteDegree;
+        float secondDegree;
+        synchronized (stateLock) {
+            if (paused) {
+                return;
+            }
+            rotate = rotating;
+            if (rotate) {
+                long now = timeSource.nanoTime();
+                boolean render;
+                synchronized (governor) {
+                    render = governor.shouldRender(now);
+                }
+                if (!render) {
+                    // 限帧跳过这一帧，下一次绘制时角度仍按时间计算
+                    scheduleFrame();
+                    return;
+                }
+                kinematics.start(rotateStartNanos);
+                kinematics.update(now);
+                minuteDegree = kinematics.getMinuteDegree();
+                secondDegree = kinematics.getSecondDegree();
+            } else {
+                minuteDegree = 0;
+                secondDegree = stillSecondDegree;
+            }
+        }
+        synchronized (surfaceLock) {
+            if (surfaceHolder == null) {
+                return;
+            }
+            Canvas canvas = surfaceHolder.lockCanvas();
+            if (canvas == null) {
+                return;
+            }
+            try {
+                painter.paint(canvas, minuteDegree, secondDegree);
+            } finally {
+                surfaceHolder.unlockCanvasAndPost(canvas);
+            }
+            frameCount++;
+        }
+        if (rotate) {
+            scheduleFrame();
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package me.wmh.clockprogress;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.View;
+
+/**
+ * 在独立线程绘制的表，可以在list_header_view.xml中直接替换ClockProgress
+ * <br>表针由ClockRenderThread绘制到SurfaceView自己的Surface上，不经过onDraw/invalidate，
+ * 刷新完成时主线程忙于解析数据和绑定列表项，表针也不会卡住。
+ * <br>Surface位于窗口下方，窗口在这里挖洞显示，所以能被ListView正常裁剪；代价是需要自己绘制背景，
+ * 背景颜色用clockBackground设置，默认使用主题的android:colorBackground。
+ */
+public class ClockSurfaceView extends SurfaceView implements ClockIndicator, SurfaceHolder.Callback {
+
+    /**
+     * 矢量模式下的默认大小(dp)
+     */
+    private static final int DEFAULT_VECTOR_SIZE_DP = 40;
+
+    /**
+     * <p/>0:ClockProgress.RENDER_MODE_BITMAP;
+     * <p/>1:ClockProgress.RENDER_MODE_VECTOR;
+     */
+    private int renderMode = ClockProgress.RENDER_MODE_BITMAP;
+
+    /**
+     * Surface的背景颜色，应该和HeadView的背景一致
+     */
+    private int clockBackground;
+
+    /**
+     * 以下绘制资源在主线程准备，绘制线程使用；修改前先让绘制线程放开Surface
+     */
+    private ClockVectorRenderer vectorRenderer;
+    private Bitmap dialLayer;
+    private Bitmap bitmapClockMinute;
+    private Bitmap bitmapClockSecond;
+    private float centerX;
+    private float centerY;
+    private int scaledWidth = -1;
+    private int scaledHeight = -1;
+
+    private ClockBitmapCache bitmapCache;
+
+    /**
+     * 只在attach期间存在
+     */
+    private volatile ClockRenderThread renderThread;
+
+    private TimeSource timeSource = TimeSource.SYSTEM;
+
+    /**
+     * Surface是否可用
+     */
+    private boolean surfaceReady = false;
+
+    /**
+     * 是否在自动转动，setProgress可能在工作线程修改
+     */
+    private volatile boolean startRotate = false;
+
+    /**
+     * 静止时秒针的角度，重新attach时恢复
+     */
+    private volatile float secondDegree = 0;
+
+    /**
+     * 看不到时暂停绘制线程，限制转动时的帧率
+     * <br>主线程设置状态，绘制线程判断限帧，访问时都持有它的锁；重新attach时沿用，统计不会清零
+     */
+    private ClockGovernor governor;
+
+    /**
+     * 监听省电模式的变化，attach期间注册(只有API 21以上注册)
+     */
+    private final BroadcastReceiver powerSaveReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            updatePowerSave();
+        }
+    };
+    private boolean powerSaveReceiverRegistered = false;
+
+    /**
+     * 下拉距离与旋转角度的比率
+     */
+    private double ratio = 0.00;
+
+    /**
+     * 计算ratio时使用的默认距离，没有变化时不重新计算
+     */
+    private int ratioPadding = 0;
+
+    /**
+     * 下拉时秒针角度的最小变化单位(度)
+     */
+    private float angleResolution = ClockProgress.DEFAULT_ANGLE_RESOLUTION;
+
+    private int defaultWidth;
+    private int defaultHeight;
+
+    private final ClockRenderThread.Painter painter = new ClockRenderThread.Painter() {
+        @Override
+        public void paint(Canvas canvas, float minuteDegree, float secondDegree) {
+            canvas.drawColor(clockBackground);
+            if (renderMode == ClockProgress.RENDER_MODE_VECTOR) {
+                vectorRenderer.drawDial(canvas);
+                vectorRenderer.drawHands(canvas, minuteDegree, secondDegree);
+                return;
+            }
+            canvas.drawBitmap(dialLayer, 0, 0, null);
+            int saveCount = canvas.save();
+            canvas.rotate(minuteDegree, centerX, centerY);
+            canvas.drawBitmap(bitmapClockMinute, 0, 0, null);
+            canvas.restoreToCount(saveCount);
+            saveCount = canvas.save();
+            canvas.rotate(secondDegree, centerX, centerY);
+            canvas.drawBitmap(bitmapClockSecond, 0, 0, null);
+            canvas.restoreToCount(saveCount);
+        }
+    };
+
+    public ClockSurfaceView(Context context) {
+        super(context);
+        init(null);
+    }
+
+    public ClockSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(attrs);
+    }
+
+    public ClockSurfaceView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(attrs);
+    }
+
+    private void init(AttributeSet attrs) {
+        governor = new ClockGovernor();
+        TypedArray theme = getContext().obtainStyledAttributes(new int[]{android.R.attr.colorBackground});
+        clockBackground = theme.getColor(0, 0xFFFFFFFF);
+        theme.recycle();
+        if (attrs != null) {
+            TypedArray a = getContext().obtainStyledAttributes(attrs, R.styleable.ClockSurfaceView);
+            renderMode = a.getInt(R.styleable.ClockSurfaceView_renderMode, ClockProgress.RENDER_MODE_BITMAP);
+            clockBackground = a.getColor(R.styleable.ClockSurfaceView_clockBackground, clockBackground);
+            a.recycle();
+        }
+        bitmapCache = ClockBitmapCache.getInstance();
+        if (renderMode == ClockProgress.RENDER_MODE_VECTOR) {
+            vectorRenderer = new ClockVectorRenderer();
+            defaultWidth = defaultHeight =
+                    (int) (DEFAULT_VECTOR_SIZE_DP * getResources().getDisplayMetrics().density + 0.5f);
+        } else {
+            defaultWidth = bitmapCache.getSourceWidth(getResources(), R.drawable.bg_clock);
+            defaultHeight = bitmapCache.getSourceHeight(getResources(), R.drawable.bg_clock);
+        }
+        getHolder().addCallback(this);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(resolveSize(defaultWidth, widthMeasureSpec),
+                resolveSize(defaultHeight, heightMeasureSpec));
+    }
+
+    /**
+     * 设置动画使用的时间源，用于测试
+     * @param timeSource 时间源，为null时使用系统时间
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        this.timeSource = timeSource == null ? TimeSource.SYSTEM : timeSource;
+        ClockRenderThread thread = renderThread;
+        if (thread != null) {
+            thread.setTimeSource(this.timeSource);
+        }
+    }
+
+    /**
+     * 设置下拉时秒针角度的量化单位
+     * @param angleResolution 角度(度)，小于等于0时不量化
+     */
+    public void setAngleResolution(float angleResolution) {
+        this.angleResolution = angleResolution;
+    }
+
+    @Override
+    public void setClockByPaddingTop(int defaultPadding, int currentPadding) {
+        if (ratioPadding != defaultPadding) {
+            ratioPadding = defaultPadding;
+            ratio = ClockAngles.ratioFor(defaultPadding);
+        }
+        if (currentPadding == defaultPadding) {
+            setClockToZero();
+        } else if (currentPadding < 0 && currentPadding > defaultPadding) {
+            float degree = ClockAngles.pullDegree(ratio, defaultPadding, currentPadding, angleResolution);
+            if (!startRotate && degree == secondDegree) {
+                return;
+            }
+            setStill(degree);
+        }
+    }
+
+    @Override
+    public void setStartAutoRotate() {
+        startRotate = true;
+        secondDegree = 0;
+        setRequested(true);
+        ClockRenderThread thread = renderThread;
+        if (thread != null) {
+            thread.startRotate();
+        }
+    }
+
+    @Override
+    public void setClockToZero() {
+        if (!startRotate && secondDegree == 0) {
+            return;
+        }
+        setStill(0);
+    }
+
+    /**
+     * 显示确定的进度，秒针从零转到一周表示0到1
+     * <br>可以在任意线程调用，只是记录最新的角度，绘制线程每帧最多绘制一次
+     * @param progress 进度，超出0~1时取边界值
+     */
+    @Override
+    public void setProgress(float progress) {
+        float value = Math.max(0f, Math.min(1f, progress));
+        setStill(ClockAngles.quantize(value * 360f, angleResolution));
+    }
+
+    private void setStill(float degree) {
+        startRotate = false;
+        secondDegree = degree;
+        setRequested(false);
+        ClockRenderThread thread = renderThread;
+        if (thread != null) {
+            thread.setStill(degree);
+        }
+    }
+
+    @Override
+    public boolean isAutoRotating() {
+        return startRotate;
+    }
+
+    @Override
+    public void setOnScreen(boolean onScreen) {
+        synchronized (governor) {
+            if (governor.isOnScreen() == onScreen) {
+                return;
+            }
+            governor.setOnScreen(onScreen, now());
+        }
+        updatePaused();
+    }
+
+    /**
+     * 设置转动时的最大帧率
+     * @param maxFps 每秒帧数，ClockGovernor.UNLIMITED表示每个vsync都绘制
+     */
+    public void setMaxFrameRate(int maxFps) {
+        synchronized (governor) {
+            governor.setMaxFps(maxFps);
+        }
+    }
+
+    /**
+     * 设置省电模式下的最大帧率，默认ClockGovernor.DEFAULT_POWER_SAVE_MAX_FPS
+     * @param maxFps 每秒帧数，ClockGovernor.UNLIMITED表示和普通模式一样
+     */
+    public void setPowerSaveMaxFrameRate(int maxFps) {
+        synchronized (governor) {
+            governor.setPowerSaveMaxFps(maxFps);
+        }
+    }
+
+    /**
+     * 因为暂停(按60Hz估算)和限帧少画的帧数
+     * @return
+     */
+    public long getSavedFrameCount() {
+        synchronized (governor) {
+            return governor.getSavedFrameCount(now());
+        }
+    }
+
+    private long now() {
+        return timeSource.nanoTime();
+    }
+
+    /**
+     * 记录是否需要转动，开始转动后的第一帧一定绘制
+     */
+    private void setRequested(boolean requested) {
+        synchronized (governor) {
+            governor.setRequested(requested, now());
+        }
+    }
+
+    /**
+     * 看不到时暂停绘制线程，恢复后转动的角度仍按开始后经过的时间计算
+     */
+    private void updatePaused() {
+        ClockRenderThread thread = renderThread;
+        if (thread != null) {
+            thread.setPaused(!isGovernorVisible());
+        }
+    }
+
+    private boolean isGovernorVisible() {
+        synchronized (governor) {
+            return governor.isVisible();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        if (governor == null) {
+            // View的构造函数中就可能回调，这时还没有初始化
+            return;
+        }
+        synchronized (governor) {
+            governor.setShown(isShown(), now());
+        }
+        updatePaused();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        synchronized (governor) {
+            governor.setWindowVisible(visibility == VISIBLE, now());
+        }
+        updatePaused();
+    }
+
+    /**
+     * 绘制线程已经绘制的帧数
+     * @return 没有attach时返回0
+     */
+    public long getRenderedFrameCount() {
+        ClockRenderThread thread = renderThread;
+        return thread == null ? 0 : thread.getFrameCount();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        synchronized (governor) {
+            long now = now();
+            governor.setAttached(true, now);
+            governor.setWindowVisible(getWindowVisibility() == VISIBLE, now);
+            governor.setShown(isShown(), now);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            updatePowerSave();
+            getContext().registerReceiver(powerSaveReceiver,
+                    new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+            powerSaveReceiverRegistered = true;
+        }
+        ClockRenderThread thread = new ClockRenderThread(painter, governor);
+        thread.setTimeSource(timeSource);
+        thread.setPaused(!isGovernorVisible());
+        if (startRotate) {
+            thread.startRotate();
+        } else {
+            thread.setStill(secondDegree);
+        }
+        thread.start();
+        renderThread = thread;
+        if (surfaceReady) {
+            thread.setSurface(getHolder());
+        }
+    }
+
+    /**
+     * 读取当前是否处于省电模式，只在API 21以上调用
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updatePowerSave() {
+        PowerManager powerManager = (PowerManager) getContext().getSystemService(Context.POWER_SERVICE);
+        synchronized (governor) {
+            governor.setPowerSave(powerManager.isPowerSaveMode());
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        synchronized (governor) {
+            governor.setAttached(false, now());
+        }
+        if (powerSaveReceiverRegistered) {
+            getContext().unregisterReceiver(powerSaveReceiver);
+            powerSaveReceiverRegistered = false;
+        }
+        ClockRenderThread thread = renderThread;
+        renderThread = null;
+        if (thread != null) {
+            thread.setSurface(null);
+        }
+        releaseScaledBitmaps(thread);
+        if (thread != null) {
+            thread.quitWhenDone();
+        }
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        // 尺寸在surfaceChanged中才知道，绘制资源准备好之后再交给绘制线程
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        ClockRenderThread thread = renderThread;
+        if (thread != null) {
+            // 等绘制线程放开Surface后再替换绘制资源
+            thread.setSurface(null);
+        }
+        if (width == scaledWidth && height == scaledHeight) {
+            surfaceReady = true;
+            if (thread != null) {
+                thread.setSurface(holder);
+            }
+            return;
+        }
+        releaseScaledBitmaps(thread);
+        scaledWidth = width;
+        scaledHeight = height;
+        centerX = width / 2f;
+        centerY = height / 2f;
+        if (renderMode == ClockProgress.RENDER_MODE_VECTOR) {
+            vectorRenderer.setSize(width, height);
+        } else {
+            dialLayer = bitmapCache.getScaled(getResources(), R.drawable.bg_clock, width, height);
+            bitmapClockMinute = bitmapCache.getScaled(getResources(), R.drawable.bg_clock_minute, width, height);
+            bitmapClockSecond = bitmapCache.getScaled(getResources(), R.drawable.bg_clock_second, width, height);
+        }
+        surfaceReady = true;
+        if (thread != null) {
+            thread.setSurface(holder);
+        }
+    }
+
+    /**
+     * 通知共享缓存不再使用当前尺寸的图片
+     * <br>调用前绘制线程已经放开Surface；放开图片的操作仍然post到绘制线程，
+     * 等它确认不再绘制后图片才可能进入复用池、被其它尺寸的解码覆盖
+     * @param thread 绘制线程，为null时直接放开
+     */
+    private void releaseScaledBitmaps(ClockRenderThread thread) {
+        final int width = scaledWidth;
+        final int height = scaledHeight;
+        scaledWidth = -1;
+        scaledHeight = -1;
+        if (width <= 0 || height <= 0 || renderMode == ClockProgress.RENDER_MODE_VECTOR) {
+            return;
+        }
+        dialLayer = null;
+        bitmapClockMinute = null;
+        bitmapClockSecond = null;
+        final ClockBitmapCache cache = bitmapCache;
+        Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                cache.release(R.drawable.bg_clock, width, height);
+                cache.release(R.drawable.bg_clock_minute, width, height);
+                cache.release(R.drawable.bg_clock_second, width, height);
+            }
+        };
+        if (thread != null) {
+            thread.runOnRenderThread(release);
+        } else {
+            release.run();
+        }
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        surfaceReady = false;
+        ClockRenderThread thread = renderThread;
+        if (thread != null) {
+            // 返回前绘制线程必须放开Surface
+            thread.setSurface(null);
+        }
+        // Surface重新创建时surfaceChanged会重新取图片
+        releaseScaledBitmaps(thread);
+    }
+}
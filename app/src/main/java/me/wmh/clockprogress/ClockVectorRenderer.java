@@ -0,0 +1,145 @@
+package me.wmh.clockprogress;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * 不使用图片、直接用Path绘制表盘和表针
+ * <br>Path和Paint只在尺寸变化时重新生成，绘制时不创建对象；任意尺寸都不需要额外的图片内存。
+ * <br>各部分的比例参照bg_clock、bg_clock_minute、bg_clock_second三张图片，以表盘半径为单位。
+ */
+public class ClockVectorRenderer {
+
+    /**
+     * 整点刻度的颜色(12、3、6、9点)
+     */
+    private static final int COLOR_MAJOR_TICK = Color.parseColor("#FF4C4C");
+    /**
+     * 其余刻度的颜色
+     */
+    private static final int COLOR_MINOR_TICK = Color.parseColor("#AAAAAA");
+    /**
+     * 表针的颜色
+     */
+    private static final int COLOR_HAND = Color.BLACK;
+
+    private static final float TICK_INNER = 0.63f;
+    private static final float TICK_OUTER = 0.76f;
+    private static final float TICK_WIDTH = 0.08f;
+
+    private static final float MINUTE_LENGTH = 0.47f;
+    private static final float MINUTE_TAIL = 0.29f;
+    private static final float MINUTE_WIDTH = 0.07f;
+
+    private static final float SECOND_LENGTH = 0.63f;
+    private static final float SECOND_TAIL = 0.29f;
+    private static final float SECOND_WIDTH = 0.05f;
+    private static final float SECOND_RING_RADIUS = 0.08f;
+
+    private final Paint majorTickPaint;
+    private final Paint minorTickPaint;
+    private final Paint handPaint;
+    private final Paint ringPaint;
+    private final Paint ringFillPaint;
+
+    private final Path majorTickPath = new Path();
+    private final Path minorTickPath = new Path();
+    private final Path minuteHandPath = new Path();
+    private final Path secondHandPath = new Path();
+
+    private float centerX;
+    private float centerY;
+    private float ringRadius;
+
+    public ClockVectorRenderer() {
+        majorTickPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        majorTickPaint.setStyle(Paint.Style.FILL);
+        majorTickPaint.setColor(COLOR_MAJOR_TICK);
+
+        minorTickPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        minorTickPaint.setStyle(Paint.Style.FILL);
+        minorTickPaint.setColor(COLOR_MINOR_TICK);
+
+        handPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        handPaint.setStyle(Paint.Style.FILL);
+        handPaint.setColor(COLOR_HAND);
+
+        ringPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        ringPaint.setStyle(Paint.Style.STROKE);
+        ringPaint.setColor(COLOR_HAND);
+
+        ringFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        ringFillPaint.setStyle(Paint.Style.FILL);
+        ringFillPaint.setColor(Color.WHITE);
+    }
+
+    /**
+     * 根据view的大小重新生成Path
+     * @param width 宽
+     * @param height 高
+     */
+    public void setSize(int width, int height) {
+        centerX = width / 2f;
+        centerY = height / 2f;
+        float radius = Math.min(width, height) / 2f;
+
+        // 刻度：先生成12点方向的一个刻度，再旋转30度依次加入
+        Path tick = new Path();
+        tick.addRect(centerX - radius * TICK_WIDTH / 2, centerY - radius * TICK_OUTER,
+                centerX + radius * TICK_WIDTH / 2, centerY - radius * TICK_INNER, Path.Direction.CW);
+        Matrix rotate = new Matrix();
+        majorTickPath.reset();
+        minorTickPath.reset();
+        for (int i = 0; i < 12; i++) {
+            rotate.setRotate(i * 30, centerX, centerY);
+            if (i % 3 == 0) {
+                majorTickPath.addPath(tick, rotate);
+            } else {
+                minorTickPath.addPath(tick, rotate);
+            }
+        }
+
+        minuteHandPath.reset();
+        minuteHandPath.addRect(centerX - radius * MINUTE_WIDTH / 2, centerY - radius * MINUTE_LENGTH,
+                centerX + radius * MINUTE_WIDTH / 2, centerY + radius * MINUTE_TAIL, Path.Direction.CW);
+
+        secondHandPath.reset();
+        secondHandPath.addRect(centerX - radius * SECOND_WIDTH / 2, centerY - radius * SECOND_LENGTH,
+                centerX + radius * SECOND_WIDTH / 2, centerY + radius * SECOND_TAIL, Path.Direction.CW);
+
+        ringRadius = radius * SECOND_RING_RADIUS;
+        ringPaint.setStrokeWidth(radius * SECOND_WIDTH);
+    }
+
+    /**
+     * 绘制表盘
+     * @param canvas
+     */
+    public void drawDial(Canvas canvas) {
+        canvas.drawPath(minorTickPath, minorTickPaint);
+        canvas.drawPath(majorTickPath, majorTickPaint);
+    }
+
+    /**
+     * 绘制分针和秒针
+     * @param canvas
+     * @param minuteDegree 分针角度
+     * @param secondDegree 秒针角度
+     */
+    public void drawHands(Canvas canvas, float minuteDegree, float secondDegree) {
+        int saveCount = canvas.save();
+        canvas.rotate(minuteDegree, centerX, centerY);
+        canvas.drawPath(minuteHandPath, handPaint);
+        canvas.restoreToCount(saveCount);
+
+        saveCount = canvas.save();
+        canvas.rotate(secondDegree, centerX, centerY);
+        canvas.drawPath(secondHandPath, handPaint);
+        canvas.drawCircle(centerX, centerY, ringRadius, ringFillPaint);
+        canvas.drawCircle(centerX, centerY, ringRadius, ringPaint);
+        canvas.restoreToCount(saveCount);
+    }
+}
@@ -1,12 +1,17 @@
 package me.wmh.clockprogress;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ObjectAnimator;
 import android.content.Context;
 import android.graphics.Color;
 import android.util.AttributeSet;
+import android.util.Property;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.animation.DecelerateInterpolator;
 import android.widget.AbsListView;
 import android.widget.AbsListView.OnScrollListener;
 import android.widget.LinearLayout;
@@ -15,9 +20,9 @@ import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 /**
  * ListView下拉刷新和加载更多
@@ -31,110 +36,119 @@ public class CustomListView extends ListView implements OnScrollListener {
     private final static String DATE_FORMAT_STR = "yyyy-MM-dd HH:mm";
 
     /**
-     * 实际的padding的距离与界面上偏移距离的比例(即下拉刷新的阻尼度)
+     * 下拉刷新和加载更多的状态，状态定义见PullStateMachine
      */
-    private final static int RATIO = 3;
+    private final PullStateMachine mStateMachine = new PullStateMachine();
 
     /**
-     * 已经达到下拉距离的要求，状态为释放刷新
+     * 下拉时修改HeadView的paddingTop(每次移动都会重新布局)
      */
-    private final static int RELEASE_TO_REFRESH = 0;
+    public final static int PULL_MODE_PADDING = 0;
 
     /**
-     * 还没有达到下拉距离要求，状态为下拉刷新
+     * 下拉时只移动子view的位置(offsetTopAndBottom)，只在刷新状态确定时才重新布局
      */
-    private final static int PULL_TO_REFRESH = 1;
+    public final static int PULL_MODE_TRANSLATION = 1;
 
     /**
-     * 正在下拉刷新中
+     * <p/>0:PULL_MODE_PADDING;
+     * <p/>1:PULL_MODE_TRANSLATION;
      */
-    private final static int HEADER_REFRESHING = 2;
+    private int mPullMode = PULL_MODE_PADDING;
 
     /**
-     * 下拉刷新完成
+     * HeadView和列表内容相对布局位置向下移动的距离(PULL_MODE_TRANSLATION模式的下拉和归位动画)
+     * <br>直接移动子view，不使用ListView的scrollY：ListView在顶部拖动时的边缘回弹处理也会写scrollY，会覆盖下拉的距离。
+     * <br>重新布局会把子view放回原位，在layoutChildren之后恢复。
      */
-    private final static int HEADER_REFRESHING_DONE = 3;
+    private int mHeaderPullOffset;
 
     /**
-     * <p/>0:RELEASE_TO_REFRESH;
-     * <p/>1:PULL_TO_REFRESH;
-     * <p/>2:HEADER_REFRESHING;
-     * <p/>3:HEADER_REFRESHING_DONE;
+     * 归位动画修改的属性
      */
-    private int mHeadState;
+    private static final Property<CustomListView, Integer> HEADER_PULL_OFFSET =
+            new Property<CustomListView, Integer>(Integer.class, "headerPullOffset") {
+                @Override
+                public Integer get(CustomListView list) {
+                    return list.mHeaderPullOffset;
+                }
 
-    /**
-     * 加载更多中
-     */
-    private final static int FOOTER_LOADING = 1;
+                @Override
+                public void set(CustomListView list, Integer value) {
+                    list.setSettleOffset(value);
+                }
+            };
 
     /**
-     * 手动加载更多完成
+     * 松手刷新时HeadView归位动画的默认时长(毫秒)
      */
-    private final static int FOOTER_MANUAL_LOAD_DONE = 2;
+    public final static int DEFAULT_RELEASE_DURATION = 200;
 
     /**
-     * 自动加载更多完成
+     * 取消下拉时HeadView收起动画的默认时长(毫秒)
      */
-    private final static int FOOTER_AUTO_LOAD_DONE = 3;
+    public final static int DEFAULT_CANCEL_DURATION = 200;
 
     /**
-     * 加载更多错误
+     * 刷新完成时HeadView收起动画的默认时长(毫秒)
      */
-    private final static int FOOTER_LOAD_ERROR = 4;
+    public final static int DEFAULT_REFRESH_COMPLETE_DURATION = 300;
 
     /**
-     * <p/>1:FOOTER_LOADING;
-     * <p/>2:FOOTER_MANUAL_LOAD_DONE;
-     * <p/>3:FOOTER_AUTO_LOAD_DONE;
-     * <p/>4:FOOTER_LOAD_ERROR;
+     * HeadView归位/收起动画，修改mHeaderPullOffset，不需要重新布局
+     * <br>属性动画仍然在主线程计算每一帧；新的触摸会把它结束在最终位置
      */
-    private int mFooterState;
+    private ObjectAnimator mSettleAnimator;
 
-    private String PULL_TO_REFRESH_TXT = "";
-    private String RELEASE_TO_REFRESH_TXT = "";
+    private int mReleaseDuration = DEFAULT_RELEASE_DURATION;
+    private int mCancelDuration = DEFAULT_CANCEL_DURATION;
+    private int mRefreshCompleteDuration = DEFAULT_REFRESH_COMPLETE_DURATION;
 
-    private boolean isPullDownRefreshing = false;
-    private boolean isPullUpLoading = false;
+    /**
+     * 是否正在由onRefreshComplete收起HeadView
+     */
+    private boolean mIsRefreshCompleting;
 
     /**
-     * 是否可以加载更多
+     * "上次更新"显示的时间
      */
-    private boolean mCanLoadMore = false;
+    private long mLastUpdatedTime;
+
     /**
-     * 是否可以下拉刷新
+     * 上次成功刷新的时间，0表示还没有刷新过，setRefreshTtl按这个时间判断数据是否新鲜
+     * <br>只在刷新成功或者从PageDiskCache恢复时设置，setAdapter不会改变它
      */
-    private boolean mCanRefresh = false;
+    private long mLastRefreshTime;
+
     /**
-     * 是否可以自动加载更多（注意，先判断是否可以加载更多，如果没有，这个flag也没有意义）
+     * "上次更新"文字，同一分钟内复用
      */
-    private boolean mIsAutoLoadMore = true;
+    private final LastUpdatedLabel mLastUpdatedLabel = new LastUpdatedLabel("上次更新:", DATE_FORMAT_STR);
+    private String mShownLastUpdatedLabel;
+
+    private String PULL_TO_REFRESH_TXT = "";
+    private String RELEASE_TO_REFRESH_TXT = "";
+
+    private boolean isPullDownRefreshing = false;
+    private boolean isPullUpLoading = false;
+
     /**
      * 下拉刷新后是否显示第一条Item
      */
     private boolean mIsMoveToFirstItemAfterRefresh = true;
-    private boolean mScrollToLoadMore = true;
 
     private LayoutInflater mInflater;
     private LinearLayout mHeaderView;
     private TextView mTipsTextView;
     private TextView mLastUpdatedTextView;
-    private ClockProgress cProgress;
+    private ClockIndicator cProgress;
     private View mFooterView;
     private ProgressBar mFooterLoadProgressBar;
     private TextView mFooterLoadTipsTextView;
 
-    /**
-     * 用于保证startY的值在一个完整的touch事件中只被记录一次
-     */
-    private boolean mIsRecored;
-
     private int mHeadViewWidth;
     private int mHeadViewHeight;
 
-    private int mStartY;
-    private boolean mIsBack;
-
     private int mFirstItemIndex;
     private int mLastItemIndex;
     private int mCount;
@@ -145,6 +159,36 @@ public class CustomListView extends ListView implements OnScrollListener {
     boolean enoughCount = false;
     private OnRefreshListener mRefreshListener;
     private OnLoadMoreListener mLoadMoreListener;
+    private OnLoadMoreCancelListener mLoadMoreCancelListener;
+
+    private OnAsyncRefreshListener<Object> mAsyncRefreshListener;
+    private OnAsyncLoadMoreListener<Object> mAsyncLoadMoreListener;
+
+    /**
+     * 异步刷新和加载更多的任务，只返回最新一次任务的结果
+     */
+    private final LatestTaskRunner<Object> mRefreshRunner = new LatestTaskRunner<Object>();
+    private final LatestTaskRunner<Object> mLoadMoreRunner = new LatestTaskRunner<Object>();
+
+    /**
+     * 预加载判断，保证同一时间只有一个加载更多的请求
+     */
+    private final LoadMorePrefetcher mLoadMorePrefetcher = new LoadMorePrefetcher();
+
+    /**
+     * 刷新去重和新鲜度判断，保证同一时间只有一个刷新请求
+     */
+    private final RefreshGate mRefreshGate = new RefreshGate();
+
+    /**
+     * 下一次刷新忽略ttl，由setPullDownRefreshing(true)设置
+     */
+    private boolean mForceNextRefresh;
+
+    /**
+     * 分页Adapter，滚动时通知它可见范围
+     */
+    private PagedListAdapter<?> mPagedAdapter;
 
     public CustomListView(Context pContext, AttributeSet pAttrs) {
         super(pContext, pAttrs);
@@ -179,7 +223,7 @@ public class CustomListView extends ListView implements OnScrollListener {
     private void addHeadView() {
         mHeaderView = (LinearLayout) mInflater.inflate(R.layout.list_header_view,null);
 
-        cProgress = (ClockProgress) mHeaderView.findViewById(R.id.clock_progress);
+        cProgress = (ClockIndicator) mHeaderView.findViewById(R.id.clock_progress);
         mTipsTextView = (TextView) mHeaderView.findViewById(R.id.head_tipsTextView);
         mLastUpdatedTextView = (TextView) mHeaderView.findViewById(R.id.head_lastUpdatedTextView);
 
@@ -192,7 +236,7 @@ public class CustomListView extends ListView implements OnScrollListener {
 
         addHeaderView(mHeaderView, null, false);
 
-        mHeadState = HEADER_REFRESHING_DONE;
+        mStateMachine.setHeaderHeight(mHeadViewHeight);
     }
 
     /**
@@ -208,29 +252,13 @@ public class CustomListView extends ListView implements OnScrollListener {
 
             @Override
             public void onClick(View v) {
-                if (mCanLoadMore) {
-                    if (mCanRefresh) {
-                        // 当可以下拉刷新时，如果FootView没有正在加载，并且HeadView没有正在刷新，才可以点击加载更多。
-                        if (mFooterState != FOOTER_LOADING && mHeadState != HEADER_REFRESHING) {
-                            mFooterState = FOOTER_LOADING;
-                            onLoadMore();
-                        }
-                    } else if (mFooterState != FOOTER_LOADING) {
-                        // 当不能下拉刷新时，FootView不正在加载时，才可以点击加载更多。
-                        mFooterState = FOOTER_LOADING;
-                        onLoadMore();
-                    }
-                }
+                applyEffects(mStateMachine.onFooterClick());
             }
         });
 
         addFooterView(mFooterView, null, false);
 
-        if (mIsAutoLoadMore) {
-            mFooterState = FOOTER_AUTO_LOAD_DONE;
-        } else {
-            mFooterState = FOOTER_MANUAL_LOAD_DONE;
-        }
+        mStateMachine.onLoadMoreFinished();
     }
 
     /**
@@ -270,47 +298,37 @@ public class CustomListView extends ListView implements OnScrollListener {
         } else {
             mEnoughCount = false;
         }
-        cProgress.setClockByPaddingTop(-1*mHeadViewHeight,mHeaderView.getPaddingTop());
+        cProgress.setClockByPaddingTop(-1*mHeadViewHeight,getHeaderPaddingTop());
+        // HeadView是第一项，滚出屏幕后表针不用再转
+        cProgress.setOnScreen(pFirstVisibleItem == 0);
+        if (mPagedAdapter != null && mCount > 0) {
+            // 去掉HeaderView后的数据位置
+            int first = Math.max(0, pFirstVisibleItem - getHeaderViewsCount());
+            int last = Math.min(mCount - 1, pFirstVisibleItem + pVisibleItemCount - 1 - getHeaderViewsCount());
+            mPagedAdapter.onVisibleRangeChanged(first, Math.max(first, last));
+        }
+        if (mLoadMorePrefetcher.getPrefetchDistance() > 0) {
+            // 设置了预加载距离时，滚动过程中就开始加载更多
+            checkLoadMore(false);
+        }
     }
 
     @Override
     public void onScrollStateChanged(AbsListView pView, int pScrollState) {
-        if (mScrollToLoadMore == false) {
-            return;
-        }
-        if (mCanLoadMore) {
-            // 存在加载更多功能
-            if (mLastItemIndex == mCount && pScrollState == SCROLL_STATE_IDLE) {
-                // SCROLL_STATE_IDLE = 0 表示 滑动停止
-                if (mFooterState != FOOTER_LOADING) {
-                    if (mIsAutoLoadMore) {
-                        //可以自动加载更多的情况
-                        if (mCanRefresh) {
-                            // 可以下拉刷新的情况下再判断是否正在下拉刷新
-                            if (mHeadState != HEADER_REFRESHING) {
-                                mFooterState = FOOTER_LOADING;
-                                onLoadMore();
-                                changeFooterViewByState();
-                            }
-                        } else {
-                            // 不能下拉刷新的情况下，我们直接进行加载更多。
-                            mFooterState = FOOTER_LOADING;
-                            onLoadMore();
-                            changeFooterViewByState();
-                        }
-                    } else {
-                        // 不能自动加载更多情况，我们让FooterView显示 “点击加载”
-                        // FootView显示 : 点击加载 ---> 加载中...
-                        mFooterState = FOOTER_MANUAL_LOAD_DONE;
-                        changeFooterViewByState();
-                    }
-                }
-            }
-        } else if (mFooterView != null && mFooterView.getVisibility() == VISIBLE) {
-            // 突然关闭加载更多功能之后，我们要移除FootView。
-            mFooterView.setVisibility(View.GONE);
-            this.removeFooterView(mFooterView);
-        }
+        // SCROLL_STATE_IDLE = 0 表示 滑动停止
+        checkLoadMore(pScrollState == SCROLL_STATE_IDLE);
+    }
+
+    /**
+     * 判断是否需要加载更多
+     * <br>停止滚动时，或者设置了预加载距离时在滚动过程中判断
+     *
+     * @param pIdle 是否已经停止滚动
+     */
+    private void checkLoadMore(boolean pIdle) {
+        boolean reachedEnd = mStateMachine.isScrollToLoadMore() && mStateMachine.isCanLoadMore()
+                && mLoadMorePrefetcher.shouldLoadMore(mLastItemIndex, mCount, pIdle);
+        applyEffects(mStateMachine.onLoadMoreCheck(reachedEnd, pIdle));
     }
 
     /**
@@ -321,108 +339,278 @@ public class CustomListView extends ListView implements OnScrollListener {
     @Override
     public void setAdapter(ListAdapter adapter) {
         // listview重设数据时更新下刷新时间
-        mLastUpdatedTextView.setText("上次更新:"+ new SimpleDateFormat(DATE_FORMAT_STR, Locale.CHINA).format(new Date()));
+        setLastUpdatedTime(System.currentTimeMillis());
+        mPagedAdapter = adapter instanceof PagedListAdapter ? (PagedListAdapter<?>) adapter : null;
         super.setAdapter(adapter);
     }
 
     public boolean onTouchEvent(MotionEvent event) {
-        if (mCanRefresh) {
-            if (mCanLoadMore && mFooterState == FOOTER_LOADING) {
-                // 如果存在加载更多功能，并且当前正在加载更多，默认不允许下拉刷新，必须加载完毕后才能使用。
-                return super.onTouchEvent(event);
-            }
-            switch (event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    if (mFirstItemIndex == 0 && !mIsRecored) {
-                        mIsRecored = true;
-                        mStartY = (int) event.getY();
-                    }
-                    break;
-                case MotionEvent.ACTION_UP:
-                    if (mHeadState != HEADER_REFRESHING) {
-                        if (mHeadState == HEADER_REFRESHING_DONE) {
-
-                        }
-                        if (mHeadState == PULL_TO_REFRESH) {
-                            mHeadState = HEADER_REFRESHING_DONE;
-                            changeHeaderViewByState();
-                        }
-                        if (mHeadState == RELEASE_TO_REFRESH) {
-                            mHeadState = HEADER_REFRESHING;
-                            changeHeaderViewByState();
-                            onRefresh();
-                        }
-                    }
-
-                    mIsRecored = false;
-                    mIsBack = false;
-                    break;
-                case MotionEvent.ACTION_MOVE:
-                    int tempY = (int) event.getY();
-
-                    if (!mIsRecored && mFirstItemIndex == 0) {
-                        mIsRecored = true;
-                        mStartY = tempY;
-                    }
-
-                    if (mHeadState != HEADER_REFRESHING && mIsRecored) {
-                        // 保证在设置padding的过程中，当前的位置一直是在head，否则如果当列表超出屏幕的话，当在上推的时候，列表会同时进行滚动
-                        if (mHeadState == RELEASE_TO_REFRESH) {
-                            // 可以松手去刷新了
-                            setSelection(0);
-
-                            if (((tempY - mStartY) / RATIO < mHeadViewHeight) && (tempY - mStartY) > 0) {
-                                // 往上推了，推到了屏幕足够掩盖head的程度，但是还没有推到全部掩盖的地步
-                                mHeadState = PULL_TO_REFRESH;
-                                changeHeaderViewByState();
-                            } else if (tempY - mStartY <= 0) {
-                                // 一下子推到顶了
-                                mHeadState = HEADER_REFRESHING_DONE;
-                                changeHeaderViewByState();
-                            }
-                            // 往下拉了，或者还没有上推到屏幕顶部掩盖head的地步
-                        }
-                        if (mHeadState == PULL_TO_REFRESH) {
-                            // 还没有到达显示松开刷新的时候
-                            setSelection(0);
-
-                            if ((tempY - mStartY) / RATIO >= mHeadViewHeight) {
-                                // 下拉到可以进入RELEASE_TO_REFRESH的状态
-                                mHeadState = RELEASE_TO_REFRESH;
-                                mIsBack = true;
-                                changeHeaderViewByState();
-                            } else if (tempY - mStartY <= 0) {
-                                mHeadState = HEADER_REFRESHING_DONE;
-                                changeHeaderViewByState();
-                            }
-                        }
-                        if (mHeadState == HEADER_REFRESHING_DONE) {
-                            if (tempY - mStartY > 0) {
-                                mHeadState = PULL_TO_REFRESH;
-                                changeHeaderViewByState();
-                            }
-                        }
-
-                        //改变headerview的padding显示多少内容
-                        if (mHeadState == PULL_TO_REFRESH) {
-                            mHeaderView.setPadding(0, -1 * mHeadViewHeight+ (tempY - mStartY) / RATIO, 0, 0);
-                        }
-                        if (mHeadState == RELEASE_TO_REFRESH) {
-                            mHeaderView.setPadding(0, (tempY - mStartY) / RATIO- mHeadViewHeight, 0, 0);
-                        }
-                    }
-                    break;
+        long start = FrameTimings.begin();
+        boolean handled = handleTouchEvent(event);
+        FrameTimings.end(FrameTimings.SECTION_LIST_TOUCH, start);
+        return handled;
+    }
+
+    private boolean handleTouchEvent(MotionEvent event) {
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                // 新的触摸打断正在进行的归位动画
+                abortSettle();
+                applyEffects(mStateMachine.onDown((int) event.getY(), mFirstItemIndex));
+                break;
+            case MotionEvent.ACTION_UP:
+                applyEffects(mStateMachine.onUp());
+                break;
+            case MotionEvent.ACTION_MOVE:
+                applyEffects(mStateMachine.onMove((int) event.getY(), mFirstItemIndex));
+                break;
+        }
+        boolean handled = super.onTouchEvent(event);
+        if (mHeaderPullOffset != 0) {
+            // ListView处理拖动时可能移动了子view
+            restoreHeaderPullOffset();
+        }
+        return handled;
+    }
+
+    /**
+     * 执行状态机返回的操作
+     *
+     * @param effects PullStateMachine.EFFECT_*的组合
+     */
+    private void applyEffects(int effects) {
+        if (effects == PullStateMachine.EFFECT_NONE) {
+            return;
+        }
+        if ((effects & PullStateMachine.EFFECT_REFRESH) != 0) {
+            effects = gateRefresh(effects);
+        }
+        if ((effects & PullStateMachine.EFFECT_KEEP_HEADER) != 0) {
+            keepHeaderSelected();
+        }
+        if ((effects & PullStateMachine.EFFECT_HEADER_STATE) != 0) {
+            changeHeaderViewByState();
+        }
+        if ((effects & PullStateMachine.EFFECT_HEADER_OFFSET) != 0) {
+            setHeaderPaddingTop(mStateMachine.getHeaderPaddingTop());
+        }
+        if ((effects & PullStateMachine.EFFECT_REFRESH) != 0) {
+            onRefresh();
+        }
+        if ((effects & PullStateMachine.EFFECT_LOAD_MORE) != 0) {
+            onLoadMore();
+        }
+        if ((effects & PullStateMachine.EFFECT_FOOTER_STATE) != 0) {
+            changeFooterViewByState();
+        }
+        if ((effects & PullStateMachine.EFFECT_HIDE_FOOTER) != 0
+                && mFooterView != null && mFooterView.getVisibility() == VISIBLE) {
+            // 突然关闭加载更多功能之后，我们要移除FootView。
+            mFooterView.setVisibility(View.GONE);
+            this.removeFooterView(mFooterView);
+        }
+    }
+
+    /**
+     * 进入刷新状态前检查是否真的需要请求
+     * <br>已经有请求在进行时合并到这个请求，HeadView保持原样；
+     * 距离上次更新不到ttl时不请求，HeadView从当前位置直接收起，上次更新时间不变。
+     *
+     * @param effects 包含EFFECT_REFRESH
+     * @return 合并或不请求时去掉刷新相关的操作
+     */
+    private int gateRefresh(int effects) {
+        boolean force = mForceNextRefresh;
+        mForceNextRefresh = false;
+        if (mRefreshListener == null && mAsyncRefreshListener == null) {
+            return effects;
+        }
+        int skipped = PullStateMachine.EFFECT_REFRESH | PullStateMachine.EFFECT_HEADER_STATE
+                | PullStateMachine.EFFECT_HEADER_OFFSET;
+        switch (mRefreshGate.onTrigger(System.currentTimeMillis(), mLastRefreshTime, force)) {
+            case RefreshGate.COALESCE:
+                return effects & ~skipped;
+            case RefreshGate.SUPPRESS:
+                mIsRefreshCompleting = true;
+                applyEffects(mStateMachine.onRefreshFinished());
+                mIsRefreshCompleting = false;
+                return effects & ~skipped;
+            default:
+                return effects;
+        }
+    }
+
+    /**
+     * 下拉过程中设置HeadView显示的高度
+     * <br>PULL_MODE_PADDING模式下修改paddingTop；PULL_MODE_TRANSLATION模式下只移动子view，不触发requestLayout
+     *
+     * @param paddingTop 相当于HeadView的paddingTop
+     */
+    private void setHeaderPaddingTop(int paddingTop) {
+        if (mPullMode == PULL_MODE_TRANSLATION) {
+            setHeaderPullOffset(paddingTop + mHeadViewHeight);
+            // 没有重新布局就不会回调onScroll，这里直接更新表针
+            cProgress.setClockByPaddingTop(-1 * mHeadViewHeight, paddingTop);
+        } else {
+            mHeaderView.setPadding(0, paddingTop, 0, 0);
+        }
+    }
+
+    /**
+     * 获取HeadView当前相当于多少paddingTop(包括PULL_MODE_TRANSLATION模式下的移动距离)
+     *
+     * @return
+     */
+    private int getHeaderPaddingTop() {
+        return mHeaderView.getPaddingTop() + mHeaderPullOffset;
+    }
+
+    /**
+     * 刷新状态确定后清除PULL_MODE_TRANSLATION模式下的移动距离
+     */
+    private void resetHeaderPullOffset() {
+        setHeaderPullOffset(0);
+    }
+
+    /**
+     * 设置HeadView和列表内容相对布局位置向下移动的距离
+     *
+     * @param offset 像素，可以为负数(HeadView刚按新的高度布局、动画从原来的高度开始时)
+     */
+    private void setHeaderPullOffset(int offset) {
+        if (offset != mHeaderPullOffset) {
+            mHeaderPullOffset = offset;
+            restoreHeaderPullOffset();
+        }
+    }
+
+    /**
+     * 把子view移动到 列表顶部 + mHeaderPullOffset 的位置
+     * <br>只在HeadView可见时移动；HeadView在布局中总是从列表顶部开始
+     */
+    private void restoreHeaderPullOffset() {
+        if (getFirstVisiblePosition() != 0 || getChildCount() == 0) {
+            return;
+        }
+        int delta = getListPaddingTop() + mHeaderPullOffset - getChildAt(0).getTop();
+        if (delta == 0) {
+            return;
+        }
+        // 和ViewGroup.offsetChildrenTopAndBottom相同，只修改子view的位置，不会重新布局
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            getChildAt(i).offsetTopAndBottom(delta);
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        super.layoutChildren();
+        if (mHeaderPullOffset != 0) {
+            restoreHeaderPullOffset();
+        }
+    }
+
+    /**
+     * 刷新状态确定、HeadView已经按新状态设置padding后，播放从原来显示的高度到新高度的归位动画
+     * <br>先把子view移回到原来的显示高度，再用属性动画把移动距离变回0，整个过程不需要重新布局
+     *
+     * @param shownBefore 状态变化前HeadView显示的高度
+     * @param shownAfter 状态变化后HeadView布局的高度
+     * @param duration 动画时长，小于等于0时没有动画
+     */
+    private void startSettle(int shownBefore, int shownAfter, int duration) {
+        cancelSettle();
+        int startOffset = shownBefore - shownAfter;
+        if (duration <= 0 || startOffset == 0 || mStateMachine.isRecored() || getFirstVisiblePosition() != 0) {
+            setHeaderPullOffset(0);
+            return;
+        }
+        // 收起过程中HeadView的高度已经为0，需要让它的内容画到自身范围之外
+        setClipChildren(false);
+        setHeaderPullOffset(startOffset);
+        mSettleAnimator = ObjectAnimator.ofInt(this, HEADER_PULL_OFFSET, startOffset, 0);
+        mSettleAnimator.setDuration(duration);
+        mSettleAnimator.setInterpolator(new DecelerateInterpolator());
+        mSettleAnimator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                if (mSettleAnimator == animation) {
+                    mSettleAnimator = null;
+                    finishSettle();
+                }
             }
+        });
+        mSettleAnimator.start();
+    }
+
+    /**
+     * 停止归位动画，直接移动到最终位置
+     */
+    private void abortSettle() {
+        if (mSettleAnimator != null) {
+            // end()会设置最终值并回调onAnimationEnd
+            mSettleAnimator.end();
         }
-        return super.onTouchEvent(event);
+    }
+
+    /**
+     * 丢弃正在进行的归位动画，由调用者设置新的位置
+     */
+    private void cancelSettle() {
+        ObjectAnimator animator = mSettleAnimator;
+        if (animator != null) {
+            mSettleAnimator = null;
+            animator.cancel();
+        }
+    }
+
+    /**
+     * 归位动画的每一帧
+     */
+    private void setSettleOffset(int offset) {
+        setHeaderPullOffset(offset);
+        if (mStateMachine.getHeadState() != PullStateMachine.HEADER_REFRESHING) {
+            // 收起过程中秒针跟着往回转
+            cProgress.setClockByPaddingTop(-1 * mHeadViewHeight, getHeaderPaddingTop());
+        }
+    }
+
+    /**
+     * 归位动画结束
+     */
+    private void finishSettle() {
+        setHeaderPullOffset(0);
+        setClipChildren(mPullMode != PULL_MODE_TRANSLATION);
+        if (mStateMachine.getHeadState() != PullStateMachine.HEADER_REFRESHING) {
+            cProgress.setClockByPaddingTop(-1 * mHeadViewHeight, getHeaderPaddingTop());
+        }
+    }
+
+    /**
+     * 下拉过程中保持列表停在HeadView
+     * <br>PULL_MODE_TRANSLATION模式下已经在顶部时不再调用setSelection，避免每次移动都重新布局
+     */
+    private void keepHeaderSelected() {
+        if (mPullMode == PULL_MODE_TRANSLATION && getFirstVisiblePosition() == 0
+                && getChildCount() > 0 && getChildAt(0).getTop() == getListPaddingTop() + mHeaderPullOffset) {
+            return;
+        }
+        setSelection(0);
     }
 
     /**
      * 根据各种状态改变headerview显示内容
      */
     private void changeHeaderViewByState() {
-        switch (mHeadState) {
-            case RELEASE_TO_REFRESH:
+        long start = FrameTimings.begin();
+        updateHeaderViewByState();
+        FrameTimings.end(FrameTimings.SECTION_HEADER_STATE, start);
+    }
+
+    private void updateHeaderViewByState() {
+        switch (mStateMachine.getHeadState()) {
+            case PullStateMachine.RELEASE_TO_REFRESH:
                 // 释放刷新状态
                 mTipsTextView.setVisibility(View.VISIBLE);
                 mLastUpdatedTextView.setVisibility(View.VISIBLE);
@@ -432,30 +620,32 @@ public class CustomListView extends ListView implements OnScrollListener {
                     mTipsTextView.setText(RELEASE_TO_REFRESH_TXT);
                 }
                 break;
-            case PULL_TO_REFRESH:
+            case PullStateMachine.PULL_TO_REFRESH:
                 //下拉刷新状态
                 mTipsTextView.setVisibility(View.VISIBLE);
                 mLastUpdatedTextView.setVisibility(View.VISIBLE);
-                if (mIsBack) {
-                    // 是由RELEASE_TO_REFRESH状态转变来的
-                    mIsBack = false;
-                }
                 if (PULL_TO_REFRESH_TXT.equals("")) {
                     mTipsTextView.setText(R.string.pull_to_refresh_pull_label);
                 } else {
                     mTipsTextView.setText(PULL_TO_REFRESH_TXT);
                 }
                 break;
-            case HEADER_REFRESHING:
+            case PullStateMachine.HEADER_REFRESHING:
                 //正在刷新中
+                int shownBeforeRefreshing = getHeaderPaddingTop() + mHeadViewHeight;
+                resetHeaderPullOffset();
                 mHeaderView.setPadding(0, 0, 0, 0);
+                startSettle(shownBeforeRefreshing, mHeadViewHeight, mReleaseDuration);
                 mTipsTextView.setText(R.string.pull_to_refresh_refreshing_label);
                 mLastUpdatedTextView.setVisibility(View.VISIBLE);
                 break;
-            case HEADER_REFRESHING_DONE:
+            case PullStateMachine.HEADER_REFRESHING_DONE:
                 //下拉刷新完成
+                int shownBeforeDone = getHeaderPaddingTop() + mHeadViewHeight;
+                resetHeaderPullOffset();
                 mHeaderView.setPadding(0, -1 * mHeadViewHeight, 0, 0);
                 cProgress.setClockToZero();
+                startSettle(shownBeforeDone, 0, mIsRefreshCompleting ? mRefreshCompleteDuration : mCancelDuration);
                 if (PULL_TO_REFRESH_TXT.equals("")) {
                     mTipsTextView.setText(R.string.pull_to_refresh_pull_label);
                 } else {
@@ -476,7 +666,7 @@ public class CustomListView extends ListView implements OnScrollListener {
         if (null != mFooterView) {
             mFooterView.setClickable(false);
         }
-        mScrollToLoadMore = false;
+        mStateMachine.setScrollToLoadMore(false);
     }
 
     /**
@@ -489,25 +679,24 @@ public class CustomListView extends ListView implements OnScrollListener {
         if (null != mFooterView) {
             mFooterView.setClickable(true);
         }
-        mScrollToLoadMore = true;
+        mStateMachine.setScrollToLoadMore(true);
     }
 
     /**
      * 设置底部内容，底部显示"加载失败，点击重试"
      */
     public void setFooterViewError() {
-        mFooterState = FOOTER_LOAD_ERROR;
-        changeFooterViewByState();
+        applyEffects(mStateMachine.onLoadMoreError());
     }
 
     /**
      * 清除底部设置的内容、属性
      */
     public void clearFooterView() {
-        if (mCanLoadMore && getFooterViewsCount() > 0) {
+        if (mStateMachine.isCanLoadMore() && getFooterViewsCount() > 0) {
             mFooterLoadTipsTextView.setText("");
             mFooterView.setOnClickListener(null);
-            mScrollToLoadMore = false;
+            mStateMachine.setScrollToLoadMore(false);
         }
     }
 
@@ -515,23 +704,23 @@ public class CustomListView extends ListView implements OnScrollListener {
      * 根据各种状态改变footerview显示内容
      */
     private void changeFooterViewByState() {
-        if (mCanLoadMore) {
+        if (mStateMachine.isCanLoadMore()) {
             // 允许加载更多
-            switch (mFooterState) {
-                case FOOTER_LOADING:
+            switch (mStateMachine.getFooterState()) {
+                case PullStateMachine.FOOTER_LOADING:
                     //加载更多中
                     mFooterLoadTipsTextView.setText(R.string.p2refresh_doing_end_refresh);
                     mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
                     mFooterLoadProgressBar.setVisibility(View.VISIBLE);
                     break;
-                case FOOTER_MANUAL_LOAD_DONE:
+                case PullStateMachine.FOOTER_MANUAL_LOAD_DONE:
                     //手动点击加载更多之后
                     mFooterLoadTipsTextView.setText(R.string.p2refresh_end_load_more);
                     mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
                     mFooterLoadProgressBar.setVisibility(View.GONE);
                     mFooterView.setVisibility(View.VISIBLE);
                     break;
-                case FOOTER_AUTO_LOAD_DONE:
+                case PullStateMachine.FOOTER_AUTO_LOAD_DONE:
                     // 自动刷新完成
                     mFooterLoadTipsTextView.setText(R.string.p2refresh_head_load_more);
                     mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
@@ -546,7 +735,7 @@ public class CustomListView extends ListView implements OnScrollListener {
                     // }
 
                     break;
-                case FOOTER_LOAD_ERROR:
+                case PullStateMachine.FOOTER_LOAD_ERROR:
                     // 刷新失败
                     mFooterLoadTipsTextView.setText(R.string.p2refresh_end_load_more_error);
                     mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
@@ -573,13 +762,142 @@ public class CustomListView extends ListView implements OnScrollListener {
         RELEASE_TO_REFRESH_TXT = txt;
     }
 
+    /**
+     * 设置下拉的实现方式
+     *
+     * @param pPullMode PULL_MODE_PADDING或PULL_MODE_TRANSLATION
+     */
+    public void setPullMode(int pPullMode) {
+        abortSettle();
+        resetHeaderPullOffset();
+        mPullMode = pPullMode;
+        // HeadView收起时高度为0，移动绘制位置时需要让它的内容画到自身范围之外
+        setClipChildren(mPullMode != PULL_MODE_TRANSLATION);
+    }
+
+    public int getPullMode() {
+        return mPullMode;
+    }
+
+    /**
+     * 设置松手刷新时HeadView归位动画的时长
+     *
+     * @param pReleaseDuration 毫秒，0表示没有动画
+     */
+    public void setReleaseDuration(int pReleaseDuration) {
+        mReleaseDuration = pReleaseDuration;
+    }
+
+    /**
+     * 设置取消下拉时HeadView收起动画的时长
+     *
+     * @param pCancelDuration 毫秒，0表示没有动画
+     */
+    public void setCancelDuration(int pCancelDuration) {
+        mCancelDuration = pCancelDuration;
+    }
+
+    /**
+     * 设置刷新完成时HeadView收起动画的时长
+     *
+     * @param pRefreshCompleteDuration 毫秒，0表示没有动画
+     */
+    public void setRefreshCompleteDuration(int pRefreshCompleteDuration) {
+        mRefreshCompleteDuration = pRefreshCompleteDuration;
+    }
+
+    /**
+     * 设置"上次更新"显示的时间，不影响setRefreshTtl的判断
+     *
+     * @param pTime 毫秒
+     */
+    public void setLastUpdatedTime(long pTime) {
+        mLastUpdatedTime = pTime;
+        String label = mLastUpdatedLabel.format(pTime);
+        if (label != mShownLastUpdatedLabel) {
+            // 同一分钟内文字不变，不需要重新设置(setText会触发requestLayout)
+            mShownLastUpdatedLabel = label;
+            mLastUpdatedTextView.setText(label);
+        }
+    }
+
+    public long getLastUpdatedTime() {
+        return mLastUpdatedTime;
+    }
+
+    /**
+     * 冷启动时恢复上次成功刷新的时间，例如PageDiskCache.OnRestoreListener回调的lastRefreshTime
+     * <br>同时更新"上次更新"显示的时间
+     *
+     * @param pTime 毫秒，0表示没有缓存，之后第一次下拉一定会刷新
+     */
+    public void restoreLastRefreshTime(long pTime) {
+        mLastRefreshTime = pTime;
+        if (pTime > 0) {
+            setLastUpdatedTime(pTime);
+        }
+    }
+
+    /**
+     * 上次成功刷新的时间
+     *
+     * @return 毫秒，0表示还没有刷新过
+     */
+    public long getLastRefreshTime() {
+        return mLastRefreshTime;
+    }
+
+    /**
+     * HeadView中的表，测试时检查重绘次数
+     */
+    ClockIndicator getClockIndicator() {
+        return cProgress;
+    }
+
+    /**
+     * 刷新过程中显示确定的进度，例如已下载的比例，可以在工作线程调用
+     *
+     * @param pProgress 0~1
+     */
+    public void setRefreshProgress(float pProgress) {
+        cProgress.setProgress(pProgress);
+    }
+
     /**
      * 设置正在刷新中
      */
     public void setPullDownRefreshing() {
-        mHeadState = HEADER_REFRESHING;
-        changeHeaderViewByState();
-        onRefresh();
+        setPullDownRefreshing(false);
+    }
+
+    /**
+     * 设置正在刷新中
+     * <br>已经在刷新时合并到进行中的请求，不会重复调用onRefresh
+     *
+     * @param pForce 是否忽略刷新间隔(setRefreshTtl)，例如切换账号后必须重新请求
+     */
+    public void setPullDownRefreshing(boolean pForce) {
+        mForceNextRefresh = pForce;
+        applyEffects(mStateMachine.startRefreshing());
+    }
+
+    /**
+     * 设置数据的有效期：距离上次更新不到这个时间时，下拉不会再调用onRefresh，直接收起HeadView
+     * <br>按上次成功刷新的时间判断(刷新成功或restoreLastRefreshTime)，setAdapter和setLastUpdatedTime不算
+     *
+     * @param pTtlMillis 毫秒，RefreshGate.NO_TTL表示每次下拉都刷新
+     */
+    public void setRefreshTtl(long pTtlMillis) {
+        mRefreshGate.setTtlMillis(pTtlMillis);
+    }
+
+    /**
+     * 刷新的统计：实际请求、合并、因为数据新鲜而没有请求的次数
+     *
+     * @return
+     */
+    public RefreshGate getRefreshGate() {
+        return mRefreshGate;
     }
 
     /**
@@ -596,10 +914,62 @@ public class CustomListView extends ListView implements OnScrollListener {
         public void onLoadMore();
     }
 
+    /**
+     * 异步下拉刷新接口
+     * <br>任务在后台线程池执行，结果回到主线程后自动调用onRefreshComplete()，被新的刷新取代的结果会被丢弃
+     */
+    public interface OnAsyncRefreshListener<T> {
+        /**
+         * 主线程调用，返回在后台执行的刷新任务
+         */
+        public Callable<T> onCreateRefreshTask();
+
+        /**
+         * 主线程回调刷新结果
+         */
+        public void onRefreshResult(T result);
+
+        /**
+         * 主线程回调刷新失败
+         */
+        public void onRefreshError(Exception e);
+    }
+
+    /**
+     * 异步加载更多接口
+     * <br>任务在后台线程池执行，结果回到主线程后自动调用onLoadMoreComplete()，失败时显示"加载失败，点击重试"
+     */
+    public interface OnAsyncLoadMoreListener<T> {
+        /**
+         * 主线程调用，返回在后台执行的加载任务
+         */
+        public Callable<T> onCreateLoadMoreTask();
+
+        /**
+         * 主线程回调加载结果
+         */
+        public void onLoadMoreResult(T result);
+
+        /**
+         * 主线程回调加载失败
+         */
+        public void onLoadMoreError(Exception e);
+    }
+
+    /**
+     * 加载更多被取消的接口(例如加载过程中开始了下拉刷新，这一页的结果已经过期)
+     */
+    public interface OnLoadMoreCancelListener {
+        /**
+         * @param cursor 被取消的请求的游标
+         */
+        public void onLoadMoreCancel(int cursor);
+    }
+
     public void setOnRefreshListener(OnRefreshListener pRefreshListener) {
         if (pRefreshListener != null) {
             mRefreshListener = pRefreshListener;
-            mCanRefresh = true;
+            mStateMachine.setCanRefresh(true);
         }
     }
 
@@ -609,12 +979,61 @@ public class CustomListView extends ListView implements OnScrollListener {
         }
     }
 
+    public void setOnLoadMoreCancelListener(OnLoadMoreCancelListener pLoadMoreCancelListener) {
+        mLoadMoreCancelListener = pLoadMoreCancelListener;
+        updateLoadMoreCancellable();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setOnAsyncRefreshListener(OnAsyncRefreshListener<?> pAsyncRefreshListener) {
+        if (pAsyncRefreshListener != null) {
+            mAsyncRefreshListener = (OnAsyncRefreshListener<Object>) pAsyncRefreshListener;
+            mStateMachine.setCanRefresh(true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setOnAsyncLoadMoreListener(OnAsyncLoadMoreListener<?> pAsyncLoadMoreListener) {
+        if (pAsyncLoadMoreListener != null) {
+            mAsyncLoadMoreListener = (OnAsyncLoadMoreListener<Object>) pAsyncLoadMoreListener;
+            updateLoadMoreCancellable();
+        }
+    }
+
+    /**
+     * 设置异步刷新和加载更多使用的线程池
+     *
+     * @param pExecutor 为null时使用默认线程池
+     */
+    public void setTaskExecutor(Executor pExecutor) {
+        mRefreshRunner.setExecutor(pExecutor);
+        mLoadMoreRunner.setExecutor(pExecutor);
+    }
+
+    /**
+     * 正在进行的加载更多是否可以被下拉刷新取消(异步接口或者设置了取消接口)
+     * <br>不能取消时，加载更多过程中不允许下拉刷新，必须加载完毕后才能使用。
+     */
+    private void updateLoadMoreCancellable() {
+        mStateMachine.setLoadMoreCancellable(mAsyncLoadMoreListener != null || mLoadMoreCancelListener != null);
+    }
+
     /**
      * 正在下拉刷新
      */
     private void onRefresh() {
-        if (mRefreshListener != null) {
-            mRefreshListener.onRefresh();
+        if (mRefreshListener != null || mAsyncRefreshListener != null) {
+            if (mLoadMoreRunner.isRunning()
+                    || (mLoadMoreCancelListener != null && mLoadMorePrefetcher.isInFlight())) {
+                // 加载更多的结果基于刷新前的数据，刷新后已经过期；同步的加载更多只有设置了取消接口时才能取消
+                cancelLoadMore();
+            }
+            if (mRefreshListener != null) {
+                mRefreshListener.onRefresh();
+            }
+            if (mAsyncRefreshListener != null) {
+                startAsyncRefresh();
+            }
             cProgress.setStartAutoRotate();
             isPullDownRefreshing = true;
         }
@@ -624,12 +1043,70 @@ public class CustomListView extends ListView implements OnScrollListener {
      * 正在加载更多
      */
     private void onLoadMore() {
-        if (mLoadMoreListener != null) {
+        if (mLoadMoreListener != null || mAsyncLoadMoreListener != null) {
             isPullUpLoading = true;
+            mLoadMorePrefetcher.begin(mCount);
             mFooterLoadTipsTextView.setText(R.string.p2refresh_doing_end_refresh);
             mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
             mFooterLoadProgressBar.setVisibility(View.VISIBLE);
-            mLoadMoreListener.onLoadMore();
+            if (mLoadMoreListener != null) {
+                mLoadMoreListener.onLoadMore();
+            }
+            if (mAsyncLoadMoreListener != null) {
+                startAsyncLoadMore();
+            }
+        }
+    }
+
+    /**
+     * 在后台执行异步刷新任务
+     */
+    private void startAsyncRefresh() {
+        final OnAsyncRefreshListener<Object> listener = mAsyncRefreshListener;
+        mRefreshRunner.start(listener.onCreateRefreshTask(), new LatestTaskRunner.Callback<Object>() {
+            @Override
+            public void onResult(Object result) {
+                listener.onRefreshResult(result);
+                onRefreshComplete();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                listener.onRefreshError(e);
+                onRefreshFailed();
+            }
+        });
+    }
+
+    /**
+     * 在后台执行异步加载更多任务
+     */
+    private void startAsyncLoadMore() {
+        final OnAsyncLoadMoreListener<Object> listener = mAsyncLoadMoreListener;
+        final int cursor = mLoadMorePrefetcher.getInFlightCursor();
+        mLoadMoreRunner.start(listener.onCreateLoadMoreTask(), new LatestTaskRunner.Callback<Object>() {
+            @Override
+            public void onResult(Object result) {
+                listener.onLoadMoreResult(result);
+                onLoadMoreComplete(cursor);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                listener.onLoadMoreError(e);
+                mLoadMorePrefetcher.complete(cursor);
+                isPullUpLoading = false;
+                setFooterViewError();
+            }
+        });
+    }
+
+    /**
+     * 取消正在进行的异步刷新，HeadView收起
+     */
+    public void cancelRefresh() {
+        if (mRefreshRunner.cancel() && isPullDownRefreshing) {
+            onRefreshFailed();
         }
     }
 
@@ -637,28 +1114,145 @@ public class CustomListView extends ListView implements OnScrollListener {
      * 下拉刷新完成
      */
     public void onRefreshComplete() {
+        finishRefresh(mIsMoveToFirstItemAfterRefresh, true);
+    }
+
+    /**
+     * 下拉刷新失败或被取消，HeadView收起
+     * <br>数据没有变化，不回到第一条，也不更新上次更新时间，下次下拉不会因为setRefreshTtl被跳过
+     */
+    public void onRefreshFailed() {
+        finishRefresh(false, false);
+    }
+
+    /**
+     * 下拉刷新完成，新数据在后台线程与旧数据比较后增量更新
+     * <br>内容没有变化的行不会重新绑定；第一个可见项保持在原来的像素位置，新数据插入在前面时不会跳动。
+     * <br>这种方式下不会回到第一条，忽略isMoveToFirstItemAfterRefresh。
+     *
+     * @param pAdapter 当前的Adapter
+     * @param pNewItems 刷新得到的新数据
+     */
+    public <T> void onRefreshComplete(final DiffListAdapter<T> pAdapter, List<T> pNewItems) {
+        pAdapter.computeDiff(pNewItems, new LatestTaskRunner.Callback<ListDiffer.Result<T>>() {
+            @Override
+            public void onResult(ListDiffer.Result<T> result) {
+                applyAnchored(pAdapter, result);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                onRefreshFailed();
+            }
+        });
+    }
+
+    /**
+     * 记录第一个可见项的id和位置，应用比较结果后把它恢复到原来的位置
+     */
+    private <T> void applyAnchored(DiffListAdapter<T> pAdapter, ListDiffer.Result<T> pResult) {
+        int headerCount = getHeaderViewsCount();
+        int firstPosition = getFirstVisiblePosition();
+        int dataPosition = Math.max(firstPosition, headerCount) - headerCount;
+        View anchorView = getChildAt(dataPosition + headerCount - firstPosition);
+        boolean hasAnchor = anchorView != null && dataPosition < pAdapter.getCount();
+        long anchorId = hasAnchor ? pAdapter.getItemId(dataPosition) : 0;
+        int anchorTop = hasAnchor ? anchorView.getTop() : 0;
+        if (firstPosition < headerCount) {
+            // HeadView即将收起，位置要减去它当前显示的高度
+            anchorTop -= getHeaderPaddingTop() + mHeadViewHeight;
+        }
+
+        finishRefresh(false, true);
+        pAdapter.applyDiff(pResult);
+
+        if (hasAnchor) {
+            int newPosition = pAdapter.getPositionForId(anchorId);
+            if (newPosition >= 0) {
+                setSelectionFromTop(newPosition + headerCount, anchorTop);
+            }
+        }
+    }
+
+    /**
+     * 下拉刷新结束
+     *
+     * @param pMoveToFirst 是否回到第一条
+     * @param pSucceeded 是否拿到了新数据，只有成功时才更新上次更新时间
+     */
+    private void finishRefresh(boolean pMoveToFirst, boolean pSucceeded) {
         // 下拉刷新后是否显示第一条Item
-        if (mIsMoveToFirstItemAfterRefresh) {
+        if (pMoveToFirst) {
             setSelection(0);
         }
         isPullDownRefreshing = false;
-        mHeadState = HEADER_REFRESHING_DONE;
-        // 设置最近更新时间
-        mLastUpdatedTextView.setText("上次更新:"+ new SimpleDateFormat(DATE_FORMAT_STR, Locale.CHINA).format(new Date()));
-        changeHeaderViewByState();
+        mRefreshGate.onFinished();
+        if (pSucceeded) {
+            // 设置最近更新时间
+            mLastRefreshTime = System.currentTimeMillis();
+            setLastUpdatedTime(mLastRefreshTime);
+        }
+        mIsRefreshCompleting = true;
+        applyEffects(mStateMachine.onRefreshFinished());
+        mIsRefreshCompleting = false;
     }
 
     /**
-     * 加载更多完成
+     * 取消正在进行的加载更多
+     */
+    public void cancelLoadMore() {
+        mLoadMoreRunner.cancel();
+        int cursor = mLoadMorePrefetcher.cancel();
+        if (cursor == LoadMorePrefetcher.NO_CURSOR) {
+            return;
+        }
+        isPullUpLoading = false;
+        applyEffects(mStateMachine.onLoadMoreFinished());
+        if (mLoadMoreCancelListener != null) {
+            mLoadMoreCancelListener.onLoadMoreCancel(cursor);
+        }
+    }
+
+    /**
+     * 获取正在进行的加载更多请求的游标(开始加载时的数据条数)，可以在完成时传给onLoadMoreComplete(int)
+     *
+     * @return 没有正在进行的请求时返回LoadMorePrefetcher.NO_CURSOR
+     */
+    public int getLoadMoreCursor() {
+        return mLoadMorePrefetcher.getInFlightCursor();
+    }
+
+    /**
+     * 指定游标的加载更多完成，如果这个请求已经被取消则忽略
+     *
+     * @param cursor 请求的游标
+     * @return false表示请求已经过期，结果不应该再使用
+     */
+    public boolean onLoadMoreComplete(int cursor) {
+        if (!mLoadMorePrefetcher.complete(cursor)) {
+            return false;
+        }
+        finishLoadMore();
+        return true;
+    }
+
+    /**
+     * 加载更多完成，没有正在进行的加载更多(已经完成或者被取消)时忽略
      */
     public void onLoadMoreComplete() {
-        if (mIsAutoLoadMore) {
-            mFooterState = FOOTER_AUTO_LOAD_DONE;
-        } else {
-            mFooterState = FOOTER_MANUAL_LOAD_DONE;
+        if (!mLoadMorePrefetcher.isInFlight()) {
+            return;
         }
+        mLoadMorePrefetcher.complete();
+        finishLoadMore();
+    }
+
+    /**
+     * 请求已经从mLoadMorePrefetcher中移除，恢复FootView
+     */
+    private void finishLoadMore() {
         isPullUpLoading = false;
-        changeFooterViewByState();
+        applyEffects(mStateMachine.onLoadMoreFinished());
     }
 
     /**
@@ -682,7 +1276,7 @@ public class CustomListView extends ListView implements OnScrollListener {
      * @return
      */
     public boolean isCanLoadMore() {
-        return mCanLoadMore;
+        return mStateMachine.isCanLoadMore();
     }
 
     /**
@@ -690,8 +1284,8 @@ public class CustomListView extends ListView implements OnScrollListener {
      * @param pCanLoadMore
      */
     public void setCanLoadMore(boolean pCanLoadMore) {
-        mCanLoadMore = pCanLoadMore;
-        if (mCanLoadMore && getFooterViewsCount() == 0) {
+        mStateMachine.setCanLoadMore(pCanLoadMore);
+        if (pCanLoadMore && getFooterViewsCount() == 0) {
             addFooterView();
         }
     }
@@ -704,12 +1298,28 @@ public class CustomListView extends ListView implements OnScrollListener {
         this.enoughCount = enoughCount;
     }
 
+    /**
+     * 获取预加载距离
+     * @return
+     */
+    public int getLoadMorePrefetchDistance() {
+        return mLoadMorePrefetcher.getPrefetchDistance();
+    }
+
+    /**
+     * 设置预加载距离，距离最后一项不超过这么多项时就开始加载更多，滚动过程中也会判断
+     * @param pPrefetchDistance 项数，0表示滚动到最后并停止时才加载
+     */
+    public void setLoadMorePrefetchDistance(int pPrefetchDistance) {
+        mLoadMorePrefetcher.setPrefetchDistance(pPrefetchDistance);
+    }
+
     /**
      * 是否可以下拉刷新
      * @return
      */
     public boolean isCanRefresh() {
-        return mCanRefresh;
+        return mStateMachine.isCanRefresh();
     }
 
     /**
@@ -717,7 +1327,7 @@ public class CustomListView extends ListView implements OnScrollListener {
      * @param pCanRefresh
      */
     public void setCanRefresh(boolean pCanRefresh) {
-        mCanRefresh = pCanRefresh;
+        mStateMachine.setCanRefresh(pCanRefresh);
     }
 
     /**
@@ -725,7 +1335,7 @@ public class CustomListView extends ListView implements OnScrollListener {
      * @return
      */
     public boolean isAutoLoadMore() {
-        return mIsAutoLoadMore;
+        return mStateMachine.isAutoLoadMore();
     }
 
     /**
@@ -733,7 +1343,7 @@ public class CustomListView extends ListView implements OnScrollListener {
      * @param pIsAutoLoadMore
      */
     public void setAutoLoadMore(boolean pIsAutoLoadMore) {
-        mIsAutoLoadMore = pIsAutoLoadMore;
+        mStateMachine.setAutoLoadMore(pIsAutoLoadMore);
     }
 
     /**
@@ -758,7 +1368,7 @@ public class CustomListView extends ListView implements OnScrollListener {
      * @return
      */
     public boolean isScrollToLoadMore() {
-        return mScrollToLoadMore;
+        return mStateMachine.isScrollToLoadMore();
     }
 
     /**
@@ -766,7 +1376,7 @@ public class CustomListView extends ListView implements OnScrollListener {
      * @return
      */
     public void setScrollToLoadMore(boolean mScrollToLoadMore) {
-        this.mScrollToLoadMore = mScrollToLoadMore;
+        mStateMachine.setScrollToLoadMore(mScrollToLoadMore);
     }
 
 }
@@ -0,0 +1,1156 @@
+package me.wmh.clockprogress;
+
+import android.content.Context;
+import android.support.v4.view.NestedScrollingChild;
+import android.support.v4.view.NestedScrollingChildHelper;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.animation.DecelerateInterpolator;
+import android.widget.FrameLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+/**
+ * 基于RecyclerView的下拉刷新和加载更多，接口与CustomListView保持一致
+ * </br>HeadView在RecyclerView外面，下拉时通过translationY移动HeadView和RecyclerView，不需要重新布局；
+ * FootView由包装的Adapter添加在最后一项。
+ * </br>下拉通过嵌套滚动实现：RecyclerView滚动到顶部后没有消耗的距离交给这里下拉HeadView，
+ * 其余的距离继续交给外层的嵌套滚动父view(例如CoordinatorLayout)。
+ */
+public class CustomRecyclerView extends FrameLayout implements NestedScrollingParent, NestedScrollingChild {
+
+    /**
+     * 显示格式化日期模板
+     */
+    private final static String DATE_FORMAT_STR = "yyyy-MM-dd HH:mm";
+
+    /**
+     * 实际的下拉距离与界面上偏移距离的比例(即下拉刷新的阻尼度)
+     */
+    private final static int RATIO = 3;
+
+    /**
+     * 已经达到下拉距离的要求，状态为释放刷新
+     */
+    private final static int RELEASE_TO_REFRESH = 0;
+
+    /**
+     * 还没有达到下拉距离要求，状态为下拉刷新
+     */
+    private final static int PULL_TO_REFRESH = 1;
+
+    /**
+     * 正在下拉刷新中
+     */
+    private final static int HEADER_REFRESHING = 2;
+
+    /**
+     * 下拉刷新完成
+     */
+    private final static int HEADER_REFRESHING_DONE = 3;
+
+    /**
+     * <p/>0:RELEASE_TO_REFRESH;
+     * <p/>1:PULL_TO_REFRESH;
+     * <p/>2:HEADER_REFRESHING;
+     * <p/>3:HEADER_REFRESHING_DONE;
+     */
+    private int mHeadState = HEADER_REFRESHING_DONE;
+
+    /**
+     * 加载更多中
+     */
+    private final static int FOOTER_LOADING = 1;
+
+    /**
+     * 手动加载更多完成
+     */
+    private final static int FOOTER_MANUAL_LOAD_DONE = 2;
+
+    /**
+     * 自动加载更多完成
+     */
+    private final static int FOOTER_AUTO_LOAD_DONE = 3;
+
+    /**
+     * 加载更多错误
+     */
+    private final static int FOOTER_LOAD_ERROR = 4;
+
+    /**
+     * <p/>1:FOOTER_LOADING;
+     * <p/>2:FOOTER_MANUAL_LOAD_DONE;
+     * <p/>3:FOOTER_AUTO_LOAD_DONE;
+     * <p/>4:FOOTER_LOAD_ERROR;
+     */
+    private int mFooterState;
+
+    private String PULL_TO_REFRESH_TXT = "";
+    private String RELEASE_TO_REFRESH_TXT = "";
+
+    private boolean isPullDownRefreshing = false;
+    private boolean isPullUpLoading = false;
+
+    /**
+     * 是否可以加载更多
+     */
+    private boolean mCanLoadMore = false;
+    /**
+     * 是否可以下拉刷新
+     */
+    private boolean mCanRefresh = false;
+    /**
+     * 是否可以自动加载更多（注意，先判断是否可以加载更多，如果没有，这个flag也没有意义）
+     */
+    private boolean mIsAutoLoadMore = true;
+    /**
+     * 下拉刷新后是否显示第一条Item
+     */
+    private boolean mIsMoveToFirstItemAfterRefresh = true;
+    private boolean mScrollToLoadMore = true;
+
+    private RecyclerView mRecyclerView;
+    private LinearLayoutManager mLayoutManager;
+    private FooterAdapter mFooterAdapter;
+
+    private View mHeaderView;
+    private TextView mTipsTextView;
+    private TextView mLastUpdatedTextView;
+
+    /**
+     * "上次更新"文字，同一分钟内复用
+     */
+    private final LastUpdatedLabel mLastUpdatedLabel = new LastUpdatedLabel("上次更新:", DATE_FORMAT_STR);
+    private String mShownLastUpdatedLabel;
+    private ClockIndicator cProgress;
+    private View mFooterView;
+    private ProgressBar mFooterLoadProgressBar;
+    private TextView mFooterLoadTipsTextView;
+
+    private int mHeadViewHeight;
+
+    /**
+     * HeadView当前显示的高度(RecyclerView向下移动的距离)
+     */
+    private int mHeaderOffset;
+
+    private int mStartY;
+
+    private final NestedScrollingParentHelper mNestedScrollingParentHelper = new NestedScrollingParentHelper(this);
+    private final NestedScrollingChildHelper mNestedScrollingChildHelper = new NestedScrollingChildHelper(this);
+    private final int[] mParentScrollConsumed = new int[2];
+    private final int[] mParentOffsetInWindow = new int[2];
+
+    /**
+     * 嵌套滚动中累计的下拉距离(手指移动的距离，除以RATIO是HeadView显示的高度)
+     */
+    private int mNestedPullDistance;
+    /**
+     * 这次嵌套滚动是否在下拉HeadView
+     */
+    private boolean mNestedPulling;
+
+    /**
+     * 分发上一个触摸事件时RecyclerView的translationY
+     */
+    private float mDispatchTranslationY;
+    /**
+     * 从上一个触摸事件到这一个RecyclerView移动的距离，还没有在嵌套滚动中扣除
+     */
+    private int mTranslationDrift;
+
+    private int mReleaseDuration = CustomListView.DEFAULT_RELEASE_DURATION;
+    private int mCancelDuration = CustomListView.DEFAULT_CANCEL_DURATION;
+    private int mRefreshCompleteDuration = CustomListView.DEFAULT_REFRESH_COMPLETE_DURATION;
+
+    private CustomListView.OnRefreshListener mRefreshListener;
+    private CustomListView.OnLoadMoreListener mLoadMoreListener;
+
+    public CustomRecyclerView(Context pContext) {
+        super(pContext);
+        init(pContext);
+    }
+
+    public CustomRecyclerView(Context pContext, AttributeSet pAttrs) {
+        super(pContext, pAttrs);
+        init(pContext);
+    }
+
+    public CustomRecyclerView(Context pContext, AttributeSet pAttrs, int pDefStyle) {
+        super(pContext, pAttrs, pDefStyle);
+        init(pContext);
+    }
+
+    /**
+     * 初始化操作
+     *
+     * @param pContext
+     */
+    private void init(Context pContext) {
+        mRecyclerView = new RecyclerView(pContext);
+        mLayoutManager = new LinearLayoutManager(pContext);
+        mRecyclerView.setLayoutManager(mLayoutManager);
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView pRecyclerView, int pScrollState) {
+                CustomRecyclerView.this.onScrollStateChanged(pScrollState);
+            }
+        });
+        setNestedScrollingEnabled(true);
+        addView(mRecyclerView, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+
+        addHeadView(pContext);
+    }
+
+    /**
+     * 添加下拉刷新的HeadView，位于RecyclerView上方，收起时向上移出自身高度
+     */
+    private void addHeadView(Context pContext) {
+        mHeaderView = LayoutInflater.from(pContext).inflate(R.layout.list_header_view, this, false);
+
+        cProgress = (ClockIndicator) mHeaderView.findViewById(R.id.clock_progress);
+        mTipsTextView = (TextView) mHeaderView.findViewById(R.id.head_tipsTextView);
+        mLastUpdatedTextView = (TextView) mHeaderView.findViewById(R.id.head_lastUpdatedTextView);
+
+        addView(mHeaderView, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+    }
+
+    /**
+     * 添加加载更多FootView
+     */
+    private void addFooterView() {
+        mFooterView = LayoutInflater.from(getContext()).inflate(R.layout.list_footer_view, mRecyclerView, false);
+        mFooterView.setLayoutParams(new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        mFooterLoadProgressBar = (ProgressBar) mFooterView.findViewById(R.id.pull_to_refresh_progress);
+        mFooterLoadTipsTextView = (TextView) mFooterView.findViewById(R.id.load_more);
+
+        mFooterView.setOnClickListener(new OnClickListener() {
+
+            @Override
+            public void onClick(View v) {
+                if (mCanLoadMore) {
+                    if (mCanRefresh) {
+                        // 当可以下拉刷新时，如果FootView没有正在加载，并且HeadView没有正在刷新，才可以点击加载更多。
+                        if (mFooterState != FOOTER_LOADING && mHeadState != HEADER_REFRESHING) {
+                            mFooterState = FOOTER_LOADING;
+                            onLoadMore();
+                        }
+                    } else if (mFooterState != FOOTER_LOADING) {
+                        // 当不能下拉刷新时，FootView不正在加载时，才可以点击加载更多。
+                        mFooterState = FOOTER_LOADING;
+                        onLoadMore();
+                    }
+                }
+            }
+        });
+
+        if (mIsAutoLoadMore) {
+            mFooterState = FOOTER_AUTO_LOAD_DONE;
+        } else {
+            mFooterState = FOOTER_MANUAL_LOAD_DONE;
+        }
+        if (mFooterAdapter != null) {
+            mFooterAdapter.setShowFooter(true);
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        if (mHeadViewHeight != mHeaderView.getHeight()) {
+            mHeadViewHeight = mHeaderView.getHeight();
+            if (mHeadState == HEADER_REFRESHING) {
+                mHeaderOffset = mHeadViewHeight;
+            }
+            setHeaderOffset(mHeaderOffset);
+        }
+    }
+
+    /**
+     * RecyclerView是否还能向上滚动(没有滚动到顶部)
+     *
+     * @return
+     */
+    private boolean canChildScrollUp() {
+        return ViewCompat.canScrollVertically(mRecyclerView, -1);
+    }
+
+    /**
+     * 当前是否可以下拉：正在刷新或者正在加载更多时不可以
+     */
+    private boolean canPull() {
+        if (!mCanRefresh || mHeadState == HEADER_REFRESHING) {
+            return false;
+        }
+        // 如果存在加载更多功能，并且当前正在加载更多，默认不允许下拉刷新，必须加载完毕后才能使用。
+        return !(mCanLoadMore && mFooterState == FOOTER_LOADING);
+    }
+
+    /**
+     * 记录两个触摸事件之间RecyclerView被移动的距离
+     * <br>RecyclerView的触摸坐标是相对它自己的，下拉时它被向下移动，它算出的滚动距离会少掉这一段，
+     * 不扣除的话HeadView只跟手指移动约1/(RATIO+1)，而不是1/RATIO
+     */
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        float translationY = mRecyclerView.getTranslationY();
+        if (ev.getAction() == MotionEvent.ACTION_DOWN) {
+            mTranslationDrift = 0;
+        } else {
+            mTranslationDrift = Math.round(translationY - mDispatchTranslationY);
+        }
+        mDispatchTranslationY = translationY;
+        return super.dispatchTouchEvent(ev);
+    }
+
+    /**
+     * 取出这次事件中RecyclerView移动的距离，同一个事件的嵌套滚动只扣除一次
+     */
+    private int takeTranslationDrift() {
+        int drift = mTranslationDrift;
+        mTranslationDrift = 0;
+        return drift;
+    }
+
+    /**
+     * RecyclerView没有处理的触摸(例如按在已经拉出来的HeadView上)，直接拖动HeadView
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!canPull()) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                cancelSettle();
+                mStartY = (int) event.getY() - mHeaderOffset * RATIO;
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                pullTo(((int) event.getY() - mStartY) / RATIO);
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                releasePull();
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    /**
+     * 下拉到指定高度，根据高度切换状态
+     *
+     * @param offset HeadView显示的高度
+     */
+    private void pullTo(int offset) {
+        if (offset <= 0) {
+            offset = 0;
+            if (mHeadState != HEADER_REFRESHING_DONE) {
+                mHeadState = HEADER_REFRESHING_DONE;
+                changeHeaderViewByState();
+            }
+        } else if (offset >= mHeadViewHeight) {
+            if (mHeadState != RELEASE_TO_REFRESH) {
+                mHeadState = RELEASE_TO_REFRESH;
+                changeHeaderViewByState();
+            }
+        } else if (mHeadState != PULL_TO_REFRESH) {
+            mHeadState = PULL_TO_REFRESH;
+            changeHeaderViewByState();
+        }
+        setHeaderOffset(offset);
+    }
+
+    /**
+     * 松手：超过HeadView高度时开始刷新，否则收起
+     */
+    private void releasePull() {
+        if (mHeadState == RELEASE_TO_REFRESH) {
+            mHeadState = HEADER_REFRESHING;
+            changeHeaderViewByState();
+            settleTo(mHeadViewHeight, mReleaseDuration);
+            onRefresh();
+        } else if (mHeadState == PULL_TO_REFRESH) {
+            mHeadState = HEADER_REFRESHING_DONE;
+            changeHeaderViewByState();
+            settleTo(0, mCancelDuration);
+        }
+    }
+
+    // NestedScrollingParent
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return isEnabled() && (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes) {
+        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes);
+        startNestedScroll(axes & ViewCompat.SCROLL_AXIS_VERTICAL);
+        mNestedPulling = false;
+        if (canPull()) {
+            // 新的触摸打断正在进行的归位动画，从当前位置继续拉
+            cancelSettle();
+            mNestedPullDistance = mHeaderOffset * RATIO;
+            mNestedPulling = mHeaderOffset > 0;
+        }
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        if (dy > 0 && mNestedPulling && mNestedPullDistance > 0) {
+            // 向上推时先收起HeadView，收完之前RecyclerView不滚动
+            // RecyclerView上移了drift，它算出的dy比手指实际移动的多了这一段
+            int drift = takeTranslationDrift();
+            int fingerDy = dy - drift;
+            int pulledBack = Math.max(0, Math.min(fingerDy, mNestedPullDistance));
+            consumed[1] = Math.min(dy, pulledBack + drift);
+            mNestedPullDistance -= pulledBack;
+            pullTo(mNestedPullDistance / RATIO);
+        }
+        int[] parentConsumed = mParentScrollConsumed;
+        if (dispatchNestedPreScroll(dx - consumed[0], dy - consumed[1], parentConsumed, null)) {
+            consumed[0] += parentConsumed[0];
+            consumed[1] += parentConsumed[1];
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        // 先交给外层，外层移动了这个view时要扣除
+        dispatchNestedScroll(dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, mParentOffsetInWindow);
+        int dy = dyUnconsumed + mParentOffsetInWindow[1];
+        if (dy < 0 && canPull() && !canChildScrollUp()) {
+            // RecyclerView下移了drift，手指实际移动的距离要加上这一段
+            dy -= takeTranslationDrift();
+            mNestedPulling = true;
+            mNestedPullDistance -= dy;
+            pullTo(mNestedPullDistance / RATIO);
+        }
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        mNestedScrollingParentHelper.onStopNestedScroll(target);
+        if (mNestedPulling) {
+            mNestedPulling = false;
+            releasePull();
+        }
+        stopNestedScroll();
+    }
+
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        if (mNestedPulling && mHeaderOffset > 0) {
+            // HeadView拉出来时松手由onStopNestedScroll处理，列表不惯性滚动
+            return true;
+        }
+        return dispatchNestedPreFling(velocityX, velocityY);
+    }
+
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        return dispatchNestedFling(velocityX, velocityY, consumed);
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return mNestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
+    // NestedScrollingChild
+
+    @Override
+    public void setNestedScrollingEnabled(boolean enabled) {
+        mNestedScrollingChildHelper.setNestedScrollingEnabled(enabled);
+    }
+
+    @Override
+    public boolean isNestedScrollingEnabled() {
+        return mNestedScrollingChildHelper.isNestedScrollingEnabled();
+    }
+
+    @Override
+    public boolean startNestedScroll(int axes) {
+        return mNestedScrollingChildHelper.startNestedScroll(axes);
+    }
+
+    @Override
+    public void stopNestedScroll() {
+        mNestedScrollingChildHelper.stopNestedScroll();
+    }
+
+    @Override
+    public boolean hasNestedScrollingParent() {
+        return mNestedScrollingChildHelper.hasNestedScrollingParent();
+    }
+
+    @Override
+    public boolean dispatchNestedScroll(int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed,
+                                        int[] offsetInWindow) {
+        return mNestedScrollingChildHelper.dispatchNestedScroll(dxConsumed, dyConsumed,
+                dxUnconsumed, dyUnconsumed, offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedPreScroll(int dx, int dy, int[] consumed, int[] offsetInWindow) {
+        return mNestedScrollingChildHelper.dispatchNestedPreScroll(dx, dy, consumed, offsetInWindow);
+    }
+
+    @Override
+    public boolean dispatchNestedFling(float velocityX, float velocityY, boolean consumed) {
+        return mNestedScrollingChildHelper.dispatchNestedFling(velocityX, velocityY, consumed);
+    }
+
+    @Override
+    public boolean dispatchNestedPreFling(float velocityX, float velocityY) {
+        return mNestedScrollingChildHelper.dispatchNestedPreFling(velocityX, velocityY);
+    }
+
+    /**
+     * 设置HeadView显示的高度，只修改translationY
+     *
+     * @param offset 显示的高度
+     */
+    private void setHeaderOffset(int offset) {
+        mHeaderOffset = offset;
+        mHeaderView.setTranslationY(offset - mHeadViewHeight);
+        mRecyclerView.setTranslationY(offset);
+        if (mHeadState != HEADER_REFRESHING) {
+            cProgress.setClockByPaddingTop(-1 * mHeadViewHeight, offset - mHeadViewHeight);
+        }
+    }
+
+    /**
+     * 用属性动画把HeadView移动到目标高度
+     *
+     * @param offset 目标高度
+     * @param duration 时长，小于等于0时直接移动
+     */
+    private void settleTo(int offset, int duration) {
+        cancelSettle();
+        if (duration <= 0 || offset == mHeaderOffset) {
+            setHeaderOffset(offset);
+            return;
+        }
+        mHeaderOffset = offset;
+        mHeaderView.animate().translationY(offset - mHeadViewHeight).setDuration(duration)
+                .setInterpolator(new DecelerateInterpolator());
+        mRecyclerView.animate().translationY(offset).setDuration(duration)
+                .setInterpolator(new DecelerateInterpolator());
+    }
+
+    /**
+     * 停止归位动画，停在当前位置
+     */
+    private void cancelSettle() {
+        mHeaderView.animate().cancel();
+        mRecyclerView.animate().cancel();
+        mHeaderOffset = (int) mRecyclerView.getTranslationY();
+    }
+
+    /**
+     * 监听RecyclerView的滑动状态，判断是否滑动到底部
+     */
+    private void onScrollStateChanged(int pScrollState) {
+        if (mScrollToLoadMore == false) {
+            return;
+        }
+        if (mCanLoadMore) {
+            // 存在加载更多功能
+            int lastItemIndex = mLayoutManager.findLastVisibleItemPosition();
+            int count = mFooterAdapter == null ? 0 : mFooterAdapter.getItemCount() - 1;
+            if (lastItemIndex == count && pScrollState == RecyclerView.SCROLL_STATE_IDLE) {
+                if (mFooterState != FOOTER_LOADING) {
+                    if (mIsAutoLoadMore) {
+                        //可以自动加载更多的情况
+                        if (mCanRefresh) {
+                            // 可以下拉刷新的情况下再判断是否正在下拉刷新
+                            if (mHeadState != HEADER_REFRESHING) {
+                                mFooterState = FOOTER_LOADING;
+                                onLoadMore();
+                                changeFooterViewByState();
+                            }
+                        } else {
+                            // 不能下拉刷新的情况下，我们直接进行加载更多。
+                            mFooterState = FOOTER_LOADING;
+                            onLoadMore();
+                            changeFooterViewByState();
+                        }
+                    } else {
+                        // 不能自动加载更多情况，我们让FooterView显示 “点击加载”
+                        mFooterState = FOOTER_MANUAL_LOAD_DONE;
+                        changeFooterViewByState();
+                    }
+                }
+            }
+        } else if (mFooterAdapter != null && mFooterAdapter.isShowFooter()) {
+            // 突然关闭加载更多功能之后，我们要移除FootView。
+            mFooterAdapter.setShowFooter(false);
+        }
+    }
+
+    /**
+     * 设置数据，同时更新刷新时间
+     *
+     * @param adapter
+     */
+    public void setAdapter(RecyclerView.Adapter adapter) {
+        updateLastUpdatedText();
+        if (mFooterAdapter != null) {
+            mFooterAdapter.release();
+        }
+        mFooterAdapter = adapter == null ? null : new FooterAdapter(adapter);
+        if (mFooterAdapter != null) {
+            mFooterAdapter.setShowFooter(mCanLoadMore && mFooterView != null);
+        }
+        mRecyclerView.setAdapter(mFooterAdapter);
+    }
+
+    /**
+     * 获取内部的RecyclerView
+     *
+     * @return
+     */
+    public RecyclerView getRecyclerView() {
+        return mRecyclerView;
+    }
+
+    /**
+     * 根据各种状态改变headerview显示内容
+     */
+    private void changeHeaderViewByState() {
+        switch (mHeadState) {
+            case RELEASE_TO_REFRESH:
+                // 释放刷新状态
+                mTipsTextView.setVisibility(View.VISIBLE);
+                mLastUpdatedTextView.setVisibility(View.VISIBLE);
+                if (RELEASE_TO_REFRESH_TXT.equals("")) {
+                    mTipsTextView.setText(R.string.pull_to_refresh_release_label);
+                } else {
+                    mTipsTextView.setText(RELEASE_TO_REFRESH_TXT);
+                }
+                break;
+            case PULL_TO_REFRESH:
+                //下拉刷新状态
+                mTipsTextView.setVisibility(View.VISIBLE);
+                mLastUpdatedTextView.setVisibility(View.VISIBLE);
+                if (PULL_TO_REFRESH_TXT.equals("")) {
+                    mTipsTextView.setText(R.string.pull_to_refresh_pull_label);
+                } else {
+                    mTipsTextView.setText(PULL_TO_REFRESH_TXT);
+                }
+                break;
+            case HEADER_REFRESHING:
+                //正在刷新中
+                mTipsTextView.setText(R.string.pull_to_refresh_refreshing_label);
+                mLastUpdatedTextView.setVisibility(View.VISIBLE);
+                break;
+            case HEADER_REFRESHING_DONE:
+                //下拉刷新完成
+                cProgress.setClockToZero();
+                if (PULL_TO_REFRESH_TXT.equals("")) {
+                    mTipsTextView.setText(R.string.pull_to_refresh_pull_label);
+                } else {
+                    mTipsTextView.setText(PULL_TO_REFRESH_TXT);
+                }
+                mLastUpdatedTextView.setVisibility(View.VISIBLE);
+                break;
+        }
+    }
+
+    /**
+     * 设置加载完成，底部显示"没有更多内容"
+     */
+    public void setFooterViewNoMore() {
+        if (null != mFooterLoadTipsTextView) {
+            mFooterLoadTipsTextView.setText(R.string.p2refresh_end_load_more);
+        }
+        if (null != mFooterView) {
+            mFooterView.setClickable(false);
+        }
+        mScrollToLoadMore = false;
+    }
+
+    /**
+     * 重置、初始化底部显示内容，底部显示"点击加载"
+     */
+    public void resetFooterView() {
+        if (null != mFooterLoadTipsTextView) {
+            mFooterLoadTipsTextView.setText(R.string.p2refresh_end_click_load_more);
+        }
+        if (null != mFooterView) {
+            mFooterView.setClickable(true);
+        }
+        mScrollToLoadMore = true;
+    }
+
+    /**
+     * 设置底部内容，底部显示"加载失败，点击重试"
+     */
+    public void setFooterViewError() {
+        mFooterState = FOOTER_LOAD_ERROR;
+        changeFooterViewByState();
+    }
+
+    /**
+     * 根据各种状态改变footerview显示内容
+     */
+    private void changeFooterViewByState() {
+        if (mCanLoadMore && mFooterView != null) {
+            // 允许加载更多
+            switch (mFooterState) {
+                case FOOTER_LOADING:
+                    //加载更多中
+                    mFooterLoadTipsTextView.setText(R.string.p2refresh_doing_end_refresh);
+                    mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
+                    mFooterLoadProgressBar.setVisibility(View.VISIBLE);
+                    break;
+                case FOOTER_MANUAL_LOAD_DONE:
+                    //手动点击加载更多之后
+                    mFooterLoadTipsTextView.setText(R.string.p2refresh_end_load_more);
+                    mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
+                    mFooterLoadProgressBar.setVisibility(View.GONE);
+                    mFooterView.setVisibility(View.VISIBLE);
+                    break;
+                case FOOTER_AUTO_LOAD_DONE:
+                    // 自动刷新完成
+                    mFooterLoadTipsTextView.setText(R.string.p2refresh_head_load_more);
+                    mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
+                    mFooterLoadProgressBar.setVisibility(View.GONE);
+                    mFooterView.setVisibility(View.VISIBLE);
+                    break;
+                case FOOTER_LOAD_ERROR:
+                    // 刷新失败
+                    mFooterLoadTipsTextView.setText(R.string.p2refresh_end_load_more_error);
+                    mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
+                    mFooterLoadProgressBar.setVisibility(View.GONE);
+                    mFooterView.setVisibility(View.VISIBLE);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 手动设置下拉刷新的显示文字
+     * @param txt
+     */
+    public void setPullToRefreshTxt(String txt) {
+        PULL_TO_REFRESH_TXT = txt;
+    }
+
+    /**
+     * 手动显示释放刷新的显示文字
+     * @param txt
+     */
+    public void setReleaseToRefreshTxt(String txt) {
+        RELEASE_TO_REFRESH_TXT = txt;
+    }
+
+    /**
+     * 设置松手刷新时HeadView归位动画的时长
+     *
+     * @param pReleaseDuration 毫秒，0表示没有动画
+     */
+    public void setReleaseDuration(int pReleaseDuration) {
+        mReleaseDuration = pReleaseDuration;
+    }
+
+    /**
+     * 设置取消下拉时HeadView收起动画的时长
+     *
+     * @param pCancelDuration 毫秒，0表示没有动画
+     */
+    public void setCancelDuration(int pCancelDuration) {
+        mCancelDuration = pCancelDuration;
+    }
+
+    /**
+     * 设置刷新完成时HeadView收起动画的时长
+     *
+     * @param pRefreshCompleteDuration 毫秒，0表示没有动画
+     */
+    public void setRefreshCompleteDuration(int pRefreshCompleteDuration) {
+        mRefreshCompleteDuration = pRefreshCompleteDuration;
+    }
+
+    /**
+     * 设置正在刷新中
+     */
+    public void setPullDownRefreshing() {
+        mHeadState = HEADER_REFRESHING;
+        changeHeaderViewByState();
+        settleTo(mHeadViewHeight, mReleaseDuration);
+        onRefresh();
+    }
+
+    public void setOnRefreshListener(CustomListView.OnRefreshListener pRefreshListener) {
+        if (pRefreshListener != null) {
+            mRefreshListener = pRefreshListener;
+            mCanRefresh = true;
+        }
+    }
+
+    public void setOnLoadmoreListener(CustomListView.OnLoadMoreListener pLoadMoreListener) {
+        if (pLoadMoreListener != null) {
+            mLoadMoreListener = pLoadMoreListener;
+        }
+    }
+
+    /**
+     * 正在下拉刷新
+     */
+    private void onRefresh() {
+        if (mRefreshListener != null) {
+            mRefreshListener.onRefresh();
+            cProgress.setStartAutoRotate();
+            isPullDownRefreshing = true;
+        }
+    }
+
+    /**
+     * 正在加载更多
+     */
+    private void onLoadMore() {
+        if (mLoadMoreListener != null) {
+            isPullUpLoading = true;
+            mFooterLoadTipsTextView.setText(R.string.p2refresh_doing_end_refresh);
+            mFooterLoadTipsTextView.setVisibility(View.VISIBLE);
+            mFooterLoadProgressBar.setVisibility(View.VISIBLE);
+            mLoadMoreListener.onLoadMore();
+        }
+    }
+
+    /**
+     * 把"上次更新"设置为当前时间，同一分钟内文字不变时不重新设置
+     */
+    private void updateLastUpdatedText() {
+        String label = mLastUpdatedLabel.format(System.currentTimeMillis());
+        if (label != mShownLastUpdatedLabel) {
+            mShownLastUpdatedLabel = label;
+            mLastUpdatedTextView.setText(label);
+        }
+    }
+
+    /**
+     * 下拉刷新完成
+     */
+    public void onRefreshComplete() {
+        // 下拉刷新后是否显示第一条Item
+        if (mIsMoveToFirstItemAfterRefresh) {
+            mRecyclerView.scrollToPosition(0);
+        }
+        isPullDownRefreshing = false;
+        mHeadState = HEADER_REFRESHING_DONE;
+        // 设置最近更新时间
+        updateLastUpdatedText();
+        changeHeaderViewByState();
+        settleTo(0, mRefreshCompleteDuration);
+    }
+
+    /**
+     * 加载更多完成
+     */
+    public void onLoadMoreComplete() {
+        if (mIsAutoLoadMore) {
+            mFooterState = FOOTER_AUTO_LOAD_DONE;
+        } else {
+            mFooterState = FOOTER_MANUAL_LOAD_DONE;
+        }
+        isPullUpLoading = false;
+        changeFooterViewByState();
+    }
+
+    /**
+     * 获取是否正在下拉刷新中
+     * @return
+     */
+    public boolean isPullDownRefreshing() {
+        return isPullDownRefreshing;
+    }
+
+    /**
+     * 设置是否正在上拉加载更多中
+     * @return
+     */
+    public boolean isPullUpLoading() {
+        return isPullUpLoading;
+    }
+
+    /**
+     * 是否可以加载更多
+     * @return
+     */
+    public boolean isCanLoadMore() {
+        return mCanLoadMore;
+    }
+
+    /**
+     * 设置是否可以加载更多
+     * @param pCanLoadMore
+     */
+    public void setCanLoadMore(boolean pCanLoadMore) {
+        mCanLoadMore = pCanLoadMore;
+        if (mCanLoadMore && mFooterView == null) {
+            addFooterView();
+        }
+    }
+
+    /**
+     * 是否可以下拉刷新
+     * @return
+     */
+    public boolean isCanRefresh() {
+        return mCanRefresh;
+    }
+
+    /**
+     * 获取是否可以下拉刷新
+     * @param pCanRefresh
+     */
+    public void setCanRefresh(boolean pCanRefresh) {
+        mCanRefresh = pCanRefresh;
+    }
+
+    /**
+     * 是否可以自动加载更多
+     * @return
+     */
+    public boolean isAutoLoadMore() {
+        return mIsAutoLoadMore;
+    }
+
+    /**
+     * 获取是否可以自动加载更多
+     * @param pIsAutoLoadMore
+     */
+    public void setAutoLoadMore(boolean pIsAutoLoadMore) {
+        mIsAutoLoadMore = pIsAutoLoadMore;
+    }
+
+    /**
+     * 刷新完成后是否到第一条
+     * @return
+     */
+    public boolean isMoveToFirstItemAfterRefresh() {
+        return mIsMoveToFirstItemAfterRefresh;
+    }
+
+    /**
+     * 设置刷新完成后是否到第一条
+     * @return
+     */
+    public void setMoveToFirstItemAfterRefresh(boolean pIsMoveToFirstItemAfterRefresh) {
+        mIsMoveToFirstItemAfterRefresh = pIsMoveToFirstItemAfterRefresh;
+    }
+
+    /**
+     * 是否到加载更多位置
+     * @return
+     */
+    public boolean isScrollToLoadMore() {
+        return mScrollToLoadMore;
+    }
+
+    /**
+     * 获取是否到加载更多位置
+     * @return
+     */
+    public void setScrollToLoadMore(boolean mScrollToLoadMore) {
+        this.mScrollToLoadMore = mScrollToLoadMore;
+    }
+
+    /**
+     * 包装外部的Adapter，在最后添加FootView
+     */
+    private class FooterAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        /**
+         * FootView的viewType，避免和外部Adapter的viewType冲突
+         */
+        private static final int TYPE_FOOTER = Integer.MIN_VALUE;
+
+        /**
+         * 外部Adapter使用稳定id时FootView的id
+         */
+        private static final long FOOTER_ID = Long.MIN_VALUE;
+
+        private final RecyclerView.Adapter mInner;
+        private boolean mShowFooter;
+
+        /**
+         * 把外部Adapter的数据变化转发出去，FootView在最后，位置不需要换算
+         */
+        private final RecyclerView.AdapterDataObserver mObserver = new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                notifyItemRangeChanged(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                notifyItemRangeInserted(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                notifyItemRangeRemoved(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                notifyDataSetChanged();
+            }
+        };
+
+        FooterAdapter(RecyclerView.Adapter inner) {
+            mInner = inner;
+            // 必须在注册observer之前设置，和外部Adapter一致，否则外部Adapter的稳定id不起作用
+            setHasStableIds(inner.hasStableIds());
+            mInner.registerAdapterDataObserver(mObserver);
+        }
+
+        void release() {
+            mInner.unregisterAdapterDataObserver(mObserver);
+        }
+
+        boolean isShowFooter() {
+            return mShowFooter;
+        }
+
+        void setShowFooter(boolean pShowFooter) {
+            if (mShowFooter == pShowFooter) {
+                return;
+            }
+            mShowFooter = pShowFooter;
+            if (mShowFooter) {
+                notifyItemInserted(mInner.getItemCount());
+            } else {
+                notifyItemRemoved(mInner.getItemCount());
+            }
+        }
+
+        private boolean isFooter(int position) {
+            return mShowFooter && position == mInner.getItemCount();
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            if (isFooter(position)) {
+                return TYPE_FOOTER;
+            }
+            return mInner.getItemViewType(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            if (isFooter(position)) {
+                return FOOTER_ID;
+            }
+            return mInner.getItemId(position);
+        }
+
+        /**
+         * RecyclerView可能同时需要多个FootView的ViewHolder(例如移除动画还没有结束又重新显示)，
+         * 每次都创建新的容器，绑定时再把唯一的FootView移到这个容器中
+         */
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            if (viewType == TYPE_FOOTER) {
+                FrameLayout container = new FrameLayout(parent.getContext());
+                container.setLayoutParams(new RecyclerView.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+                return new FooterHolder(container);
+            }
+            return mInner.onCreateViewHolder(parent, viewType);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            if (holder instanceof FooterHolder) {
+                ((FooterHolder) holder).attachFooter();
+            } else {
+                mInner.onBindViewHolder(holder, position);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onViewRecycled(RecyclerView.ViewHolder holder) {
+            if (!(holder instanceof FooterHolder)) {
+                mInner.onViewRecycled(holder);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onViewAttachedToWindow(RecyclerView.ViewHolder holder) {
+            if (!(holder instanceof FooterHolder)) {
+                mInner.onViewAttachedToWindow(holder);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onViewDetachedFromWindow(RecyclerView.ViewHolder holder) {
+            if (!(holder instanceof FooterHolder)) {
+                mInner.onViewDetachedFromWindow(holder);
+            }
+        }
+
+        @Override
+        public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+            mInner.onAttachedToRecyclerView(recyclerView);
+        }
+
+        @Override
+        public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+            mInner.onDetachedFromRecyclerView(recyclerView);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mInner.getItemCount() + (mShowFooter ? 1 : 0);
+        }
+    }
+
+    /**
+     * FootView的容器，显示时FootView从上一个容器移过来
+     */
+    private class FooterHolder extends RecyclerView.ViewHolder {
+
+        private final FrameLayout mContainer;
+
+        FooterHolder(FrameLayout container) {
+            super(container);
+            mContainer = container;
+        }
+
+        void attachFooter() {
+            ViewParent parent = mFooterView.getParent();
+            if (parent == mContainer) {
+                return;
+            }
+            if (parent != null) {
+                ((ViewGroup) parent).removeView(mFooterView);
+            }
+            mContainer.addView(mFooterView);
+        }
+    }
+}
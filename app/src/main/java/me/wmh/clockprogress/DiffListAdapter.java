@@ -0,0 +1,170 @@
+package me.wmh.clockprogress;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * 支持后台比较、增量更新的Adapter
+ * <br>新数据在后台线程与旧数据比较，内容没有变化的行在getView时直接复用原来绑定好的View，不再重新绑定。
+ * <br>注意ListView只支持notifyDataSetChanged，所有可见行仍然会走一次getView和layout，
+ * 省掉的只是getItemView里的绑定；绑定结果依赖position的行(比如分组标题)不要用这个Adapter。
+ * <br>配合CustomListView.onRefreshComplete(DiffListAdapter, List)使用，可以在刷新后保持第一个可见项的位置。
+ */
+public abstract class DiffListAdapter<T> extends BaseAdapter implements ListDiffer.ItemCallback<T> {
+
+    /**
+     * 当前数据，只会整体替换，不会修改，所以可以直接交给后台线程比较
+     */
+    private List<T> mItems = Collections.emptyList();
+
+    /**
+     * id到位置，替换数据时一起更新
+     */
+    private HashMap<Long, Integer> mPositionsById = new HashMap<Long, Integer>();
+
+    private final LatestTaskRunner<ListDiffer.Result<T>> mDiffRunner = new LatestTaskRunner<ListDiffer.Result<T>>();
+
+    /**
+     * 绑定一行数据
+     *
+     * @param position 位置
+     * @param item 数据
+     * @param convertView 可以复用的View
+     * @param parent 父View
+     * @return
+     */
+    protected abstract View getItemView(int position, T item, View convertView, ViewGroup parent);
+
+    /**
+     * 默认用equals比较内容
+     */
+    @Override
+    public boolean areContentsTheSame(T oldItem, T newItem) {
+        return oldItem.equals(newItem);
+    }
+
+    /**
+     * 直接替换全部数据
+     *
+     * @param items
+     */
+    public void setItems(List<T> items) {
+        mDiffRunner.cancel();
+        mItems = items == null ? Collections.<T>emptyList() : items;
+        indexPositions();
+        notifyDataSetChanged();
+    }
+
+    public List<T> getItems() {
+        return mItems;
+    }
+
+    /**
+     * 设置后台比较使用的线程池
+     *
+     * @param executor 为null时使用默认线程池
+     */
+    public void setDiffExecutor(Executor executor) {
+        mDiffRunner.setExecutor(executor);
+    }
+
+    /**
+     * 在后台线程比较新旧数据，结果在主线程回调，还没有应用到Adapter
+     *
+     * @param newItems 新数据
+     * @param callback 主线程回调，拿到结果后调用applyDiff
+     */
+    public void computeDiff(final List<T> newItems, LatestTaskRunner.Callback<ListDiffer.Result<T>> callback) {
+        final List<T> oldItems = mItems;
+        mDiffRunner.start(new Callable<ListDiffer.Result<T>>() {
+            @Override
+            public ListDiffer.Result<T> call() throws Exception {
+                return ListDiffer.diff(oldItems, newItems, DiffListAdapter.this);
+            }
+        }, callback);
+    }
+
+    /**
+     * 应用比较结果
+     *
+     * @param result
+     */
+    public void applyDiff(ListDiffer.Result<T> result) {
+        mItems = result.items;
+        indexPositions();
+        notifyDataSetChanged();
+    }
+
+    private void indexPositions() {
+        HashMap<Long, Integer> positions = new HashMap<Long, Integer>(mItems.size() * 2);
+        for (int i = 0; i < mItems.size(); i++) {
+            positions.put(getItemStableId(mItems.get(i)), i);
+        }
+        mPositionsById = positions;
+    }
+
+    /**
+     * 根据id查找位置
+     *
+     * @param id
+     * @return 没有找到时返回-1
+     */
+    public int getPositionForId(long id) {
+        Integer position = mPositionsById.get(id);
+        return position == null ? -1 : position;
+    }
+
+    @Override
+    public int getCount() {
+        return mItems.size();
+    }
+
+    @Override
+    public T getItem(int position) {
+        return mItems.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItemStableId(mItems.get(position));
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public final View getView(int position, View convertView, ViewGroup parent) {
+        T item = mItems.get(position);
+        if (convertView != null && isBoundTo(convertView, item)) {
+            return convertView;
+        }
+        View view = getItemView(position, item, convertView, parent);
+        view.setTag(R.id.diff_list_bound_item, item);
+        return view;
+    }
+
+    /**
+     * convertView绑定的是同一个对象，或者id相同、内容没有变化(setItems整体替换后也能跳过)
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isBoundTo(View convertView, T item) {
+        Object bound = convertView.getTag(R.id.diff_list_bound_item);
+        if (bound == item) {
+            return true;
+        }
+        if (bound == null) {
+            return false;
+        }
+        T boundItem = (T) bound;
+        return getItemStableId(boundItem) == getItemStableId(item) && areContentsTheSame(boundItem, item);
+    }
+}
@@ -0,0 +1,208 @@
+package me.wmh.clockprogress;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * 进程内共享的帧时钟
+ * <br>不管有多少个监听者，每个vsync只注册一次Choreographer帧回调(API 16以下退化为Handler按帧间隔定时)，再依次通知所有监听者。
+ * <br>没有监听者时不再注册回调。只能在主线程使用。
+ */
+public class FrameTicker {
+
+    /**
+     * 没有Choreographer时的帧间隔(毫秒)
+     */
+    private static final long FALLBACK_FRAME_DELAY_MS = 16;
+
+    public interface OnTickListener {
+        /**
+         * 每帧回调一次
+         * @param frameTimeNanos 这一帧的时间
+         */
+        void onTick(long frameTimeNanos);
+    }
+
+    private static FrameTicker sInstance;
+
+    private final ArrayList<OnTickListener> listeners = new ArrayList<OnTickListener>();
+
+    /**
+     * 是否正在通知监听者，期间移除的监听者先置为null，通知结束后再清理
+     */
+    private boolean dispatching = false;
+    private boolean hasPendingRemovals = false;
+
+    /**
+     * 是否已经注册了下一帧的回调
+     */
+    private boolean frameScheduled = false;
+
+    private long frameCount = 0;
+
+    private Object frameCallback;
+    private Handler fallbackHandler;
+    private Runnable fallbackRunnable;
+
+    public static FrameTicker getInstance() {
+        if (sInstance == null) {
+            sInstance = new FrameTicker();
+        }
+        return sInstance;
+    }
+
+    FrameTicker() {
+    }
+
+    /**
+     * 注册监听，从下一帧开始回调；已经注册过时忽略
+     * @param listener
+     */
+    public void add(OnTickListener listener) {
+        if (listeners.contains(listener)) {
+            return;
+        }
+        listeners.add(listener);
+        scheduleFrame();
+    }
+
+    /**
+     * 取消监听，最后一个监听者取消后不再注册帧回调
+     * @param listener
+     */
+    public void remove(OnTickListener listener) {
+        int index = listeners.indexOf(listener);
+        if (index < 0) {
+            return;
+        }
+        if (dispatching) {
+            listeners.set(index, null);
+            hasPendingRemovals = true;
+        } else {
+            listeners.remove(index);
+            if (listeners.isEmpty()) {
+                cancelFrame();
+            }
+        }
+    }
+
+    public boolean contains(OnTickListener listener) {
+        return listeners.contains(listener);
+    }
+
+    /**
+     * 当前的监听者数量
+     */
+    public int getListenerCount() {
+        int count = 0;
+        for (int i = 0; i < listeners.size(); i++) {
+            if (listeners.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 到目前为止处理的帧数
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 处理一帧，通知所有监听者；通知过程中新注册的监听者从下一帧开始回调
+     */
+    void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        frameCount++;
+        dispatching = true;
+        int count = listeners.size();
+        for (int i = 0; i < count; i++) {
+            OnTickListener listener = listeners.get(i);
+            if (listener != null) {
+                listener.onTick(frameTimeNanos);
+            }
+        }
+        dispatching = false;
+        if (hasPendingRemovals) {
+            hasPendingRemovals = false;
+            for (int i = listeners.size() - 1; i >= 0; i--) {
+                if (listeners.get(i) == null) {
+                    listeners.remove(i);
+                }
+            }
+        }
+        if (!listeners.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled) {
+            return;
+        }
+        frameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            getFallbackHandler().postDelayed(getFallbackRunnable(), FALLBACK_FRAME_DELAY_MS);
+        }
+    }
+
+    private void cancelFrame() {
+        if (!frameScheduled) {
+            return;
+        }
+        frameScheduled = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            removeFrameCallback();
+        } else if (fallbackHandler != null) {
+            fallbackHandler.removeCallbacks(fallbackRunnable);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (frameCallback == null) {
+            frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    FrameTicker.this.doFrame(frameTimeNanos);
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeFrameCallback() {
+        if (frameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+        }
+    }
+
+    private Handler getFallbackHandler() {
+        if (fallbackHandler == null) {
+            fallbackHandler = new Handler(Looper.getMainLooper());
+        }
+        return fallbackHandler;
+    }
+
+    private Runnable getFallbackRunnable() {
+        if (fallbackRunnable == null) {
+            fallbackRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    doFrame(System.nanoTime());
+                }
+            };
+        }
+        return fallbackRunnable;
+    }
+}
@@ -0,0 +1,223 @@
+package me.wmh.clockprogress;
+
+/**
+ * ClockProgress和CustomListView关键路径的耗时统计
+ * <br>SECTION_CLOCK_DRAW等统计项记录的是每次调用的耗时，超过预算的调用数是单次调用就用掉了一帧的次数，不是掉帧数；
+ * 掉帧看SECTION_FRAME，它记录相邻两帧Choreographer帧时间的间隔。
+ * <br>默认关闭，关闭时begin只读一个静态字段，不调用nanoTime，也不注册帧回调。
+ * <br>只在主线程记录和读取。
+ */
+public final class FrameTimings {
+
+    /**
+     * ClockProgress.onDraw
+     */
+    public static final int SECTION_CLOCK_DRAW = 0;
+    /**
+     * CustomListView.onTouchEvent
+     */
+    public static final int SECTION_LIST_TOUCH = 1;
+    /**
+     * CustomListView.changeHeaderViewByState
+     */
+    public static final int SECTION_HEADER_STATE = 2;
+    /**
+     * 相邻两帧的间隔(开启期间每帧都注册帧回调)
+     */
+    public static final int SECTION_FRAME = 3;
+
+    public static final int SECTION_COUNT = 4;
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * 60Hz下一帧的时长
+     */
+    public static final long DEFAULT_BUDGET_NANOS = 16666667L;
+
+    /**
+     * SECTION_FRAME的默认预算：帧时间按vsync对齐，间隔超过1.5帧说明至少错过了一次vsync
+     */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = DEFAULT_BUDGET_NANOS * 3 / 2;
+
+    /**
+     * 快照中的分位数
+     */
+    private static final float[] PERCENTILES = {50f, 90f, 95f, 99f};
+
+    public interface Listener {
+        /**
+         * 某个统计项每记录reportInterval个样本回调一次，在主线程回调
+         */
+        void onSnapshot(Snapshot snapshot);
+    }
+
+    /**
+     * 某个统计项的快照
+     */
+    public static class Snapshot {
+        public int section;
+        public long totalCount;
+        /**
+         * 超过预算的样本数，SECTION_FRAME中是掉帧数
+         */
+        public long overBudgetCount;
+        public long p50Nanos;
+        public long p90Nanos;
+        public long p95Nanos;
+        public long p99Nanos;
+        public long maxNanos;
+
+        @Override
+        public String toString() {
+            return "Snapshot{section=" + section + ", count=" + totalCount + ", overBudget=" + overBudgetCount
+                    + ", p50=" + p50Nanos + ", p90=" + p90Nanos + ", p95=" + p95Nanos
+                    + ", p99=" + p99Nanos + ", max=" + maxNanos + "}";
+        }
+    }
+
+    private static boolean sEnabled = false;
+
+    private static final TimingRing[] sRings = new TimingRing[SECTION_COUNT];
+
+    private static final long[] sPercentileBuffer = new long[PERCENTILES.length];
+
+    /**
+     * 回调使用的快照，回调中不能保存
+     */
+    private static final Snapshot sReportSnapshot = new Snapshot();
+
+    private static Listener sListener;
+    private static int sReportInterval = DEFAULT_CAPACITY;
+
+    /**
+     * 上一帧的时间，还没有收到帧回调时为0
+     */
+    private static long sLastFrameNanos = 0;
+
+    private static final FrameTicker.OnTickListener sFrameListener = new FrameTicker.OnTickListener() {
+        @Override
+        public void onTick(long frameTimeNanos) {
+            if (sLastFrameNanos != 0) {
+                record(SECTION_FRAME, frameTimeNanos - sLastFrameNanos);
+            }
+            sLastFrameNanos = frameTimeNanos;
+        }
+    };
+
+    static {
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            sRings[i] = new TimingRing(DEFAULT_CAPACITY, DEFAULT_BUDGET_NANOS);
+        }
+        sRings[SECTION_FRAME].setBudgetNanos(DEFAULT_FRAME_BUDGET_NANOS);
+    }
+
+    private FrameTimings() {
+    }
+
+    /**
+     * 开启或关闭统计，开启期间通过FrameTicker每帧回调一次，记录帧间隔
+     *
+     * @param enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        if (sEnabled == enabled) {
+            return;
+        }
+        sEnabled = enabled;
+        sLastFrameNanos = 0;
+        if (enabled) {
+            FrameTicker.getInstance().add(sFrameListener);
+        } else {
+            FrameTicker.getInstance().remove(sFrameListener);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * 设置某个统计项的预算，超过的样本计入overBudgetCount
+     *
+     * @param section
+     * @param budgetNanos
+     */
+    public static void setBudgetNanos(int section, long budgetNanos) {
+        sRings[section].setBudgetNanos(budgetNanos);
+    }
+
+    /**
+     * 设置回调，每记录reportInterval个样本回调一次
+     *
+     * @param listener 为null时不回调
+     * @param reportInterval
+     */
+    public static void setListener(Listener listener, int reportInterval) {
+        sListener = listener;
+        sReportInterval = Math.max(1, reportInterval);
+    }
+
+    /**
+     * 开始计时
+     *
+     * @return 关闭时返回0
+     */
+    public static long begin() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 结束计时
+     *
+     * @param section 统计项
+     * @param start begin的返回值
+     */
+    public static void end(int section, long start) {
+        if (start == 0) {
+            return;
+        }
+        record(section, System.nanoTime() - start);
+    }
+
+    private static void record(int section, long nanos) {
+        TimingRing ring = sRings[section];
+        ring.add(nanos);
+        if (sListener != null && ring.getTotalCount() % sReportInterval == 0) {
+            fillSnapshot(section, sReportSnapshot);
+            sListener.onSnapshot(sReportSnapshot);
+        }
+    }
+
+    /**
+     * 获取某个统计项的快照
+     *
+     * @param section
+     * @return
+     */
+    public static Snapshot getSnapshot(int section) {
+        Snapshot snapshot = new Snapshot();
+        fillSnapshot(section, snapshot);
+        return snapshot;
+    }
+
+    public static void reset() {
+        for (TimingRing ring : sRings) {
+            ring.reset();
+        }
+        sLastFrameNanos = 0;
+    }
+
+    private static void fillSnapshot(int section, Snapshot snapshot) {
+        TimingRing ring = sRings[section];
+        ring.percentiles(PERCENTILES, sPercentileBuffer);
+        snapshot.section = section;
+        snapshot.totalCount = ring.getTotalCount();
+        snapshot.overBudgetCount = ring.getOverBudgetCount();
+        snapshot.p50Nanos = sPercentileBuffer[0];
+        snapshot.p90Nanos = sPercentileBuffer[1];
+        snapshot.p95Nanos = sPercentileBuffer[2];
+        snapshot.p99Nanos = sPercentileBuffer[3];
+        snapshot.maxNanos = ring.getMaxNanos();
+    }
+}
@@ -0,0 +1,63 @@
+package me.wmh.clockprogress;
+
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * "上次更新"文字的缓存(不依赖Android)
+ * <br>复用同一个SimpleDateFormat、Date和StringBuffer；只显示到分钟，同一分钟内直接返回上次生成的字符串，不分配内存。
+ * <br>只能在同一个线程中使用。
+ */
+public class LastUpdatedLabel {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+    private final String mPrefix;
+    private final SimpleDateFormat mFormat;
+    private final Date mDate = new Date();
+    private final StringBuffer mBuffer = new StringBuffer(32);
+    private final FieldPosition mFieldPosition = new FieldPosition(0);
+
+    private long mMinute = Long.MIN_VALUE;
+    private String mLabel;
+    private int mFormatCount = 0;
+
+    /**
+     * @param prefix 时间前面的文字
+     * @param pattern 时间格式，不能比分钟更精确
+     */
+    public LastUpdatedLabel(String prefix, String pattern) {
+        mPrefix = prefix;
+        mFormat = new SimpleDateFormat(pattern, Locale.CHINA);
+    }
+
+    /**
+     * 获取显示的文字
+     *
+     * @param time 毫秒
+     * @return 与上次在同一分钟时返回同一个对象
+     */
+    public String format(long time) {
+        long minute = time >= 0 ? time / MILLIS_PER_MINUTE : (time + 1) / MILLIS_PER_MINUTE - 1;
+        if (minute == mMinute && mLabel != null) {
+            return mLabel;
+        }
+        mMinute = minute;
+        mDate.setTime(time);
+        mBuffer.setLength(0);
+        mBuffer.append(mPrefix);
+        mFormat.format(mDate, mBuffer, mFieldPosition);
+        mLabel = mBuffer.toString();
+        mFormatCount++;
+        return mLabel;
+    }
+
+    /**
+     * 实际格式化的次数
+     */
+    public int getFormatCount() {
+        return mFormatCount;
+    }
+}
@@ -0,0 +1,166 @@
+package me.wmh.clockprogress;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在后台执行任务、在主线程返回结果，只返回最新一次任务的结果
+ * <br>每次开始或取消任务都会增加代数(generation)，结果回到主线程时代数已经变化的说明被新的任务取代了，直接丢弃。
+ * <br>除了构造方法外都需要在主线程调用。
+ */
+public class LatestTaskRunner<T> {
+
+    /**
+     * 默认线程池的线程数
+     */
+    private static final int DEFAULT_POOL_SIZE = 2;
+
+    private static ExecutorService sDefaultExecutor;
+
+    /**
+     * 主线程回调
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+
+        void onError(Exception e);
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private Executor mExecutor;
+
+    /**
+     * 当前的代数，只在主线程读写
+     */
+    private int mGeneration = 0;
+    private FutureTask<T> mCurrent;
+
+    /**
+     * 因为被取代而丢弃的结果数
+     */
+    private int mDroppedCount = 0;
+
+    /**
+     * 所有列表共用的默认线程池
+     *
+     * @return
+     */
+    public static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newFixedThreadPool(DEFAULT_POOL_SIZE, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "CustomListView-task-" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * 设置执行任务的线程池
+     *
+     * @param executor 为null时使用默认线程池
+     */
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * 开始新的任务，之前还没有完成的任务会被取消
+     *
+     * @param callable 在后台执行的任务
+     * @param callback 主线程回调
+     * @return 这个任务的代数
+     */
+    public int start(Callable<T> callable, final Callback<T> callback) {
+        cancel();
+        final int generation = ++mGeneration;
+        final FutureTask<T> task = new FutureTask<T>(callable) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                T result = null;
+                Exception error = null;
+                try {
+                    result = get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    error = cause instanceof Exception ? (Exception) cause : e;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                deliver(generation, result, error, callback);
+            }
+        };
+        mCurrent = task;
+        (mExecutor != null ? mExecutor : getDefaultExecutor()).execute(task);
+        return generation;
+    }
+
+    private void deliver(final int generation, final T result, final Exception error, final Callback<T> callback) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    // 已经被新的任务取代或者被取消
+                    mDroppedCount++;
+                    return;
+                }
+                mCurrent = null;
+                if (error != null) {
+                    callback.onError(error);
+                } else {
+                    callback.onResult(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * 取消正在执行的任务，已经在返回途中的结果也会被丢弃
+     *
+     * @return 是否有任务被取消
+     */
+    public boolean cancel() {
+        mGeneration++;
+        if (mCurrent == null) {
+            return false;
+        }
+        mCurrent.cancel(true);
+        mCurrent = null;
+        return true;
+    }
+
+    /**
+     * 是否有正在执行的任务
+     *
+     * @return
+     */
+    public boolean isRunning() {
+        return mCurrent != null;
+    }
+
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    public int getDroppedCount() {
+        return mDroppedCount;
+    }
+}
@@ -0,0 +1,84 @@
+package me.wmh.clockprogress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 新旧两份数据按id比较(不依赖Android，可以在后台线程执行)
+ * <br>内容没有变化的项沿用旧的对象，Adapter可以据此判断哪些行不需要重新绑定。
+ */
+public class ListDiffer {
+
+    /**
+     * 比较规则
+     */
+    public interface ItemCallback<T> {
+        /**
+         * 数据的唯一id
+         */
+        long getItemStableId(T item);
+
+        /**
+         * id相同时内容是否相同
+         */
+        boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    /**
+     * 比较结果
+     */
+    public static class Result<T> {
+        /**
+         * 合并后的新数据，内容没有变化的项是旧的对象
+         */
+        public final List<T> items;
+        public final int inserted;
+        public final int removed;
+        public final int changed;
+        public final int unchanged;
+
+        Result(List<T> items, int inserted, int removed, int changed, int unchanged) {
+            this.items = items;
+            this.inserted = inserted;
+            this.removed = removed;
+            this.changed = changed;
+            this.unchanged = unchanged;
+        }
+    }
+
+    /**
+     * 比较新旧数据
+     *
+     * @param oldItems 旧数据(比较过程中不能被修改)
+     * @param newItems 新数据
+     * @param callback 比较规则
+     * @return
+     */
+    public static <T> Result<T> diff(List<T> oldItems, List<T> newItems, ItemCallback<T> callback) {
+        HashMap<Long, T> oldById = new HashMap<Long, T>(oldItems.size() * 2);
+        for (int i = 0; i < oldItems.size(); i++) {
+            T item = oldItems.get(i);
+            oldById.put(callback.getItemStableId(item), item);
+        }
+        List<T> merged = new ArrayList<T>(newItems.size());
+        int inserted = 0;
+        int changed = 0;
+        int unchanged = 0;
+        for (int i = 0; i < newItems.size(); i++) {
+            T item = newItems.get(i);
+            T oldItem = oldById.remove(callback.getItemStableId(item));
+            if (oldItem == null) {
+                inserted++;
+                merged.add(item);
+            } else if (callback.areContentsTheSame(oldItem, item)) {
+                unchanged++;
+                merged.add(oldItem);
+            } else {
+                changed++;
+                merged.add(item);
+            }
+        }
+        return new Result<T>(merged, inserted, oldById.size(), changed, unchanged);
+    }
+}
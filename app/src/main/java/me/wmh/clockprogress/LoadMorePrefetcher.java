@@ -0,0 +1,129 @@
+package me.wmh.clockprogress;
+
+/**
+ * 加载更多的预加载判断(不依赖Android)
+ * <br>距离最后一项不超过prefetchDistance项时就开始加载，滚动过程中和停止时都会判断。
+ * <br>以开始加载时的数据条数作为这一页的游标，同一时间最多只有一个请求；过期的请求可以取消，之后返回的结果会被忽略。
+ */
+public class LoadMorePrefetcher {
+
+    /**
+     * 没有正在进行的请求
+     */
+    public static final int NO_CURSOR = -1;
+
+    /**
+     * 距离最后一项多少项时开始加载，0表示滚动到最后一项并停止时才加载
+     */
+    private int mPrefetchDistance = 0;
+
+    /**
+     * 正在进行的请求的游标
+     */
+    private int mInFlightCursor = NO_CURSOR;
+
+    /**
+     * 最后一次发起请求的游标，滚动过程中不会对同一个游标重复请求
+     */
+    private int mLastRequestedCursor = NO_CURSOR;
+
+    /**
+     * 被取消的请求数
+     */
+    private int mCancelledCount = 0;
+
+    /**
+     * 是否应该开始加载更多
+     *
+     * @param lastItemIndex 最后一个可见项的位置
+     * @param count 数据条数
+     * @param idle 是否已经停止滚动
+     * @return
+     */
+    public boolean shouldLoadMore(int lastItemIndex, int count, boolean idle) {
+        if (mInFlightCursor != NO_CURSOR) {
+            return false;
+        }
+        if (count - lastItemIndex > mPrefetchDistance) {
+            return false;
+        }
+        if (!idle) {
+            // 滚动过程中只在设置了预加载距离时判断，并且同一页只请求一次
+            return mPrefetchDistance > 0 && count != mLastRequestedCursor;
+        }
+        return true;
+    }
+
+    /**
+     * 开始加载
+     *
+     * @param count 当前数据条数，作为这一页的游标
+     * @return 游标
+     */
+    public int begin(int count) {
+        mInFlightCursor = count;
+        mLastRequestedCursor = count;
+        return count;
+    }
+
+    /**
+     * 加载完成
+     *
+     * @param cursor 请求的游标
+     * @return false表示这个请求已经被取消或者不是当前的请求，结果应该丢弃
+     */
+    public boolean complete(int cursor) {
+        if (mInFlightCursor == NO_CURSOR || mInFlightCursor != cursor) {
+            return false;
+        }
+        mInFlightCursor = NO_CURSOR;
+        return true;
+    }
+
+    /**
+     * 当前请求完成(不检查游标)
+     */
+    public void complete() {
+        mInFlightCursor = NO_CURSOR;
+    }
+
+    /**
+     * 取消正在进行的请求，之后可以对同一个游标重新请求
+     *
+     * @return 被取消的游标，没有请求时返回NO_CURSOR
+     */
+    public int cancel() {
+        int cursor = mInFlightCursor;
+        if (cursor != NO_CURSOR) {
+            mCancelledCount++;
+        }
+        mInFlightCursor = NO_CURSOR;
+        mLastRequestedCursor = NO_CURSOR;
+        return cursor;
+    }
+
+    public boolean isInFlight() {
+        return mInFlightCursor != NO_CURSOR;
+    }
+
+    public int getInFlightCursor() {
+        return mInFlightCursor;
+    }
+
+    public int getCancelledCount() {
+        return mCancelledCount;
+    }
+
+    public int getPrefetchDistance() {
+        return mPrefetchDistance;
+    }
+
+    /**
+     * 设置预加载距离
+     *
+     * @param prefetchDistance 距离最后一项多少项时开始加载，0表示滚动到最后一项并停止时才加载
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        mPrefetchDistance = Math.max(0, prefetchDistance);
+    }
+}
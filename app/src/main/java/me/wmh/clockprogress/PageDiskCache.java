@@ -0,0 +1,420 @@
+package me.wmh.clockprogress;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 分页数据的磁盘缓存
+ * <br>使用只追加写入的内存映射文件，冷启动时可以在第一次刷新返回之前显示上次的第一页和上次更新时间。
+ * <br>写入先合并在内存中，再在单独的线程里批量写入；文件写满时只保留最新的记录，仍然放不下时丢弃页号大的页。
+ * <br>文件格式：文件头[magic, 已提交的长度]，之后每条记录为[类型, 页号, 时间, 长度, 数据]。
+ * <br>RESET记录表示一次刷新，之前的页全部作废。
+ */
+public class PageDiskCache<T> {
+
+    private static final String TAG = "PageDiskCache";
+
+    /**
+     * 数据和字节之间的转换，在缓存线程调用
+     */
+    public interface Codec<T> {
+        byte[] encode(List<T> items) throws IOException;
+
+        List<T> decode(byte[] data) throws IOException;
+    }
+
+    public interface OnRestoreListener<T> {
+        /**
+         * 在主线程回调
+         *
+         * @param firstPage 上次的第一页，没有缓存时为null
+         * @param lastRefreshTime 上次刷新的时间，没有缓存时为0
+         */
+        void onRestored(List<T> firstPage, long lastRefreshTime);
+    }
+
+    /**
+     * 测试用：在回调中抛出异常可以模拟进程在压缩中途退出
+     */
+    interface CompactionHook {
+        /**
+         * @param count 已经重写并提交的记录数(包括RESET)
+         */
+        void onRecordRewritten(int count);
+    }
+
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    /**
+     * 合并写入的延时
+     */
+    private static final long FLUSH_DELAY_MILLIS = 500;
+
+    private static final int MAGIC = 0x434c4b50;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 20;
+
+    private static final int TYPE_RESET = 1;
+    private static final int TYPE_PAGE = 2;
+
+    private final File mFile;
+    private final int mMaxBytes;
+    private final Codec<T> mCodec;
+    private final ExecutorService mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 以下只在缓存线程访问
+     */
+    private MappedByteBuffer mBuffer;
+    private int mEnd;
+    private long mRefreshTime;
+    /**
+     * 每一页最新记录的位置
+     */
+    private final TreeMap<Integer, Integer> mPageOffsets = new TreeMap<Integer, Integer>();
+
+    /**
+     * 测试用，压缩时每重写一条记录调用一次
+     */
+    private volatile CompactionHook mCompactionHook;
+
+    /**
+     * 等待写入的数据，由mPendingLock保护
+     */
+    private final Object mPendingLock = new Object();
+    private final TreeMap<Integer, List<T>> mPendingPages = new TreeMap<Integer, List<T>>();
+    private long mPendingResetTime = -1;
+    private boolean mFlushScheduled;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    };
+
+    public PageDiskCache(File file, Codec<T> codec) {
+        this(file, DEFAULT_MAX_BYTES, codec);
+    }
+
+    /**
+     * @param file 缓存文件
+     * @param maxBytes 文件的最大字节数
+     * @param codec 数据和字节之间的转换
+     */
+    public PageDiskCache(File file, int maxBytes, Codec<T> codec) {
+        mFile = file;
+        mMaxBytes = Math.max(maxBytes, FILE_HEADER_SIZE + RECORD_HEADER_SIZE);
+        mCodec = codec;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PageDiskCache");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 读取上次的第一页和刷新时间，结果在主线程回调
+     *
+     * @param listener
+     */
+    public void restore(final OnRestoreListener<T> listener) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> firstPage = null;
+                long refreshTime = 0;
+                try {
+                    open();
+                    firstPage = readPage(0);
+                    refreshTime = mRefreshTime;
+                } catch (IOException e) {
+                    Log.w(TAG, "restore failed", e);
+                }
+                final List<T> page = firstPage;
+                final long time = refreshTime;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onRestored(page, time);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 同步读取一页，在后台线程调用(例如PagedListAdapter重新加载被释放的页)
+     *
+     * @param pageIndex
+     * @return 没有缓存时返回null
+     */
+    public List<T> loadPage(final int pageIndex) throws Exception {
+        FutureTask<List<T>> task = new FutureTask<List<T>>(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                // 先写入还在等待的数据，保证读到最新的一页
+                flush();
+                open();
+                return readPage(pageIndex);
+            }
+        });
+        mExecutor.execute(task);
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * 刷新完成，之前缓存的页全部作废
+     *
+     * @param firstPage 新的第一页
+     * @param refreshTime 刷新时间
+     */
+    public void saveFirstPage(List<T> firstPage, long refreshTime) {
+        synchronized (mPendingLock) {
+            mPendingPages.clear();
+            mPendingResetTime = refreshTime;
+            mPendingPages.put(0, firstPage);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 加载更多完成，保存一页
+     *
+     * @param pageIndex 页号
+     * @param items 数据
+     */
+    public void savePage(int pageIndex, List<T> items) {
+        synchronized (mPendingLock) {
+            mPendingPages.put(pageIndex, items);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 立即写入等待中的数据
+     */
+    public void flushNow() {
+        mMainHandler.removeCallbacks(mFlushRunnable);
+        mFlushRunnable.run();
+    }
+
+    private void scheduleFlush() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mMainHandler.postDelayed(mFlushRunnable, FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * 在缓存线程写入等待中的数据
+     */
+    private void flush() {
+        long resetTime;
+        List<Map.Entry<Integer, List<T>>> pages;
+        synchronized (mPendingLock) {
+            mFlushScheduled = false;
+            if (mPendingPages.isEmpty() && mPendingResetTime < 0) {
+                return;
+            }
+            resetTime = mPendingResetTime;
+            pages = new ArrayList<Map.Entry<Integer, List<T>>>(mPendingPages.entrySet());
+            mPendingPages.clear();
+            mPendingResetTime = -1;
+        }
+        try {
+            open();
+            if (resetTime >= 0) {
+                append(TYPE_RESET, 0, resetTime, null);
+            }
+            for (Map.Entry<Integer, List<T>> page : pages) {
+                append(TYPE_PAGE, page.getKey(), 0, mCodec.encode(page.getValue()));
+            }
+            mBuffer.force();
+        } catch (IOException e) {
+            Log.w(TAG, "flush failed", e);
+        }
+    }
+
+    /**
+     * 打开文件并扫描记录，建立每一页最新记录的索引
+     */
+    private void open() throws IOException {
+        if (mBuffer != null) {
+            return;
+        }
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            mBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mMaxBytes);
+        } finally {
+            // 映射建立后可以关闭文件
+            file.close();
+        }
+        if (mBuffer.getInt(0) != MAGIC) {
+            resetFile();
+            return;
+        }
+        int committed = mBuffer.getInt(4);
+        if (committed < FILE_HEADER_SIZE || committed > mMaxBytes) {
+            resetFile();
+            return;
+        }
+        int offset = FILE_HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= committed) {
+            int type = mBuffer.getInt(offset);
+            int length = mBuffer.getInt(offset + 16);
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > committed) {
+                break;
+            }
+            if (type == TYPE_RESET) {
+                mPageOffsets.clear();
+                mRefreshTime = mBuffer.getLong(offset + 8);
+            } else if (type == TYPE_PAGE) {
+                mPageOffsets.put(mBuffer.getInt(offset + 4), offset);
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        mEnd = offset;
+    }
+
+    private void resetFile() {
+        mPageOffsets.clear();
+        mRefreshTime = 0;
+        mEnd = FILE_HEADER_SIZE;
+        mBuffer.putInt(0, MAGIC);
+        commit();
+    }
+
+    /**
+     * 提交写入的长度，之前写了一半的记录不会被读到
+     */
+    private void commit() {
+        mBuffer.putInt(4, mEnd);
+    }
+
+    private void append(int type, int pageIndex, long time, byte[] data) {
+        int length = data == null ? 0 : data.length;
+        int size = RECORD_HEADER_SIZE + length;
+        if (mEnd + size > mMaxBytes) {
+            compact(size);
+            if (mEnd + size > mMaxBytes) {
+                Log.w(TAG, "page " + pageIndex + " does not fit in cache");
+                return;
+            }
+        }
+        if (type == TYPE_RESET) {
+            mPageOffsets.clear();
+            mRefreshTime = time;
+        } else {
+            mPageOffsets.put(pageIndex, mEnd);
+        }
+        writeRecord(mEnd, type, pageIndex, time, data, length);
+        mEnd += size;
+        commit();
+    }
+
+    private void writeRecord(int offset, int type, int pageIndex, long time, byte[] data, int length) {
+        mBuffer.putInt(offset, type);
+        mBuffer.putInt(offset + 4, pageIndex);
+        mBuffer.putLong(offset + 8, time);
+        mBuffer.putInt(offset + 16, length);
+        if (length > 0) {
+            ByteBuffer buffer = mBuffer.duplicate();
+            buffer.position(offset + RECORD_HEADER_SIZE);
+            buffer.put(data, 0, length);
+        }
+    }
+
+    /**
+     * 只保留RESET和每一页最新的记录，按页号从小到大重新写入；放不下时丢弃页号大的页
+     * <br>重写之前先把已提交的长度改回文件头并写到磁盘，之后每条记录写完再提交，
+     * 中途退出时重新打开只会读到已经重写完的记录，不会读到写了一半或者错位的旧记录。
+     *
+     * @param reserve 需要额外留出的空间
+     */
+    private void compact(int reserve) {
+        List<Integer> indexes = new ArrayList<Integer>(mPageOffsets.keySet());
+        List<byte[]> datas = new ArrayList<byte[]>(indexes.size());
+        for (Integer index : indexes) {
+            datas.add(readData(mPageOffsets.get(index)));
+        }
+        mPageOffsets.clear();
+        mEnd = FILE_HEADER_SIZE;
+        commit();
+        mBuffer.force();
+
+        writeRecord(mEnd, TYPE_RESET, 0, mRefreshTime, null, 0);
+        mEnd += RECORD_HEADER_SIZE;
+        commit();
+        onRecordRewritten(1);
+        for (int i = 0; i < indexes.size(); i++) {
+            byte[] data = datas.get(i);
+            if (mEnd + RECORD_HEADER_SIZE + data.length + reserve > mMaxBytes) {
+                break;
+            }
+            writeRecord(mEnd, TYPE_PAGE, indexes.get(i), 0, data, data.length);
+            mPageOffsets.put(indexes.get(i), mEnd);
+            mEnd += RECORD_HEADER_SIZE + data.length;
+            commit();
+            onRecordRewritten(i + 2);
+        }
+    }
+
+    private void onRecordRewritten(int count) {
+        CompactionHook hook = mCompactionHook;
+        if (hook != null) {
+            hook.onRecordRewritten(count);
+        }
+    }
+
+    void setCompactionHook(CompactionHook hook) {
+        mCompactionHook = hook;
+    }
+
+    private byte[] readData(int offset) {
+        byte[] data = new byte[mBuffer.getInt(offset + 16)];
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(offset + RECORD_HEADER_SIZE);
+        buffer.get(data);
+        return data;
+    }
+
+    private List<T> readPage(int pageIndex) throws IOException {
+        Integer offset = mPageOffsets.get(pageIndex);
+        if (offset == null) {
+            return null;
+        }
+        return mCodec.decode(readData(offset));
+    }
+}
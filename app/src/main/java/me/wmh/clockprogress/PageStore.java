@@ -0,0 +1,403 @@
+package me.wmh.clockprogress;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 分页数据的滑动窗口(不依赖Android)
+ * <br>所有页的条数都会保留，保证位置和滚动不变；超出条数或字节预算时，从离可见范围最远的页开始释放数据。
+ * <br>被释放的页再次进入可见范围时通过Listener请求重新加载，重新加载完成前对应位置的数据为null。
+ * <br>重新加载的页条数和原来不同(服务端数据有变化)时补null或者截断到原来的条数，后面的位置不会移动；需要下拉刷新才能得到一致的数据。
+ * <br>只能在同一个线程(主线程)中使用。
+ */
+public class PageStore<T> {
+
+    /**
+     * 估算一条数据占用的字节数
+     */
+    public interface ItemSizer<T> {
+        int sizeOf(T item);
+    }
+
+    public interface Listener {
+        /**
+         * 某一页的数据被释放
+         */
+        void onPageEvicted(int pageIndex);
+
+        /**
+         * 某一页需要重新加载，加载完成后调用setPageItems
+         */
+        void onPageReloadRequested(int pageIndex);
+    }
+
+    private static class Page<T> {
+        List<T> items;
+        int size;
+        long bytes;
+        boolean reloading;
+        boolean failed;
+    }
+
+    private final ArrayList<Page<T>> mPages = new ArrayList<Page<T>>();
+
+    /**
+     * 每一页第一条数据的位置，用于二分查找
+     */
+    private int[] mPageStarts = new int[16];
+
+    private int mTotalCount = 0;
+    private int mResidentItems = 0;
+    private long mResidentBytes = 0;
+
+    private int mMaxResidentItems = Integer.MAX_VALUE;
+    private long mMaxResidentBytes = Long.MAX_VALUE;
+
+    /**
+     * 可见范围前后额外保留(并预先重新加载)的页数
+     */
+    private int mPrefetchPages = 1;
+
+    private int mFirstVisiblePage = 0;
+    private int mLastVisiblePage = 0;
+
+    /**
+     * 每次clear都会增加，用于丢弃清空之前发起的重新加载
+     */
+    private int mGeneration = 0;
+
+    private int mEvictedCount = 0;
+    private int mReloadCount = 0;
+    private int mSizeMismatchCount = 0;
+
+    private ItemSizer<T> mSizer;
+    private Listener mListener;
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public void setItemSizer(ItemSizer<T> sizer) {
+        mSizer = sizer;
+    }
+
+    /**
+     * 设置内存中最多保留的数据条数
+     *
+     * @param maxItems
+     */
+    public void setMaxResidentItems(int maxItems) {
+        mMaxResidentItems = maxItems;
+        trim();
+    }
+
+    /**
+     * 设置内存中最多保留的字节数，需要同时设置ItemSizer
+     *
+     * @param maxBytes
+     */
+    public void setMaxResidentBytes(long maxBytes) {
+        mMaxResidentBytes = maxBytes;
+        trim();
+    }
+
+    /**
+     * 设置可见范围前后额外保留的页数
+     *
+     * @param prefetchPages
+     */
+    public void setPrefetchPages(int prefetchPages) {
+        mPrefetchPages = Math.max(0, prefetchPages);
+    }
+
+    /**
+     * 在最后添加一页
+     *
+     * @param items
+     */
+    public void appendPage(List<T> items) {
+        Page<T> page = new Page<T>();
+        page.items = items;
+        page.size = items.size();
+        page.bytes = measure(items);
+        if (mPages.size() == mPageStarts.length) {
+            mPageStarts = Arrays.copyOf(mPageStarts, mPageStarts.length * 2);
+        }
+        mPageStarts[mPages.size()] = mTotalCount;
+        mPages.add(page);
+        mTotalCount += page.size;
+        mResidentItems += page.size;
+        mResidentBytes += page.bytes;
+        trim();
+    }
+
+    /**
+     * 清空所有页(下拉刷新)
+     */
+    public void clear() {
+        mPages.clear();
+        mTotalCount = 0;
+        mResidentItems = 0;
+        mResidentBytes = 0;
+        mFirstVisiblePage = 0;
+        mLastVisiblePage = 0;
+        mGeneration++;
+    }
+
+    /**
+     * 重新加载完成
+     * <br>条数和原来不同时补null或者截断到原来的条数，保证后面的位置和滚动位置不变
+     *
+     * @param generation 发起重新加载时的getGeneration()
+     * @param pageIndex 页号
+     * @param items 数据
+     * @return false表示已经清空过，结果被丢弃
+     */
+    public boolean setPageItems(int generation, int pageIndex, List<T> items) {
+        if (generation != mGeneration || pageIndex >= mPages.size()) {
+            return false;
+        }
+        Page<T> page = mPages.get(pageIndex);
+        page.reloading = false;
+        page.failed = false;
+        if (page.items != null) {
+            mResidentItems -= page.size;
+            mResidentBytes -= page.bytes;
+        }
+        if (items.size() != page.size) {
+            mSizeMismatchCount++;
+            items = fitToSize(items, page.size);
+        }
+        page.items = items;
+        page.bytes = measure(items);
+        mResidentItems += page.size;
+        mResidentBytes += page.bytes;
+        trim();
+        return true;
+    }
+
+    /**
+     * 截断或者在末尾补null到指定条数
+     */
+    private static <T> List<T> fitToSize(List<T> items, int size) {
+        ArrayList<T> fitted = new ArrayList<T>(size);
+        fitted.addAll(items.subList(0, Math.min(size, items.size())));
+        while (fitted.size() < size) {
+            fitted.add(null);
+        }
+        return fitted;
+    }
+
+    /**
+     * 重新加载失败，getItem不再自动请求，可见的页变化或者retryFailedPages时再请求
+     *
+     * @param generation
+     * @param pageIndex
+     */
+    public void onPageReloadFailed(int generation, int pageIndex) {
+        if (generation == mGeneration && pageIndex < mPages.size()) {
+            Page<T> page = mPages.get(pageIndex);
+            page.reloading = false;
+            page.failed = true;
+        }
+    }
+
+    /**
+     * 重新请求可见范围及前后prefetchPages页中加载失败的页
+     *
+     * @return 请求的页数
+     */
+    public int retryFailedPages() {
+        if (mPages.isEmpty()) {
+            return 0;
+        }
+        int from = Math.max(0, mFirstVisiblePage - mPrefetchPages);
+        int to = Math.min(mPages.size() - 1, mLastVisiblePage + mPrefetchPages);
+        int count = 0;
+        for (int i = from; i <= to; i++) {
+            Page<T> page = mPages.get(i);
+            if (page.failed) {
+                requestReload(i);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 位置所在的页是否加载失败(显示重试而不是加载中)
+     *
+     * @param position
+     * @return
+     */
+    public boolean isFailed(int position) {
+        if (position < 0 || position >= mTotalCount) {
+            return false;
+        }
+        return mPages.get(findPage(position)).failed;
+    }
+
+    /**
+     * 获取数据，所在的页已经被释放时返回null并请求重新加载，加载失败的页只返回null
+     *
+     * @param position
+     * @return
+     */
+    public T getItem(int position) {
+        int pageIndex = findPage(position);
+        Page<T> page = mPages.get(pageIndex);
+        if (page.items == null) {
+            if (!page.failed) {
+                requestReload(pageIndex);
+            }
+            return null;
+        }
+        return page.items.get(position - mPageStarts[pageIndex]);
+    }
+
+    /**
+     * 可见范围变化，释放远处的页、重新加载附近被释放的页
+     *
+     * @param firstPosition 第一个可见的位置
+     * @param lastPosition 最后一个可见的位置
+     */
+    public void onVisibleRangeChanged(int firstPosition, int lastPosition) {
+        if (mTotalCount == 0) {
+            return;
+        }
+        int first = findPage(Math.max(0, Math.min(firstPosition, mTotalCount - 1)));
+        int last = findPage(Math.max(0, Math.min(lastPosition, mTotalCount - 1)));
+        if (first == mFirstVisiblePage && last == mLastVisiblePage) {
+            return;
+        }
+        mFirstVisiblePage = first;
+        mLastVisiblePage = last;
+        int from = Math.max(0, first - mPrefetchPages);
+        int to = Math.min(mPages.size() - 1, last + mPrefetchPages);
+        for (int i = from; i <= to; i++) {
+            if (mPages.get(i).items == null) {
+                requestReload(i);
+            }
+        }
+        trim();
+    }
+
+    /**
+     * 超出预算时从离可见范围最远的页开始释放，可见范围及前后prefetchPages页不会被释放
+     */
+    private void trim() {
+        while (mResidentItems > mMaxResidentItems || mResidentBytes > mMaxResidentBytes) {
+            int farthest = -1;
+            int farthestDistance = mPrefetchPages;
+            for (int i = 0; i < mPages.size(); i++) {
+                if (mPages.get(i).items == null) {
+                    continue;
+                }
+                int distance = distanceToVisible(i);
+                if (distance > farthestDistance) {
+                    farthest = i;
+                    farthestDistance = distance;
+                }
+            }
+            if (farthest < 0) {
+                return;
+            }
+            Page<T> page = mPages.get(farthest);
+            page.items = null;
+            mResidentItems -= page.size;
+            mResidentBytes -= page.bytes;
+            page.bytes = 0;
+            mEvictedCount++;
+            if (mListener != null) {
+                mListener.onPageEvicted(farthest);
+            }
+        }
+    }
+
+    private int distanceToVisible(int pageIndex) {
+        if (pageIndex < mFirstVisiblePage) {
+            return mFirstVisiblePage - pageIndex;
+        }
+        if (pageIndex > mLastVisiblePage) {
+            return pageIndex - mLastVisiblePage;
+        }
+        return 0;
+    }
+
+    private void requestReload(int pageIndex) {
+        Page<T> page = mPages.get(pageIndex);
+        if (page.reloading) {
+            return;
+        }
+        page.reloading = true;
+        page.failed = false;
+        mReloadCount++;
+        if (mListener != null) {
+            mListener.onPageReloadRequested(pageIndex);
+        }
+    }
+
+    private long measure(List<T> items) {
+        if (mSizer == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (int i = 0; i < items.size(); i++) {
+            bytes += mSizer.sizeOf(items.get(i));
+        }
+        return bytes;
+    }
+
+    /**
+     * 二分查找位置所在的页
+     */
+    private int findPage(int position) {
+        int low = 0;
+        int high = mPages.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mPageStarts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public int getCount() {
+        return mTotalCount;
+    }
+
+    public int getPageCount() {
+        return mPages.size();
+    }
+
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    public int getResidentItemCount() {
+        return mResidentItems;
+    }
+
+    public long getResidentBytes() {
+        return mResidentBytes;
+    }
+
+    public int getEvictedCount() {
+        return mEvictedCount;
+    }
+
+    public int getReloadCount() {
+        return mReloadCount;
+    }
+
+    /**
+     * 重新加载的条数和原来不同的次数
+     */
+    public int getSizeMismatchCount() {
+        return mSizeMismatchCount;
+    }
+}
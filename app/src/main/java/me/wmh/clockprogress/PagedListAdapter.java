@@ -0,0 +1,232 @@
+package me.wmh.clockprogress;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 分页加载、限制内存的Adapter
+ * <br>数据按页保存在PageStore中，超出预算时释放离可见范围远的页，滚动回来时在后台线程重新加载。
+ * <br>被释放的页仍然保留条数，所以位置、滚动距离和FooterView的状态都不受影响。
+ * <br>设置给CustomListView后，可见范围由CustomListView在滚动时自动通知。
+ */
+public abstract class PagedListAdapter<T> extends BaseAdapter implements PageStore.Listener {
+
+    /**
+     * 重新加载某一页，在后台线程调用
+     */
+    public interface PageLoader<T> {
+        List<T> loadPage(int pageIndex) throws Exception;
+    }
+
+    /**
+     * 重新加载失败，在主线程回调
+     */
+    public interface OnPageLoadErrorListener {
+        /**
+         * @param pageIndex 页号，对应位置的数据仍然为null，可以显示重试，之后调用retryFailedPages
+         * @param e 失败原因
+         */
+        void onPageLoadError(int pageIndex, Exception e);
+    }
+
+    private final PageStore<T> mStore = new PageStore<T>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private PageLoader<T> mPageLoader;
+    private PageDiskCache<T> mPageCache;
+    private OnPageLoadErrorListener mErrorListener;
+    private Executor mExecutor = LatestTaskRunner.getDefaultExecutor();
+
+    public PagedListAdapter() {
+        mStore.setListener(this);
+    }
+
+    /**
+     * 绑定一行数据
+     *
+     * @param position 位置
+     * @param item 数据，所在的页正在重新加载时为null，需要显示占位内容
+     * @param convertView 可以复用的View
+     * @param parent 父View
+     * @return
+     */
+    protected abstract View getItemView(int position, T item, View convertView, ViewGroup parent);
+
+    public void setPageLoader(PageLoader<T> pageLoader) {
+        mPageLoader = pageLoader;
+    }
+
+    public void setOnPageLoadErrorListener(OnPageLoadErrorListener listener) {
+        mErrorListener = listener;
+    }
+
+    /**
+     * 设置磁盘缓存，添加的页会写入缓存，重新加载时先从缓存读取
+     *
+     * @param pageCache
+     */
+    public void setPageCache(PageDiskCache<T> pageCache) {
+        mPageCache = pageCache;
+    }
+
+    /**
+     * 设置重新加载使用的线程池
+     *
+     * @param executor 为null时使用默认线程池
+     */
+    public void setExecutor(Executor executor) {
+        mExecutor = executor == null ? LatestTaskRunner.getDefaultExecutor() : executor;
+    }
+
+    public PageStore<T> getPageStore() {
+        return mStore;
+    }
+
+    /**
+     * 加载更多完成后添加一页
+     *
+     * @param items
+     */
+    public void appendPage(List<T> items) {
+        if (mPageCache != null) {
+            mPageCache.savePage(mStore.getPageCount(), items);
+        }
+        mStore.appendPage(items);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 下拉刷新完成后用第一页替换全部数据，还没有返回的重新加载会被丢弃
+     *
+     * @param firstPage
+     */
+    public void setFirstPage(List<T> firstPage) {
+        if (mPageCache != null) {
+            mPageCache.saveFirstPage(firstPage, System.currentTimeMillis());
+        }
+        restoreFirstPage(firstPage);
+    }
+
+    /**
+     * 显示磁盘缓存中的第一页，不会再写回缓存
+     *
+     * @param firstPage
+     */
+    public void restoreFirstPage(List<T> firstPage) {
+        mStore.clear();
+        mStore.appendPage(firstPage);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 重新加载可见范围附近加载失败的页
+     */
+    public void retryFailedPages() {
+        if (mStore.retryFailedPages() > 0) {
+            // 重新显示为加载中
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * 位置所在的页是否加载失败，getItemView中可以用来显示重试而不是加载中
+     *
+     * @param position
+     * @return
+     */
+    public boolean isFailed(int position) {
+        return mStore.isFailed(position);
+    }
+
+    /**
+     * 可见范围变化
+     *
+     * @param firstPosition 第一个可见的数据位置
+     * @param lastPosition 最后一个可见的数据位置
+     */
+    public void onVisibleRangeChanged(int firstPosition, int lastPosition) {
+        mStore.onVisibleRangeChanged(firstPosition, lastPosition);
+    }
+
+    @Override
+    public void onPageEvicted(int pageIndex) {
+    }
+
+    @Override
+    public void onPageReloadRequested(final int pageIndex) {
+        final PageLoader<T> loader = mPageLoader;
+        final PageDiskCache<T> cache = mPageCache;
+        if (loader == null && cache == null) {
+            return;
+        }
+        final int generation = mStore.getGeneration();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> items = null;
+                Exception error = null;
+                try {
+                    if (cache != null) {
+                        items = cache.loadPage(pageIndex);
+                    }
+                    if (items == null && loader != null) {
+                        items = loader.loadPage(pageIndex);
+                    }
+                    if (items == null) {
+                        error = new Exception("page " + pageIndex + " not available");
+                    }
+                } catch (Exception e) {
+                    error = e;
+                }
+                final List<T> result = items;
+                final Exception failure = error;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (result != null) {
+                            if (mStore.setPageItems(generation, pageIndex, result)) {
+                                notifyDataSetChanged();
+                            }
+                            return;
+                        }
+                        if (generation != mStore.getGeneration()) {
+                            return;
+                        }
+                        // 标记为失败，占位行可以显示重试
+                        mStore.onPageReloadFailed(generation, pageIndex);
+                        notifyDataSetChanged();
+                        if (mErrorListener != null) {
+                            mErrorListener.onPageLoadError(pageIndex, failure);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public int getCount() {
+        return mStore.getCount();
+    }
+
+    @Override
+    public T getItem(int position) {
+        return mStore.getItem(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        return getItemView(position, mStore.getItem(position), convertView, parent);
+    }
+}
@@ -0,0 +1,59 @@
+package me.wmh.clockprogress;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 跨线程传递进度的最新值槽(不依赖Android，无锁)
+ * <br>任意线程都可以频繁offer，只保留最后一次的值；只有槽从空变为有值的那一次offer返回true，调用方这时才需要post到UI线程。
+ * <br>UI线程take之后才会再次返回true，所以不管写入多频繁，每帧最多只有一次post。
+ */
+public class ProgressSlot {
+
+    /**
+     * 没有值时的内容(NaN的位模式)
+     */
+    private static final int EMPTY = Float.floatToRawIntBits(Float.NaN);
+
+    /**
+     * 最新的值，按float的位模式保存
+     */
+    private final AtomicInteger mBits = new AtomicInteger(EMPTY);
+
+    /**
+     * 是否已经post过，还没有被take
+     */
+    private final AtomicBoolean mPosted = new AtomicBoolean(false);
+
+    /**
+     * 写入最新值，可以在任意线程调用
+     *
+     * @param value 进度，NaN会被忽略
+     * @return true表示调用方需要post一次，让UI线程take
+     */
+    public boolean offer(float value) {
+        if (Float.isNaN(value)) {
+            return false;
+        }
+        mBits.set(Float.floatToRawIntBits(value));
+        return !mPosted.getAndSet(true);
+    }
+
+    /**
+     * 取出最新值，在UI线程调用
+     * <br>先清除post标记再读值，读之后的写入会重新post，不会丢失
+     *
+     * @return 最新值，槽为空时返回NaN
+     */
+    public float take() {
+        mPosted.set(false);
+        return Float.intBitsToFloat(mBits.getAndSet(EMPTY));
+    }
+
+    /**
+     * 丢弃还没有被取出的值，已经post的任务take时会得到NaN
+     */
+    public void clear() {
+        mBits.set(EMPTY);
+    }
+}
@@ -0,0 +1,399 @@
+package me.wmh.clockprogress;
+
+/**
+ * 下拉刷新和加载更多的状态机(不依赖Android)
+ * <br>输入只有基本类型(触摸的y坐标、第一个可见项、是否停止滚动)，返回需要执行的操作(EFFECT_*的组合)，不分配内存。
+ * <br>下拉过程中的状态变化由MOVE_TRANSITIONS/UP_TRANSITIONS表决定，CustomListView只负责把操作应用到View上。
+ */
+public class PullStateMachine {
+
+    /**
+     * 实际的padding的距离与界面上偏移距离的比例(即下拉刷新的阻尼度)
+     */
+    public static final int RATIO = 3;
+
+    /**
+     * 已经达到下拉距离的要求，状态为释放刷新
+     */
+    public static final int RELEASE_TO_REFRESH = 0;
+
+    /**
+     * 还没有达到下拉距离要求，状态为下拉刷新
+     */
+    public static final int PULL_TO_REFRESH = 1;
+
+    /**
+     * 正在下拉刷新中
+     */
+    public static final int HEADER_REFRESHING = 2;
+
+    /**
+     * 下拉刷新完成
+     */
+    public static final int HEADER_REFRESHING_DONE = 3;
+
+    /**
+     * 加载更多中
+     */
+    public static final int FOOTER_LOADING = 1;
+
+    /**
+     * 手动加载更多完成
+     */
+    public static final int FOOTER_MANUAL_LOAD_DONE = 2;
+
+    /**
+     * 自动加载更多完成
+     */
+    public static final int FOOTER_AUTO_LOAD_DONE = 3;
+
+    /**
+     * 加载更多错误
+     */
+    public static final int FOOTER_LOAD_ERROR = 4;
+
+    public static final int EFFECT_NONE = 0;
+
+    /**
+     * HeadView的状态变了，需要按getHeadState()更新显示内容
+     */
+    public static final int EFFECT_HEADER_STATE = 1;
+
+    /**
+     * HeadView显示的高度变了，按getHeaderPaddingTop()设置
+     */
+    public static final int EFFECT_HEADER_OFFSET = 1 << 1;
+
+    /**
+     * 下拉过程中需要让列表停在HeadView
+     */
+    public static final int EFFECT_KEEP_HEADER = 1 << 2;
+
+    /**
+     * 开始刷新
+     */
+    public static final int EFFECT_REFRESH = 1 << 3;
+
+    /**
+     * 开始加载更多
+     */
+    public static final int EFFECT_LOAD_MORE = 1 << 4;
+
+    /**
+     * FootView的状态变了，需要按getFooterState()更新显示内容
+     */
+    public static final int EFFECT_FOOTER_STATE = 1 << 5;
+
+    /**
+     * 加载更多被关闭，需要移除FootView
+     */
+    public static final int EFFECT_HIDE_FOOTER = 1 << 6;
+
+    /**
+     * 下拉距离所在的区间：没有下拉或者推回到顶部
+     */
+    private static final int ZONE_UP = 0;
+
+    /**
+     * 下拉距离所在的区间：还不够松手刷新
+     */
+    private static final int ZONE_PULL = 1;
+
+    /**
+     * 下拉距离所在的区间：足够松手刷新
+     */
+    private static final int ZONE_RELEASE = 2;
+
+    /**
+     * 移动时的状态变化，[当前状态][下拉区间] -> 新状态
+     * <br>HEADER_REFRESHING时不处理移动
+     */
+    private static final int[][] MOVE_TRANSITIONS = {
+            // RELEASE_TO_REFRESH
+            {HEADER_REFRESHING_DONE, PULL_TO_REFRESH, RELEASE_TO_REFRESH},
+            // PULL_TO_REFRESH
+            {HEADER_REFRESHING_DONE, PULL_TO_REFRESH, RELEASE_TO_REFRESH},
+            // HEADER_REFRESHING
+            {HEADER_REFRESHING, HEADER_REFRESHING, HEADER_REFRESHING},
+            // HEADER_REFRESHING_DONE：一次移动最多进入PULL_TO_REFRESH
+            {HEADER_REFRESHING_DONE, PULL_TO_REFRESH, PULL_TO_REFRESH},
+    };
+
+    /**
+     * 松手时的状态变化，[当前状态] -> 新状态
+     */
+    private static final int[] UP_TRANSITIONS = {
+            HEADER_REFRESHING, HEADER_REFRESHING_DONE, HEADER_REFRESHING, HEADER_REFRESHING_DONE
+    };
+
+    private int mHeadState = HEADER_REFRESHING_DONE;
+    private int mFooterState = FOOTER_AUTO_LOAD_DONE;
+
+    private int mHeaderHeight;
+    private int mHeaderPaddingTop;
+
+    /**
+     * 是否记录了下拉的起点
+     */
+    private boolean mIsRecored;
+    private int mStartY;
+
+    private boolean mCanRefresh;
+    private boolean mCanLoadMore;
+    private boolean mIsAutoLoadMore = true;
+    private boolean mScrollToLoadMore = true;
+
+    /**
+     * 正在进行的加载更多是否可以被下拉刷新取消
+     */
+    private boolean mLoadMoreCancellable;
+
+    /**
+     * 设置HeadView的高度
+     *
+     * @param headerHeight
+     */
+    public void setHeaderHeight(int headerHeight) {
+        mHeaderHeight = headerHeight;
+        mHeaderPaddingTop = -headerHeight;
+    }
+
+    /**
+     * 下拉手势是否被忽略(不能刷新，或者正在加载更多且不能取消)
+     */
+    private boolean isPullBlocked() {
+        return !mCanRefresh
+                || (mCanLoadMore && mFooterState == FOOTER_LOADING && !mLoadMoreCancellable);
+    }
+
+    /**
+     * 手指按下
+     *
+     * @param y 触摸位置
+     * @param firstIndex 第一个可见项
+     * @return EFFECT_*
+     */
+    public int onDown(int y, int firstIndex) {
+        if (isPullBlocked()) {
+            return EFFECT_NONE;
+        }
+        if (firstIndex == 0 && !mIsRecored) {
+            mIsRecored = true;
+            mStartY = y;
+        }
+        return EFFECT_NONE;
+    }
+
+    /**
+     * 手指移动
+     *
+     * @param y 触摸位置
+     * @param firstIndex 第一个可见项
+     * @return EFFECT_*
+     */
+    public int onMove(int y, int firstIndex) {
+        if (isPullBlocked()) {
+            return EFFECT_NONE;
+        }
+        if (!mIsRecored && firstIndex == 0) {
+            mIsRecored = true;
+            mStartY = y;
+        }
+        if (mHeadState == HEADER_REFRESHING || !mIsRecored) {
+            return EFFECT_NONE;
+        }
+        int effects = EFFECT_NONE;
+        if (mHeadState == RELEASE_TO_REFRESH || mHeadState == PULL_TO_REFRESH) {
+            // 保证在设置padding的过程中，当前的位置一直是在head，否则如果当列表超出屏幕的话，当在上推的时候，列表会同时进行滚动
+            effects |= EFFECT_KEEP_HEADER;
+        }
+        int dy = y - mStartY;
+        int zone;
+        if (dy <= 0) {
+            zone = ZONE_UP;
+        } else if (dy / RATIO >= mHeaderHeight) {
+            zone = ZONE_RELEASE;
+        } else {
+            zone = ZONE_PULL;
+        }
+        int next = MOVE_TRANSITIONS[mHeadState][zone];
+        if (next != mHeadState) {
+            mHeadState = next;
+            effects |= EFFECT_HEADER_STATE;
+        }
+        if (mHeadState == PULL_TO_REFRESH || mHeadState == RELEASE_TO_REFRESH) {
+            //改变headerview的padding显示多少内容
+            mHeaderPaddingTop = dy / RATIO - mHeaderHeight;
+            effects |= EFFECT_HEADER_OFFSET;
+        }
+        return effects;
+    }
+
+    /**
+     * 手指抬起
+     *
+     * @return EFFECT_*
+     */
+    public int onUp() {
+        if (isPullBlocked()) {
+            return EFFECT_NONE;
+        }
+        // 手指已经离开，之后的状态变化可以播放归位动画
+        mIsRecored = false;
+        int next = UP_TRANSITIONS[mHeadState];
+        if (next == mHeadState) {
+            return EFFECT_NONE;
+        }
+        int effects = EFFECT_HEADER_STATE;
+        if (next == HEADER_REFRESHING) {
+            effects |= EFFECT_REFRESH;
+        }
+        mHeadState = next;
+        return effects;
+    }
+
+    /**
+     * 判断是否需要加载更多
+     *
+     * @param reachedEnd 是否已经滚动到需要加载的位置
+     * @param idle 是否已经停止滚动
+     * @return EFFECT_*
+     */
+    public int onLoadMoreCheck(boolean reachedEnd, boolean idle) {
+        if (!mScrollToLoadMore) {
+            return EFFECT_NONE;
+        }
+        if (!mCanLoadMore) {
+            // 突然关闭加载更多功能之后，我们要移除FootView。
+            return EFFECT_HIDE_FOOTER;
+        }
+        if (!reachedEnd || mFooterState == FOOTER_LOADING) {
+            return EFFECT_NONE;
+        }
+        if (mIsAutoLoadMore) {
+            // 可以下拉刷新的情况下再判断是否正在下拉刷新
+            if (!mCanRefresh || mHeadState != HEADER_REFRESHING) {
+                mFooterState = FOOTER_LOADING;
+                return EFFECT_LOAD_MORE | EFFECT_FOOTER_STATE;
+            }
+        } else if (idle) {
+            // 不能自动加载更多情况，我们让FooterView显示 “点击加载”
+            mFooterState = FOOTER_MANUAL_LOAD_DONE;
+            return EFFECT_FOOTER_STATE;
+        }
+        return EFFECT_NONE;
+    }
+
+    /**
+     * 点击FootView
+     *
+     * @return EFFECT_*
+     */
+    public int onFooterClick() {
+        if (!mCanLoadMore || mFooterState == FOOTER_LOADING) {
+            return EFFECT_NONE;
+        }
+        // 当可以下拉刷新时，HeadView没有正在刷新，才可以点击加载更多。
+        if (mCanRefresh && mHeadState == HEADER_REFRESHING) {
+            return EFFECT_NONE;
+        }
+        mFooterState = FOOTER_LOADING;
+        return EFFECT_LOAD_MORE;
+    }
+
+    /**
+     * 直接进入刷新状态(不经过下拉)
+     *
+     * @return EFFECT_*
+     */
+    public int startRefreshing() {
+        mHeadState = HEADER_REFRESHING;
+        return EFFECT_HEADER_STATE | EFFECT_REFRESH;
+    }
+
+    /**
+     * 刷新完成或者被取消
+     *
+     * @return EFFECT_*
+     */
+    public int onRefreshFinished() {
+        mHeadState = HEADER_REFRESHING_DONE;
+        mHeaderPaddingTop = -mHeaderHeight;
+        return EFFECT_HEADER_STATE;
+    }
+
+    /**
+     * 加载更多完成或者被取消，FootView回到"加载更多"
+     *
+     * @return EFFECT_*
+     */
+    public int onLoadMoreFinished() {
+        mFooterState = mIsAutoLoadMore ? FOOTER_AUTO_LOAD_DONE : FOOTER_MANUAL_LOAD_DONE;
+        return EFFECT_FOOTER_STATE;
+    }
+
+    /**
+     * 加载更多失败
+     *
+     * @return EFFECT_*
+     */
+    public int onLoadMoreError() {
+        mFooterState = FOOTER_LOAD_ERROR;
+        return EFFECT_FOOTER_STATE;
+    }
+
+    public int getHeadState() {
+        return mHeadState;
+    }
+
+    public int getFooterState() {
+        return mFooterState;
+    }
+
+    /**
+     * 当前下拉距离对应的HeadView paddingTop
+     */
+    public int getHeaderPaddingTop() {
+        return mHeaderPaddingTop;
+    }
+
+    public boolean isRecored() {
+        return mIsRecored;
+    }
+
+    public boolean isCanRefresh() {
+        return mCanRefresh;
+    }
+
+    public void setCanRefresh(boolean canRefresh) {
+        mCanRefresh = canRefresh;
+    }
+
+    public boolean isCanLoadMore() {
+        return mCanLoadMore;
+    }
+
+    public void setCanLoadMore(boolean canLoadMore) {
+        mCanLoadMore = canLoadMore;
+    }
+
+    public boolean isAutoLoadMore() {
+        return mIsAutoLoadMore;
+    }
+
+    public void setAutoLoadMore(boolean autoLoadMore) {
+        mIsAutoLoadMore = autoLoadMore;
+    }
+
+    public boolean isScrollToLoadMore() {
+        return mScrollToLoadMore;
+    }
+
+    public void setScrollToLoadMore(boolean scrollToLoadMore) {
+        mScrollToLoadMore = scrollToLoadMore;
+    }
+
+    public void setLoadMoreCancellable(boolean loadMoreCancellable) {
+        mLoadMoreCancellable = loadMoreCancellable;
+    }
+}
@@ -0,0 +1,517 @@
+package me.wmh.clockprogress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 多个数据源并行刷新
+ * <br>作为OnAsyncRefreshListener设置给CustomListView：刷新时在有界线程池中同时请求所有数据源，
+ * 每个数据源有自己的超时，刷新耗时从所有数据源耗时之和变为最慢的一个。
+ * <br>超时和耗时都从数据源的任务真正开始执行算起，在线程池里排队的时间不算；
+ * 但从提交算起排队超过setMaxQueueWaitMs还没有开始的数据源按超时处理，线程池被不响应中断的数据源占满时刷新也能结束。
+ * <br>结果由CustomListView的异步刷新流程送回主线程，onRefreshComplete()只会调用一次；新的刷新或cancelRefresh会取消还没有完成的请求。
+ * <br>部分结果：required的数据源失败或超时时立即结束本次刷新，回调onRefreshError(AggregateException)；
+ * 其余数据源失败时仍然回调onRefreshResult，只要至少有一个数据源成功。
+ * <br>addSource等配置方法需要在主线程调用。
+ */
+public class RefreshAggregator implements CustomListView.OnAsyncRefreshListener<RefreshAggregator.Result> {
+
+    /**
+     * 默认线程池的线程数，同时请求的数据源不超过这个数量
+     */
+    private static final int DEFAULT_POOL_SIZE = 4;
+
+    /**
+     * 默认的单个数据源超时(毫秒)
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 10000;
+
+    /**
+     * 默认的最长排队时间(毫秒)
+     */
+    public static final long DEFAULT_MAX_QUEUE_WAIT_MS = 10000;
+
+    /**
+     * 每个数据源保留最近多少次耗时
+     */
+    private static final int LATENCY_HISTORY = 32;
+
+    /**
+     * 还有数据源在线程池中排队时，最长等待多久再检查它们是否开始执行(纳秒)
+     */
+    private static final long START_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 任务还没有开始执行
+     */
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static ExecutorService sDefaultExecutor;
+
+    /**
+     * 主线程回调
+     */
+    public interface OnAggregateRefreshListener {
+        /**
+         * 所有required的数据源都成功，并且至少有一个数据源成功
+         */
+        void onRefreshResult(Result result);
+
+        /**
+         * 刷新失败，e为AggregateException时可以取到已经返回的部分结果
+         */
+        void onRefreshError(Exception e);
+    }
+
+    private final ArrayList<SourceEntry> mSources = new ArrayList<SourceEntry>();
+    private final HashMap<String, TimingRing> mLatencies = new HashMap<String, TimingRing>();
+    private final OnAggregateRefreshListener mListener;
+    private Executor mExecutor;
+    private long mMaxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_QUEUE_WAIT_MS);
+    private Result mLastResult;
+
+    public RefreshAggregator(OnAggregateRefreshListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 所有RefreshAggregator共用的默认线程池
+     *
+     * @return
+     */
+    public static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newFixedThreadPool(DEFAULT_POOL_SIZE, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RefreshAggregator-" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * 设置请求数据源的线程池，应该有固定的线程数
+     * <br>不能和CustomListView.setTaskExecutor使用同一个线程数很少的线程池，否则汇总任务会占住数据源需要的线程
+     *
+     * @param executor 为null时使用默认线程池
+     */
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * 设置数据源在线程池中最长排队多久(从提交算起)，超过时不再等它开始，按超时处理
+     *
+     * @param maxQueueWaitMs 毫秒
+     */
+    public void setMaxQueueWaitMs(long maxQueueWaitMs) {
+        mMaxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs);
+    }
+
+    /**
+     * 添加可选的数据源，使用默认超时
+     *
+     * @param name 名称，在结果和耗时统计中使用，不能重复
+     * @param task 每次刷新都会在后台调用一次
+     */
+    public void addSource(String name, Callable<?> task) {
+        addSource(name, task, DEFAULT_TIMEOUT_MS, false);
+    }
+
+    /**
+     * 添加数据源
+     *
+     * @param name 名称，在结果和耗时统计中使用，不能重复
+     * @param task 每次刷新都会在后台调用一次
+     * @param timeoutMs 从这个数据源开始执行算起的超时(毫秒)
+     * @param required 是否必须成功，失败或超时时整个刷新失败
+     */
+    public void addSource(String name, Callable<?> task, long timeoutMs, boolean required) {
+        for (SourceEntry entry : mSources) {
+            if (entry.name.equals(name)) {
+                throw new IllegalArgumentException("duplicate source " + name);
+            }
+        }
+        mSources.add(new SourceEntry(name, task, TimeUnit.MILLISECONDS.toNanos(timeoutMs), required));
+        mLatencies.put(name, new TimingRing(LATENCY_HISTORY, TimeUnit.MILLISECONDS.toNanos(timeoutMs)));
+    }
+
+    /**
+     * 最近几次刷新中某个数据源的耗时，超时计为超过预算
+     *
+     * @param name 数据源名称
+     * @return 没有这个数据源时返回null
+     */
+    public TimingRing getLatencies(String name) {
+        return mLatencies.get(name);
+    }
+
+    /**
+     * 最近一次刷新的结果(包括失败时的部分结果)
+     *
+     * @return
+     */
+    public Result getLastResult() {
+        return mLastResult;
+    }
+
+    @Override
+    public Callable<Result> onCreateRefreshTask() {
+        final SourceEntry[] sources = mSources.toArray(new SourceEntry[mSources.size()]);
+        final Executor executor = mExecutor != null ? mExecutor : getDefaultExecutor();
+        final long maxQueueWaitNanos = mMaxQueueWaitNanos;
+        return new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                return fetchAll(sources, executor, maxQueueWaitNanos);
+            }
+        };
+    }
+
+    @Override
+    public void onRefreshResult(Result result) {
+        recordLatencies(result);
+        mListener.onRefreshResult(result);
+    }
+
+    @Override
+    public void onRefreshError(Exception e) {
+        if (e instanceof AggregateException) {
+            recordLatencies(((AggregateException) e).getResult());
+        }
+        mListener.onRefreshError(e);
+    }
+
+    private void recordLatencies(Result result) {
+        mLastResult = result;
+        for (SourceResult source : result.getSources()) {
+            TimingRing ring = mLatencies.get(source.getName());
+            if (ring != null && source.isStarted() && !source.isCancelled()) {
+                ring.add(source.getLatencyNanos());
+            }
+        }
+    }
+
+    /**
+     * 在后台线程同时请求所有数据源，等到全部返回、超时或者required的数据源失败
+     * <br>每个数据源的超时从它开始执行算起；从提交算起排队超过maxQueueWaitNanos还没有开始的数据源按超时处理，
+     * 所以整个刷新最多需要maxQueueWaitNanos加上最长的超时；
+     * 被中断(刷新被取消)时取消所有还没有完成的请求
+     */
+    static Result fetchAll(SourceEntry[] sources, Executor executor, long maxQueueWaitNanos) throws Exception {
+        final int count = sources.length;
+        final long start = System.nanoTime();
+        final long queueDeadline = start + maxQueueWaitNanos;
+        AtomicLongArray startTimes = new AtomicLongArray(count);
+        for (int i = 0; i < count; i++) {
+            startTimes.set(i, NOT_STARTED);
+        }
+        SourceResult[] results = new SourceResult[count];
+        ArrayList<Future<SourceResult>> futures = new ArrayList<Future<SourceResult>>(count);
+        HashMap<Future<SourceResult>, Integer> indexes = new HashMap<Future<SourceResult>, Integer>();
+        ExecutorCompletionService<SourceResult> completion = new ExecutorCompletionService<SourceResult>(executor);
+        boolean failed = false;
+        try {
+            for (int i = 0; i < count; i++) {
+                Future<SourceResult> future = completion.submit(sources[i].newCall(startTimes, i));
+                futures.add(future);
+                indexes.put(future, i);
+            }
+            int pending = count;
+            while (pending > 0 && !failed) {
+                // 先处理已经超时的数据源
+                long now = System.nanoTime();
+                long nextDeadline = Long.MAX_VALUE;
+                for (int i = 0; i < count; i++) {
+                    if (results[i] != null) {
+                        continue;
+                    }
+                    long started = startTimes.get(i);
+                    if (started == NOT_STARTED) {
+                        if (queueDeadline - now <= 0) {
+                            // 线程都被占着，等不到它开始
+                            results[i] = new SourceResult(sources[i].name, null,
+                                    new TimeoutException(sources[i].name + " not started"), true, false, 0);
+                            futures.get(i).cancel(true);
+                            pending--;
+                            failed |= sources[i].required;
+                        } else {
+                            // 还在排队，过一会再看它有没有开始
+                            nextDeadline = Math.min(nextDeadline, Math.min(now + START_CHECK_NANOS, queueDeadline));
+                        }
+                        continue;
+                    }
+                    long deadline = started + sources[i].timeoutNanos;
+                    if (deadline - now <= 0) {
+                        results[i] = new SourceResult(sources[i].name, null,
+                                new TimeoutException(sources[i].name + " timed out"), true, true, now - started);
+                        futures.get(i).cancel(true);
+                        pending--;
+                        failed |= sources[i].required;
+                    } else {
+                        nextDeadline = Math.min(nextDeadline, deadline);
+                    }
+                }
+                if (pending == 0 || failed) {
+                    break;
+                }
+                Future<SourceResult> done = completion.poll(nextDeadline - now, TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    continue;
+                }
+                int index = indexes.get(done);
+                if (results[index] != null) {
+                    // 已经按超时处理过
+                    continue;
+                }
+                try {
+                    results[index] = done.get();
+                } catch (ExecutionException e) {
+                    results[index] = new SourceResult(sources[index].name, null,
+                            new Exception(e.getCause()), false, true, latencySince(startTimes.get(index)));
+                }
+                pending--;
+                failed |= sources[index].required && results[index].getError() != null;
+            }
+        } finally {
+            for (Future<SourceResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (results[i] == null) {
+                // required的数据源失败后提前结束，其余请求被取消
+                long started = startTimes.get(i);
+                results[i] = new SourceResult(sources[i].name, null,
+                        new CancellationException(sources[i].name + " cancelled"), false,
+                        started != NOT_STARTED, latencySince(started));
+            }
+        }
+        Result result = new Result(results, System.nanoTime() - start);
+        if (failed || result.getSucceededCount() == 0) {
+            throw new AggregateException(result);
+        }
+        return result;
+    }
+
+    /**
+     * 从任务开始执行到现在的耗时，还没有开始时为0
+     */
+    private static long latencySince(long started) {
+        return started == NOT_STARTED ? 0 : System.nanoTime() - started;
+    }
+
+    /**
+     * 添加的数据源
+     */
+    static final class SourceEntry {
+        final String name;
+        final Callable<?> task;
+        final long timeoutNanos;
+        final boolean required;
+
+        SourceEntry(String name, Callable<?> task, long timeoutNanos, boolean required) {
+            this.name = name;
+            this.task = task;
+            this.timeoutNanos = timeoutNanos;
+            this.required = required;
+        }
+
+        /**
+         * @param startTimes 开始执行时在index处记录开始时间，超时和耗时都从这里算起
+         */
+        Callable<SourceResult> newCall(final AtomicLongArray startTimes, final int index) {
+            return new Callable<SourceResult>() {
+                @Override
+                public SourceResult call() {
+                    long start = System.nanoTime();
+                    startTimes.set(index, start);
+                    try {
+                        Object value = task.call();
+                        return new SourceResult(name, value, null, false, true, System.nanoTime() - start);
+                    } catch (Exception e) {
+                        return new SourceResult(name, null, e, false, true, System.nanoTime() - start);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * 单个数据源的结果
+     */
+    public static final class SourceResult {
+        private final String mName;
+        private final Object mValue;
+        private final Exception mError;
+        private final boolean mTimedOut;
+        private final boolean mStarted;
+        private final long mLatencyNanos;
+
+        SourceResult(String name, Object value, Exception error, boolean timedOut, boolean started, long latencyNanos) {
+            mName = name;
+            mValue = value;
+            mError = error;
+            mTimedOut = timedOut;
+            mStarted = started;
+            mLatencyNanos = latencyNanos;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public Object getValue() {
+            return mValue;
+        }
+
+        /**
+         * @return 成功时为null
+         */
+        public Exception getError() {
+            return mError;
+        }
+
+        public boolean isSucceeded() {
+            return mError == null;
+        }
+
+        public boolean isTimedOut() {
+            return mTimedOut;
+        }
+
+        /**
+         * 是否开始执行过，排队超时或者排队时被取消的数据源为false，没有耗时
+         */
+        public boolean isStarted() {
+            return mStarted;
+        }
+
+        /**
+         * 因为required的数据源失败而被取消，没有耗时
+         */
+        public boolean isCancelled() {
+            return mError instanceof CancellationException;
+        }
+
+        /**
+         * 从开始执行算起的请求耗时，超时的数据源为超时判定时已经执行的时间
+         */
+        public long getLatencyNanos() {
+            return mLatencyNanos;
+        }
+    }
+
+    /**
+     * 一次刷新的汇总结果，顺序和addSource一致
+     */
+    public static final class Result {
+        private final List<SourceResult> mSources;
+        private final long mElapsedNanos;
+
+        Result(SourceResult[] sources, long elapsedNanos) {
+            ArrayList<SourceResult> list = new ArrayList<SourceResult>(sources.length);
+            Collections.addAll(list, sources);
+            mSources = Collections.unmodifiableList(list);
+            mElapsedNanos = elapsedNanos;
+        }
+
+        public List<SourceResult> getSources() {
+            return mSources;
+        }
+
+        /**
+         * @param name 数据源名称
+         * @return 没有这个数据源时返回null
+         */
+        public SourceResult get(String name) {
+            for (SourceResult source : mSources) {
+                if (source.getName().equals(name)) {
+                    return source;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 某个数据源成功时的返回值
+         *
+         * @param name 数据源名称
+         * @return 失败或没有这个数据源时返回null
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T getValue(String name) {
+            SourceResult source = get(name);
+            return source != null && source.isSucceeded() ? (T) source.getValue() : null;
+        }
+
+        public int getSucceededCount() {
+            int count = 0;
+            for (SourceResult source : mSources) {
+                if (source.isSucceeded()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * 是否所有数据源都成功
+         */
+        public boolean isComplete() {
+            return getSucceededCount() == mSources.size();
+        }
+
+        /**
+         * 整个刷新的耗时，约等于最慢的数据源
+         */
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+    }
+
+    /**
+     * required的数据源失败或者所有数据源都失败
+     */
+    public static class AggregateException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 数据源的返回值不一定能序列化
+         */
+        private final transient Result mResult;
+
+        AggregateException(Result result) {
+            super("refresh failed: " + result.getSucceededCount() + "/" + result.getSources().size() + " sources succeeded");
+            mResult = result;
+        }
+
+        /**
+         * 已经返回的部分结果
+         */
+        public Result getResult() {
+            return mResult;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package me.wmh.clockprogress;
+
+/**
+ * 下拉刷新的去重和新鲜度判断(不依赖Android)
+ * <br>同一时间最多只有一个刷新请求，请求进行中再次触发(下拉、setPullDownRefreshing)会合并到这个请求；
+ * 距离上次刷新不到ttl时认为数据还是新的，不再请求，直接用现有数据完成刷新。
+ */
+public class RefreshGate {
+
+    /**
+     * 不限制，每次触发都请求
+     */
+    public static final long NO_TTL = 0;
+
+    /**
+     * 发起新的请求
+     */
+    public static final int START = 0;
+
+    /**
+     * 已经有请求在进行，合并到这个请求
+     */
+    public static final int COALESCE = 1;
+
+    /**
+     * 数据还新鲜，不请求
+     */
+    public static final int SUPPRESS = 2;
+
+    private long mTtlMillis = NO_TTL;
+    private boolean mInFlight = false;
+
+    private int mStartedCount = 0;
+    private int mCoalescedCount = 0;
+    private int mSuppressedCount = 0;
+
+    /**
+     * 触发一次刷新
+     *
+     * @param nowMillis 当前时间
+     * @param lastRefreshMillis 上次刷新完成的时间，0表示没有刷新过
+     * @param force 忽略ttl，仍然会合并到进行中的请求
+     * @return START、COALESCE或SUPPRESS
+     */
+    public int onTrigger(long nowMillis, long lastRefreshMillis, boolean force) {
+        if (mInFlight) {
+            mCoalescedCount++;
+            return COALESCE;
+        }
+        if (!force && isFresh(nowMillis, lastRefreshMillis)) {
+            mSuppressedCount++;
+            return SUPPRESS;
+        }
+        mInFlight = true;
+        mStartedCount++;
+        return START;
+    }
+
+    /**
+     * 距离上次刷新是否还在ttl之内，系统时间被往回调时不算新鲜
+     */
+    public boolean isFresh(long nowMillis, long lastRefreshMillis) {
+        if (mTtlMillis <= NO_TTL || lastRefreshMillis <= 0) {
+            return false;
+        }
+        long age = nowMillis - lastRefreshMillis;
+        return age >= 0 && age < mTtlMillis;
+    }
+
+    /**
+     * 请求完成、失败或被取消
+     */
+    public void onFinished() {
+        mInFlight = false;
+    }
+
+    public boolean isInFlight() {
+        return mInFlight;
+    }
+
+    /**
+     * 设置数据的有效期
+     *
+     * @param ttlMillis 毫秒，NO_TTL表示每次都请求
+     */
+    public void setTtlMillis(long ttlMillis) {
+        mTtlMillis = Math.max(NO_TTL, ttlMillis);
+    }
+
+    public long getTtlMillis() {
+        return mTtlMillis;
+    }
+
+    /**
+     * 实际发起的请求数
+     */
+    public int getStartedCount() {
+        return mStartedCount;
+    }
+
+    /**
+     * 合并到进行中请求的触发次数
+     */
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * 因为数据新鲜而没有请求的触发次数
+     */
+    public int getSuppressedCount() {
+        return mSuppressedCount;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void resetCounts() {
+        mStartedCount = 0;
+        mCoalescedCount = 0;
+        mSuppressedCount = 0;
+    }
+}
@@ -0,0 +1,24 @@
+package me.wmh.clockprogress;
+
+/**
+ * 动画使用的时间源
+ * <br>默认使用System.nanoTime()，单元测试时可以注入假的时间源来驱动表针角度
+ */
+public interface TimeSource {
+
+    /**
+     * 当前时间，单位纳秒，只用于计算时间差
+     * @return 纳秒
+     */
+    long nanoTime();
+
+    /**
+     * 系统单调时钟，与Choreographer的帧时间同源
+     */
+    TimeSource SYSTEM = new TimeSource() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+}
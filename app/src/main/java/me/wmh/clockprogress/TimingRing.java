@@ -0,0 +1,106 @@
+package me.wmh.clockprogress;
+
+import java.util.Arrays;
+
+/**
+ * 固定容量的耗时记录(不依赖Android)
+ * <br>样本保存在预先分配的环形数组中，记录时不分配内存；另外统计超过预算的样本数。
+ */
+public class TimingRing {
+
+    private final long[] mSamples;
+    private final long[] mSortBuffer;
+
+    private int mNext = 0;
+    private int mSize = 0;
+    private long mTotalCount = 0;
+    private long mOverBudgetCount = 0;
+    private long mMaxNanos = 0;
+
+    private long mBudgetNanos;
+
+    /**
+     * @param capacity 保留最近多少个样本
+     * @param budgetNanos 超过这个值的样本计入getOverBudgetCount
+     */
+    public TimingRing(int capacity, long budgetNanos) {
+        mSamples = new long[capacity];
+        mSortBuffer = new long[capacity];
+        mBudgetNanos = budgetNanos;
+    }
+
+    public void add(long nanos) {
+        mSamples[mNext] = nanos;
+        mNext = (mNext + 1) % mSamples.length;
+        if (mSize < mSamples.length) {
+            mSize++;
+        }
+        mTotalCount++;
+        if (nanos > mBudgetNanos) {
+            mOverBudgetCount++;
+        }
+        if (nanos > mMaxNanos) {
+            mMaxNanos = nanos;
+        }
+    }
+
+    /**
+     * 最近样本的分位数
+     *
+     * @param percentiles 0到100之间，从小到大
+     * @param out 结果(纳秒)，长度与percentiles相同
+     */
+    public void percentiles(float[] percentiles, long[] out) {
+        if (mSize == 0) {
+            Arrays.fill(out, 0);
+            return;
+        }
+        System.arraycopy(mSamples, 0, mSortBuffer, 0, mSize);
+        Arrays.sort(mSortBuffer, 0, mSize);
+        for (int i = 0; i < percentiles.length; i++) {
+            int index = (int) Math.ceil(percentiles[i] / 100f * mSize) - 1;
+            out[i] = mSortBuffer[Math.max(0, Math.min(mSize - 1, index))];
+        }
+    }
+
+    public void reset() {
+        mNext = 0;
+        mSize = 0;
+        mTotalCount = 0;
+        mOverBudgetCount = 0;
+        mMaxNanos = 0;
+    }
+
+    public void setBudgetNanos(long budgetNanos) {
+        mBudgetNanos = budgetNanos;
+    }
+
+    public long getBudgetNanos() {
+        return mBudgetNanos;
+    }
+
+    /**
+     * 保留的样本数
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * 记录过的样本总数
+     */
+    public long getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * 记录过的样本中超过预算的个数
+     */
+    public long getOverBudgetCount() {
+        return mOverBudgetCount;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+}
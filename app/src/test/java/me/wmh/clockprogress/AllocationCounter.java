@@ -0,0 +1,38 @@
+package me.wmh.clockprogress;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 统计当前线程分配的字节数(HotSpot的ThreadMXBean)
+ */
+public final class AllocationCounter {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static {
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private AllocationCounter() {
+    }
+
+    /**
+     * 当前线程到目前为止分配的字节数
+     */
+    public static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 执行一段代码，返回期间分配的字节数
+     *
+     * @param runnable
+     * @return
+     */
+    public static long measure(Runnable runnable) {
+        long before = allocatedBytes();
+        runnable.run();
+        return allocatedBytes() - before;
+    }
+}
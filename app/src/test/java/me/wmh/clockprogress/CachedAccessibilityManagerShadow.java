@@ -0,0 +1,33 @@
+package me.wmh.clockprogress;
+
+import android.content.Context;
+import android.view.accessibility.AccessibilityManager;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowAccessibilityManager;
+
+/**
+ * Robolectric每次AccessibilityManager.getInstance都新建一个AccessibilityManagerService(几十KB)，
+ * 而View.offsetTopAndBottom每次都会调用它；设备上它是进程内单例，这里也只创建一次，避免分配统计被框架的模拟代码淹没
+ */
+@Implements(AccessibilityManager.class)
+public class CachedAccessibilityManagerShadow extends ShadowAccessibilityManager {
+
+    private static AccessibilityManager sInstance;
+
+    @Implementation
+    public static AccessibilityManager getInstance(Context context) throws Exception {
+        if (sInstance == null) {
+            sInstance = ShadowAccessibilityManager.getInstance(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * 每个测试使用新的Application，不能沿用上一个测试的实例
+     */
+    static void reset() {
+        sInstance = null;
+    }
+}
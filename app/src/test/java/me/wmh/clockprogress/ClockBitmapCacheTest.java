@@ -0,0 +1,171 @@
+package me.wmh.clockprogress;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 解码到目标尺寸时的采样率，以及共享图片的引用计数、淘汰和复用
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ClockBitmapCacheTest {
+
+    private static final int SOURCE_SIZE = 156;
+    private static final int SIZE = 40;
+
+    /**
+     * 40x40 ARGB_8888图片的字节数
+     */
+    private static final int BYTES = SIZE * SIZE * 4;
+
+    /**
+     * 能放下4张图片的预算，复用池正好放下1张
+     */
+    private static final int BUDGET = BYTES * 4;
+
+    private Resources mRes;
+    private FakeDecodeCache mCache;
+
+    /**
+     * 不读取图片文件的解码：原图固定为SOURCE_SIZE的正方形，inBitmap尺寸一致时直接复用
+     */
+    static class FakeDecodeCache extends ClockBitmapCache {
+
+        FakeDecodeCache(int maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        Bitmap decodeResource(Resources res, int resId, BitmapFactory.Options options) {
+            if (options.inJustDecodeBounds) {
+                options.outWidth = SOURCE_SIZE;
+                options.outHeight = SOURCE_SIZE;
+                return null;
+            }
+            int size = options.inTargetDensity;
+            Bitmap reuse = options.inBitmap;
+            if (reuse != null && reuse.getWidth() == size && reuse.getHeight() == size) {
+                return reuse;
+            }
+            return Bitmap.createBitmap(size, size, options.inPreferredConfig);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mRes = RuntimeEnvironment.application.getResources();
+        mCache = new FakeDecodeCache(BUDGET);
+    }
+
+    @Test
+    public void sampleSizeNeverGoesBelowTarget() {
+        // xhdpi的156px原图解码到不同密度下40dp的表
+        assertEquals(2, ClockBitmapCache.sampleSizeFor(156, 156, 60, 60));
+        assertEquals(1, ClockBitmapCache.sampleSizeFor(156, 156, 80, 80));
+        assertEquals(1, ClockBitmapCache.sampleSizeFor(156, 156, 120, 120));
+        assertEquals(4, ClockBitmapCache.sampleSizeFor(156, 156, 39, 39));
+        assertEquals(1, ClockBitmapCache.sampleSizeFor(156, 156, 200, 200));
+    }
+
+    @Test
+    public void sampleSizeHonoursTheLargerDimension() {
+        assertEquals(1, ClockBitmapCache.sampleSizeFor(156, 156, 40, 100));
+    }
+
+    /**
+     * 同一尺寸只解码一次；最后一个view释放后留在缓存里，再次使用不用重新解码
+     */
+    @Test
+    public void sameSizeIsSharedAndRefCounted() {
+        Bitmap first = mCache.getScaled(mRes, 1, SIZE, SIZE);
+        Bitmap second = mCache.getScaled(mRes, 1, SIZE, SIZE);
+        assertSame(first, second);
+        assertEquals(1, mCache.getDecodeCount());
+        assertEquals(2, mCache.getRefCount(1, SIZE, SIZE));
+        assertEquals(BYTES, mCache.inUseSize());
+
+        mCache.release(1, SIZE, SIZE);
+        assertEquals(1, mCache.getRefCount(1, SIZE, SIZE));
+        mCache.release(1, SIZE, SIZE);
+        assertEquals(0, mCache.getRefCount(1, SIZE, SIZE));
+        assertEquals(0, mCache.inUseSize());
+        assertEquals(BYTES, mCache.size());
+        // 多余的release被忽略
+        mCache.release(1, SIZE, SIZE);
+        assertEquals(0, mCache.getRefCount(1, SIZE, SIZE));
+
+        assertSame(first, mCache.getScaled(mRes, 1, SIZE, SIZE));
+        assertEquals(1, mCache.getDecodeCount());
+        assertEquals(0, mCache.poolSize());
+    }
+
+    /**
+     * 还有view在使用的图片不会因为超出预算被淘汰，也不会进复用池被别的尺寸覆盖
+     */
+    @Test
+    public void referencedEntryIsNeverEvicted() {
+        Bitmap held = mCache.getScaled(mRes, 1, SIZE, SIZE);
+        mCache.getScaled(mRes, 1, SIZE, SIZE);
+        // 远超预算的其它图片用完就释放
+        for (int resId = 2; resId < 12; resId++) {
+            Bitmap other = mCache.getScaled(mRes, resId, SIZE, SIZE);
+            assertNotSame(held, other);
+            mCache.release(resId, SIZE, SIZE);
+        }
+        assertTrue(mCache.size() - mCache.inUseSize() <= BUDGET);
+
+        // 再次获取仍然是同一张图，引用计数接着原来的算
+        assertSame(held, mCache.getScaled(mRes, 1, SIZE, SIZE));
+        assertEquals(3, mCache.getRefCount(1, SIZE, SIZE));
+        mCache.release(1, SIZE, SIZE);
+        mCache.release(1, SIZE, SIZE);
+        assertEquals(1, mCache.getRefCount(1, SIZE, SIZE));
+
+        // 一个view还在绘制，新解码的图片不能复用它的内存
+        for (int resId = 20; resId < 30; resId++) {
+            assertNotSame(held, mCache.getScaled(mRes, resId, SIZE, SIZE));
+            mCache.release(resId, SIZE, SIZE);
+        }
+        assertEquals(BYTES, mCache.inUseSize());
+    }
+
+    /**
+     * 没有view使用的图片超出预算时被淘汰到复用池，下一次解码通过inBitmap复用它
+     */
+    @Test
+    public void evictedIdleBitmapIsReused() {
+        Bitmap first = mCache.getScaled(mRes, 1, SIZE, SIZE);
+        mCache.release(1, SIZE, SIZE);
+        for (int resId = 2; resId <= 4; resId++) {
+            mCache.getScaled(mRes, resId, SIZE, SIZE);
+            mCache.release(resId, SIZE, SIZE);
+        }
+        assertEquals(0, mCache.poolSize());
+        assertEquals(BUDGET, mCache.size());
+
+        // 第5张超出预算，最久未使用的第1张进复用池
+        mCache.getScaled(mRes, 5, SIZE, SIZE);
+        mCache.release(5, SIZE, SIZE);
+        assertEquals(BYTES, mCache.poolSize());
+        assertEquals(BUDGET, mCache.size());
+
+        Bitmap reused = mCache.getScaled(mRes, 6, SIZE, SIZE);
+        assertSame(first, reused);
+        assertEquals(1, mCache.getReuseCount());
+        assertEquals(0, mCache.poolSize());
+        assertEquals(6, mCache.getDecodeCount());
+    }
+}
@@ -0,0 +1,79 @@
+package me.wmh.clockprogress;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 看不到时暂停、限帧和少画帧数的统计
+ */
+public class ClockGovernorTest {
+
+    private static final long VSYNC = 1000000000L / 60;
+
+    private ClockGovernor visibleGovernor() {
+        ClockGovernor governor = new ClockGovernor();
+        governor.setAttached(true, 0);
+        governor.setRequested(true, 0);
+        return governor;
+    }
+
+    @Test
+    public void pausesWhileHiddenAndCountsPausedFrames() {
+        ClockGovernor governor = visibleGovernor();
+        assertTrue(governor.shouldRun());
+
+        governor.setOnScreen(false, 0);
+        assertFalse(governor.shouldRun());
+        governor.setOnScreen(true, 60 * VSYNC);
+        assertTrue(governor.shouldRun());
+        assertEquals(60, governor.getPausedFrameCount(60 * VSYNC));
+
+        governor.setWindowVisible(false, 60 * VSYNC);
+        assertFalse(governor.shouldRun());
+        assertEquals(90, governor.getSavedFrameCount(90 * VSYNC));
+    }
+
+    @Test
+    public void notRequestedIsNotCountedAsPaused() {
+        ClockGovernor governor = new ClockGovernor();
+        governor.setAttached(false, 0);
+        assertFalse(governor.shouldRun());
+        assertEquals(0, governor.getPausedFrameCount(600 * VSYNC));
+    }
+
+    @Test
+    public void capsFrameRateAndUsesPowerSaveLimit() {
+        ClockGovernor governor = visibleGovernor();
+        int rendered = 0;
+        for (int i = 0; i < 60; i++) {
+            if (governor.shouldRender(i * VSYNC)) {
+                rendered++;
+            }
+        }
+        assertEquals(60, rendered);
+
+        governor.setMaxFps(30);
+        governor.resetCounts(60 * VSYNC);
+        rendered = 0;
+        for (int i = 60; i < 120; i++) {
+            if (governor.shouldRender(i * VSYNC)) {
+                rendered++;
+            }
+        }
+        assertEquals(30, rendered);
+        assertEquals(30, governor.getCappedFrameCount());
+
+        governor.setPowerSave(true);
+        assertEquals(ClockGovernor.DEFAULT_POWER_SAVE_MAX_FPS, governor.getEffectiveMaxFps());
+        rendered = 0;
+        for (int i = 120; i < 180; i++) {
+            if (governor.shouldRender(i * VSYNC)) {
+                rendered++;
+            }
+        }
+        assertEquals(15, rendered);
+    }
+}
@@ -0,0 +1,666 @@
+package me.wmh.clockprogress;
+
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.ArrayAdapter;
+import android.widget.TextView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按脚本驱动CustomListView的下拉、滚动、刷新和加载更多，检查每个手势的内存分配和requestLayout次数
+ * <br>每个事件之后模拟一帧：有requestLayout时重新measure/layout，这样统计到的就是需要重新布局的帧数。
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, shadows = CachedAccessibilityManagerShadow.class)
+public class CustomListViewGestureTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+    private static final int ITEM_COUNT = 100;
+
+    private static final int MOVE_COUNT = 2000;
+    private static final int WARM_UP_MOVES = 200;
+
+    /**
+     * 平均每个事件允许分配的字节数
+     * <br>Robolectric的代理本身会分配少量内存；一次Bitmap.createBitmap或者new SimpleDateFormat都远超这个值。
+     */
+    private static final long BYTES_PER_EVENT_BUDGET = 1024;
+
+    private CountingListView mList;
+    private MotionEvent mEvent;
+    private long mDownTime;
+
+    /**
+     * 统计requestLayout/invalidate调用次数
+     */
+    static class CountingListView extends CustomListView {
+        int requestLayoutCount;
+        int invalidateCount;
+
+        CountingListView() {
+            super(RuntimeEnvironment.application);
+        }
+
+        @Override
+        public void requestLayout() {
+            requestLayoutCount++;
+            super.requestLayout();
+        }
+
+        @Override
+        public void invalidate() {
+            invalidateCount++;
+            super.invalidate();
+        }
+
+        /**
+         * 手指操作时窗口处于触摸模式，setSelection(0)会停在不可选中的HeadView上；Robolectric默认不是触摸模式
+         */
+        @Override
+        public boolean isInTouchMode() {
+            return true;
+        }
+
+        /**
+         * 测试中的列表没有添加到窗口，结果和默认实现一样；Robolectric的默认实现每次都通过反射沿继承链查找mAttachInfo，
+         * 每一层都会抛出并丢弃一个NoSuchFieldException，AbsListView.onTouchEvent每个事件都会调用
+         */
+        @Override
+        public boolean isAttachedToWindow() {
+            return false;
+        }
+
+        void resetCounts() {
+            requestLayoutCount = 0;
+            invalidateCount = 0;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        // Robolectric的Choreographer把帧回调直接post到当前时间，不暂停的话表针动画会在post时无限地执行下去
+        ShadowLooper.pauseMainLooper();
+        CachedAccessibilityManagerShadow.reset();
+        mList = new CountingListView();
+        String[] items = new String[ITEM_COUNT];
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            items[i] = "item " + i;
+        }
+        mList.setAdapter(new ArrayAdapter<String>(RuntimeEnvironment.application,
+                android.R.layout.simple_list_item_1, items));
+        mList.setOnRefreshListener(new CustomListView.OnRefreshListener() {
+            @Override
+            public void onRefresh() {
+            }
+        });
+        mList.setOnLoadmoreListener(new CustomListView.OnLoadMoreListener() {
+            @Override
+            public void onLoadMore() {
+            }
+        });
+        mList.setCanLoadMore(true);
+        frame();
+        mDownTime = 0;
+        mEvent = MotionEvent.obtain(mDownTime, mDownTime, MotionEvent.ACTION_DOWN, WIDTH / 2, 0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        mEvent.recycle();
+    }
+
+    @Test
+    public void dragInTranslationModeLaysOutOnlyOnStateChanges() {
+        mList.setPullMode(CustomListView.PULL_MODE_TRANSLATION);
+        down(0);
+        mList.resetCounts();
+        // 来回拉动，不超过松手刷新的距离
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            move(10 + i % 60);
+        }
+        // 只有进入PULL_TO_REFRESH时更新了文字
+        assertTrue("requestLayout during drag: " + mList.requestLayoutCount, mList.requestLayoutCount <= 2);
+        up();
+    }
+
+    /**
+     * PULL_MODE_TRANSLATION模式下HeadView在屏幕上的位置跟着手指移动，中间的重新布局也不会把它放回原位
+     */
+    @Test
+    public void dragInTranslationModeKeepsHeaderUnderFinger() {
+        mList.setPullMode(CustomListView.PULL_MODE_TRANSLATION);
+        down(0);
+        int[] moves = {30, 90, 150, 60, 240, 300, 120};
+        for (int y : moves) {
+            move(y);
+            assertEquals("y=" + y, y / PullStateMachine.RATIO, headerShownHeight());
+        }
+        mList.requestLayout();
+        frame();
+        assertEquals(120 / PullStateMachine.RATIO, headerShownHeight());
+        up();
+    }
+
+    /**
+     * 松手后的归位动画被新的触摸打断时直接停在最终位置：HeadView完整显示在刷新高度
+     */
+    @Test
+    public void touchDuringSettleEndsAtRefreshingHeight() {
+        mList.setPullMode(CustomListView.PULL_MODE_TRANSLATION);
+        pullToRelease();
+        assertTrue(mList.isPullDownRefreshing());
+        down(0);
+        View header = mList.getChildAt(0);
+        assertEquals(header.getHeight(), headerShownHeight());
+        up();
+    }
+
+    /**
+     * 确认统计方法能发现每次移动都修改paddingTop的写法
+     */
+    @Test
+    public void dragInPaddingModeIsCaughtLayingOutEveryMove() {
+        mList.setPullMode(CustomListView.PULL_MODE_PADDING);
+        down(0);
+        mList.resetCounts();
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            move(10 + i % 60);
+        }
+        assertTrue("requestLayout during drag: " + mList.requestLayoutCount,
+                mList.requestLayoutCount >= MOVE_COUNT / 2);
+        up();
+    }
+
+    @Test
+    public void dragAllocationStaysWithinBudget() {
+        mList.setPullMode(CustomListView.PULL_MODE_TRANSLATION);
+        down(0);
+        for (int i = 0; i < WARM_UP_MOVES; i++) {
+            move(10 + i % 60);
+        }
+        long bytes = AllocationCounter.measure(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < MOVE_COUNT; i++) {
+                    move(10 + i % 60);
+                }
+            }
+        });
+        up();
+        assertTrue("bytes per move: " + bytes / MOVE_COUNT, bytes / MOVE_COUNT < BYTES_PER_EVENT_BUDGET);
+    }
+
+    @Test
+    public void dragRedrawsClockOnlyWhenQuantizedAngleChanges() {
+        mList.setPullMode(CustomListView.PULL_MODE_TRANSLATION);
+        ClockProgress clock = (ClockProgress) mList.getClockIndicator();
+        down(0);
+        clock.resetRedrawCounts();
+        // 每次只移动1像素，按RATIO换算后大部分移动不会改变角度
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            move(10 + i % 60);
+        }
+        up();
+        assertTrue("performed redraws: " + clock.getPerformedRedrawCount(),
+                clock.getPerformedRedrawCount() < MOVE_COUNT / 2);
+        assertTrue(clock.getSkippedRedrawCount() > 0);
+    }
+
+    /**
+     * 换算后HeadView的位置和表针角度都没有变化的移动，列表和表都不重绘
+     */
+    @Test
+    public void moveWithinSamePullStepDoesNotInvalidate() {
+        mList.setPullMode(CustomListView.PULL_MODE_TRANSLATION);
+        ClockProgress clock = (ClockProgress) mList.getClockIndicator();
+        down(0);
+        move(60);
+        mList.resetCounts();
+        clock.resetRedrawCounts();
+        // 60~62除以RATIO后下拉距离相同
+        move(61);
+        move(62);
+        assertEquals(0, mList.invalidateCount);
+        assertEquals(0, clock.getPerformedRedrawCount());
+        assertEquals(2, clock.getSkippedRedrawCount());
+        // 下拉距离变化时移动子view并重绘
+        move(63);
+        assertTrue("invalidate after offset change: " + mList.invalidateCount, mList.invalidateCount >= 1);
+        up();
+    }
+
+    @Test
+    public void scrollAllocationStaysWithinBudget() {
+        for (int i = 0; i < WARM_UP_MOVES; i++) {
+            scrollTo(i % 50);
+        }
+        mList.resetCounts();
+        long bytes = AllocationCounter.measure(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < MOVE_COUNT; i++) {
+                    scrollTo(i % 50);
+                }
+            }
+        });
+        assertTrue("bytes per scroll: " + bytes / MOVE_COUNT, bytes / MOVE_COUNT < BYTES_PER_EVENT_BUDGET);
+        assertEquals(0, mList.requestLayoutCount);
+    }
+
+    @Test
+    public void remeasureAtSameSizeReusesClockBitmaps() {
+        final ClockProgress clock = (ClockProgress) mList.getClockIndicator();
+        final int spec = View.MeasureSpec.makeMeasureSpec(clock.getMeasuredWidth(), View.MeasureSpec.EXACTLY);
+        clock.measure(spec, spec);
+        final int cached = ClockBitmapCache.getInstance().size();
+        long bytes = AllocationCounter.measure(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < MOVE_COUNT; i++) {
+                    clock.measure(spec, spec);
+                }
+            }
+        });
+        assertEquals(cached, ClockBitmapCache.getInstance().size());
+        assertTrue("bytes per measure: " + bytes / MOVE_COUNT, bytes / MOVE_COUNT < BYTES_PER_EVENT_BUDGET);
+    }
+
+    @Test
+    public void refreshCycleLaysOutBoundedTimes() {
+        mList.setPullMode(CustomListView.PULL_MODE_TRANSLATION);
+        for (int cycle = 0; cycle < 3; cycle++) {
+            mList.resetCounts();
+            pullToRelease();
+            assertTrue(mList.isPullDownRefreshing());
+            mList.onRefreshComplete();
+            frame();
+            assertTrue(!mList.isPullDownRefreshing());
+            // 松手时收起到刷新高度、刷新完成时收起，加上文字变化
+            assertTrue("requestLayout per refresh: " + mList.requestLayoutCount, mList.requestLayoutCount <= 8);
+        }
+    }
+
+    @Test
+    public void loadMoreCycleLaysOutBoundedTimes() {
+        scrollTo(ITEM_COUNT);
+        for (int cycle = 0; cycle < 3; cycle++) {
+            mList.resetCounts();
+            mList.onScrollStateChanged(mList, AbsListView.OnScrollListener.SCROLL_STATE_IDLE);
+            frame();
+            assertTrue(mList.isPullUpLoading());
+            mList.onLoadMoreComplete();
+            frame();
+            assertTrue(!mList.isPullUpLoading());
+            assertTrue("requestLayout per load more: " + mList.requestLayoutCount, mList.requestLayoutCount <= 4);
+        }
+    }
+
+    /**
+     * 设置了取消接口时，刷新会取消同步的加载更多，之后这一页的完成被忽略；已经完成的加载更多再次完成时也被忽略
+     */
+    @Test
+    public void refreshCancelsSyncLoadMoreAndIgnoresStaleCompletion() {
+        final int[] cancelled = {LoadMorePrefetcher.NO_CURSOR, 0};
+        mList.setOnLoadMoreCancelListener(new CustomListView.OnLoadMoreCancelListener() {
+            @Override
+            public void onLoadMoreCancel(int cursor) {
+                cancelled[0] = cursor;
+                cancelled[1]++;
+            }
+        });
+        scrollTo(ITEM_COUNT);
+        mList.onScrollStateChanged(mList, AbsListView.OnScrollListener.SCROLL_STATE_IDLE);
+        frame();
+        assertTrue(mList.isPullUpLoading());
+        int cursor = mList.getLoadMoreCursor();
+
+        mList.setPullDownRefreshing(true);
+        frame();
+        assertTrue(mList.isPullDownRefreshing());
+        assertTrue(!mList.isPullUpLoading());
+        assertEquals(1, cancelled[1]);
+        assertEquals(cursor, cancelled[0]);
+        assertEquals(LoadMorePrefetcher.NO_CURSOR, mList.getLoadMoreCursor());
+
+        // 刷新前发起的这一页返回时已经过期
+        assertTrue(!mList.onLoadMoreComplete(cursor));
+        mList.onRefreshComplete();
+        frame();
+
+        // 刷新后重新加载的一页正常完成，重复的完成被忽略
+        scrollTo(ITEM_COUNT);
+        mList.onScrollStateChanged(mList, AbsListView.OnScrollListener.SCROLL_STATE_IDLE);
+        frame();
+        assertTrue(mList.isPullUpLoading());
+        cursor = mList.getLoadMoreCursor();
+        assertTrue(mList.onLoadMoreComplete(cursor));
+        frame();
+        assertTrue(!mList.isPullUpLoading());
+        mList.resetCounts();
+        mList.onLoadMoreComplete();
+        assertEquals(0, mList.requestLayoutCount);
+        assertTrue(!mList.onLoadMoreComplete(cursor));
+        assertEquals(1, cancelled[1]);
+    }
+
+    /**
+     * 刷新中再次触发合并到进行中的请求；有效期内下拉直接收起，不再调用onRefresh
+     */
+    @Test
+    public void repeatedTriggersCoalesceAndFreshDataSkipsRefresh() {
+        RefreshGate gate = mList.getRefreshGate();
+        mList.setRefreshTtl(60000);
+        mList.setPullDownRefreshing(true);
+        mList.setPullDownRefreshing();
+        frame();
+        assertEquals(1, gate.getStartedCount());
+        assertEquals(1, gate.getCoalescedCount());
+        assertTrue(mList.isPullDownRefreshing());
+
+        mList.onRefreshComplete();
+        frame();
+        pullToRelease();
+        assertTrue(!mList.isPullDownRefreshing());
+        assertEquals(1, gate.getSuppressedCount());
+        assertEquals(1, gate.getStartedCount());
+    }
+
+    /**
+     * 刷新失败或被取消不更新上次更新时间，有效期内再次下拉仍然会请求
+     */
+    @Test
+    public void failedRefreshDoesNotMarkDataFresh() {
+        RefreshGate gate = mList.getRefreshGate();
+        mList.setRefreshTtl(60000);
+        mList.setTaskExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        mList.setOnAsyncRefreshListener(new CustomListView.OnAsyncRefreshListener<Object>() {
+            @Override
+            public Callable<Object> onCreateRefreshTask() {
+                return new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        throw new IOException("offline");
+                    }
+                };
+            }
+
+            @Override
+            public void onRefreshResult(Object result) {
+            }
+
+            @Override
+            public void onRefreshError(Exception e) {
+            }
+        });
+        long lastRefresh = System.currentTimeMillis() - 120000;
+        mList.restoreLastRefreshTime(lastRefresh);
+
+        pullToRelease();
+        runPostedTasks();
+        frame();
+        assertTrue(!mList.isPullDownRefreshing());
+        assertEquals(lastRefresh, mList.getLastRefreshTime());
+        assertEquals(lastRefresh, mList.getLastUpdatedTime());
+
+        pullToRelease();
+        runPostedTasks();
+        frame();
+        assertEquals(2, gate.getStartedCount());
+        assertEquals(0, gate.getSuppressedCount());
+    }
+
+    /**
+     * setAdapter只更新显示的时间，不算一次刷新：冷启动设置空adapter后第一次下拉仍然会请求
+     */
+    @Test
+    public void pullAfterSetAdapterRefreshes() {
+        RefreshGate gate = mList.getRefreshGate();
+        mList.setRefreshTtl(60000);
+        mList.setAdapter(new ArrayAdapter<String>(RuntimeEnvironment.application,
+                android.R.layout.simple_list_item_1, new String[0]));
+        frame();
+        assertEquals(0, mList.getLastRefreshTime());
+
+        pullToRelease();
+        assertTrue(mList.isPullDownRefreshing());
+        assertEquals(1, gate.getStartedCount());
+        assertEquals(0, gate.getSuppressedCount());
+
+        // 恢复的刷新时间还在有效期内时不请求
+        mList.onRefreshComplete();
+        frame();
+        mList.restoreLastRefreshTime(System.currentTimeMillis() - 1000);
+        pullToRelease();
+        assertTrue(!mList.isPullDownRefreshing());
+        assertEquals(1, gate.getStartedCount());
+        assertEquals(1, gate.getSuppressedCount());
+    }
+
+    /**
+     * 刷新完成时"上次更新"在同一分钟内复用，不再每次new SimpleDateFormat
+     * <br>HeadView收起时的setText、requestLayout在Robolectric里每次都要经过反射代理，分配几KB；
+     * 以同样收起HeadView但不更新时间的onRefreshFailed为基准，差值就是更新时间文字的开销。
+     */
+    @Test
+    public void refreshCompleteAllocationStaysWithinBudget() {
+        mList.setMoveToFirstItemAfterRefresh(false);
+        mList.onRefreshComplete();
+        mList.onRefreshFailed();
+        frame();
+        long completeBytes = 0;
+        long failedBytes = 0;
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            long before = AllocationCounter.allocatedBytes();
+            mList.onRefreshComplete();
+            completeBytes += AllocationCounter.allocatedBytes() - before;
+            frame();
+
+            before = AllocationCounter.allocatedBytes();
+            mList.onRefreshFailed();
+            failedBytes += AllocationCounter.allocatedBytes() - before;
+            frame();
+        }
+        long bytes = completeBytes - failedBytes;
+        assertTrue("bytes per refresh complete: " + bytes / MOVE_COUNT, bytes / MOVE_COUNT < BYTES_PER_EVENT_BUDGET);
+    }
+
+    /**
+     * 列表滚动到中间时刷新，新数据插入在前面：原来第一个可见项停在原来的像素位置
+     */
+    @Test
+    public void prependedItemsKeepTheFirstVisibleItemInPlace() {
+        DiffListAdapter<Long> adapter = installDiffAdapter();
+        int headerCount = mList.getHeaderViewsCount();
+        mList.setSelectionFromTop(10 + headerCount, -7);
+        frame();
+        int firstPosition = mList.getFirstVisiblePosition();
+        long anchorId = adapter.getItemId(firstPosition - headerCount);
+        int anchorTop = mList.getChildAt(0).getTop();
+
+        mList.onRefreshComplete(adapter, prepend(adapter.getItems(), 5));
+        runPostedTasks();
+        frame();
+
+        assertEquals(ITEM_COUNT + 5, adapter.getCount());
+        int newPosition = adapter.getPositionForId(anchorId) + headerCount;
+        assertEquals(firstPosition + 5, newPosition);
+        assertEquals(newPosition, mList.getFirstVisiblePosition());
+        assertEquals(anchorTop, mList.getChildAt(0).getTop());
+    }
+
+    /**
+     * 下拉刷新中HeadView可见时插入新数据：HeadView收起后，原来的第一条数据停在收起后的位置，新数据在它上面
+     */
+    @Test
+    public void prependWhileHeaderShownAnchorsBelowTheCollapsedHeader() {
+        DiffListAdapter<Long> adapter = installDiffAdapter();
+        pullToRelease();
+        for (int i = 0; i < 100; i++) {
+            frame();
+        }
+        assertTrue(mList.isPullDownRefreshing());
+        assertTrue(headerShownHeight() > 0);
+        long anchorId = adapter.getItemId(0);
+        // 第一条数据和HeadView底边之间的分隔线
+        int gap = mList.getChildAt(1).getTop() - mList.getChildAt(0).getBottom();
+
+        mList.onRefreshComplete(adapter, prepend(adapter.getItems(), 5));
+        runPostedTasks();
+        for (int i = 0; i < 100; i++) {
+            frame();
+        }
+
+        assertTrue(!mList.isPullDownRefreshing());
+        int newPosition = adapter.getPositionForId(anchorId) + mList.getHeaderViewsCount();
+        assertEquals(5 + mList.getHeaderViewsCount(), newPosition);
+        assertEquals(newPosition, mList.getFirstVisiblePosition());
+        assertEquals(mList.getListPaddingTop() + gap, mList.getChildAt(0).getTop());
+    }
+
+    /**
+     * HeadView在屏幕上显示的高度：收起时HeadView高度为0，它的底边就是显示出来的部分
+     */
+    private int headerShownHeight() {
+        assertEquals(0, mList.getFirstVisiblePosition());
+        return mList.getChildAt(0).getBottom() - mList.getListPaddingTop();
+    }
+
+    /**
+     * 下拉超过松手刷新的距离并松手
+     */
+    private void pullToRelease() {
+        down(0);
+        // 拉过整个列表的高度，一定超过HeadView高度的RATIO倍
+        for (int y = 10; y <= HEIGHT; y += 10) {
+            move(y);
+        }
+        up();
+    }
+
+    /**
+     * 换成id为0..ITEM_COUNT-1的DiffListAdapter，后台比较在当前线程执行
+     */
+    private DiffListAdapter<Long> installDiffAdapter() {
+        DiffListAdapter<Long> adapter = new DiffListAdapter<Long>() {
+            @Override
+            protected View getItemView(int position, Long item, View convertView, ViewGroup parent) {
+                TextView view = convertView != null ? (TextView) convertView : (TextView) LayoutInflater
+                        .from(parent.getContext()).inflate(android.R.layout.simple_list_item_1, parent, false);
+                view.setText("item " + item);
+                return view;
+            }
+
+            @Override
+            public long getItemStableId(Long item) {
+                return item;
+            }
+        };
+        adapter.setDiffExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        List<Long> items = new ArrayList<Long>(ITEM_COUNT);
+        for (long i = 0; i < ITEM_COUNT; i++) {
+            items.add(i);
+        }
+        adapter.setItems(items);
+        mList.setAdapter(adapter);
+        frame();
+        return adapter;
+    }
+
+    /**
+     * 在前面插入count条新数据，id为负数
+     */
+    private static List<Long> prepend(List<Long> items, int count) {
+        List<Long> newItems = new ArrayList<Long>(items.size() + count);
+        for (long i = -count; i < 0; i++) {
+            newItems.add(i);
+        }
+        newItems.addAll(items);
+        return newItems;
+    }
+
+    private void scrollTo(int firstVisible) {
+        int visible = 10;
+        mList.onScroll(mList, Math.min(firstVisible, ITEM_COUNT + 2 - visible), visible, ITEM_COUNT + 2);
+        frame();
+    }
+
+    private void down(int y) {
+        mDownTime += 1000;
+        dispatch(MotionEvent.ACTION_DOWN, y);
+    }
+
+    private void move(int y) {
+        dispatch(MotionEvent.ACTION_MOVE, y);
+    }
+
+    private void up() {
+        dispatch(MotionEvent.ACTION_UP, 0);
+    }
+
+    /**
+     * 复用同一个MotionEvent，避免测试本身分配内存
+     */
+    private void dispatch(int action, int y) {
+        mEvent.setAction(action);
+        mEvent.setLocation(WIDTH / 2, y);
+        mList.onTouchEvent(mEvent);
+        frame();
+    }
+
+    /**
+     * 执行主线程上已经post的任务(例如异步任务的结果)
+     * <br>表针动画每一帧都会重新post，所以只执行开始时队列里的任务，不能一直执行到队列为空
+     */
+    private void runPostedTasks() {
+        Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+        for (int i = scheduler.size(); i > 0; i--) {
+            scheduler.runOneTask();
+        }
+    }
+
+    /**
+     * 模拟一帧：执行已经post的Choreographer回调(表针、属性动画)，有requestLayout时重新布局
+     * <br>Robolectric每取一次帧时间前进10ms，动画按帧推进
+     */
+    private void frame() {
+        runPostedTasks();
+        if (mList.isLayoutRequested()) {
+            mList.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+            mList.layout(0, 0, WIDTH, HEIGHT);
+        }
+    }
+}
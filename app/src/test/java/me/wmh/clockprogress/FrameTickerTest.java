@@ -0,0 +1,84 @@
+package me.wmh.clockprogress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 多个表共用一个帧时钟
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FrameTickerTest {
+
+    private static class CountingListener implements ClockAnimator.OnFrameListener {
+        int frames;
+
+        @Override
+        public void onFrame(ClockKinematics kinematics) {
+            frames++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        // Robolectric的Choreographer把帧回调直接post到当前时间，不暂停的话post时就会一帧接一帧地执行下去；这里只由测试手动调用doFrame
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @Test
+    public void oneTickDrivesEveryRunningAnimator() {
+        FrameTicker ticker = FrameTicker.getInstance();
+        CountingListener[] listeners = new CountingListener[3];
+        ClockAnimator[] animators = new ClockAnimator[3];
+        for (int i = 0; i < animators.length; i++) {
+            listeners[i] = new CountingListener();
+            animators[i] = new ClockAnimator(listeners[i]);
+            animators[i].start();
+        }
+        assertEquals(3, ticker.getListenerCount());
+
+        ticker.doFrame(System.nanoTime());
+        for (CountingListener listener : listeners) {
+            assertEquals(1, listener.frames);
+        }
+
+        animators[1].stop();
+        ticker.doFrame(System.nanoTime());
+        assertEquals(2, listeners[0].frames);
+        assertEquals(1, listeners[1].frames);
+        assertEquals(2, listeners[2].frames);
+
+        animators[0].stop();
+        animators[2].stop();
+        assertEquals(0, ticker.getListenerCount());
+    }
+
+    @Test
+    public void listenerCanStopItselfDuringTick() {
+        final FrameTicker ticker = FrameTicker.getInstance();
+        final ClockAnimator[] self = new ClockAnimator[1];
+        final CountingListener other = new CountingListener();
+        self[0] = new ClockAnimator(new ClockAnimator.OnFrameListener() {
+            @Override
+            public void onFrame(ClockKinematics kinematics) {
+                self[0].stop();
+            }
+        });
+        ClockAnimator otherAnimator = new ClockAnimator(other);
+        self[0].start();
+        otherAnimator.start();
+
+        ticker.doFrame(System.nanoTime());
+        assertEquals(1, other.frames);
+        assertEquals(1, ticker.getListenerCount());
+
+        otherAnimator.stop();
+        assertEquals(0, ticker.getListenerCount());
+    }
+}
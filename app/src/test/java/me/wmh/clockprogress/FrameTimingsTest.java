@@ -0,0 +1,96 @@
+package me.wmh.clockprogress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SECTION_FRAME按Choreographer的帧间隔统计掉帧，其它统计项只记录每次调用的耗时
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FrameTimingsTest {
+
+    private static final long VSYNC = FrameTimings.DEFAULT_BUDGET_NANOS;
+
+    private FrameTicker mTicker;
+    private long mFrameTime;
+
+    @Before
+    public void setUp() {
+        // 只由测试手动调用doFrame
+        ShadowLooper.pauseMainLooper();
+        mTicker = FrameTicker.getInstance();
+        FrameTimings.reset();
+        FrameTimings.setEnabled(true);
+        mFrameTime = 1000000000L;
+    }
+
+    @After
+    public void tearDown() {
+        FrameTimings.setEnabled(false);
+        FrameTimings.reset();
+    }
+
+    private void frameAfter(long vsyncs) {
+        mFrameTime += vsyncs * VSYNC;
+        mTicker.doFrame(mFrameTime);
+    }
+
+    @Test
+    public void missedVsyncsCountAsDroppedFrames() {
+        // 第一帧只记录时间
+        frameAfter(0);
+        for (int i = 0; i < 10; i++) {
+            frameAfter(1);
+        }
+        frameAfter(2);
+        frameAfter(1);
+        frameAfter(4);
+
+        FrameTimings.Snapshot snapshot = FrameTimings.getSnapshot(FrameTimings.SECTION_FRAME);
+        assertEquals(13, snapshot.totalCount);
+        assertEquals(2, snapshot.overBudgetCount);
+        assertEquals(VSYNC, snapshot.p50Nanos);
+        assertEquals(4 * VSYNC, snapshot.maxNanos);
+        // 每次调用的统计项不受帧间隔影响
+        assertEquals(0, FrameTimings.getSnapshot(FrameTimings.SECTION_CLOCK_DRAW).totalCount);
+    }
+
+    @Test
+    public void disablingStopsTheFrameCallback() {
+        assertEquals(1, mTicker.getListenerCount());
+        FrameTimings.setEnabled(false);
+        assertEquals(0, mTicker.getListenerCount());
+        frameAfter(0);
+        frameAfter(3);
+        assertEquals(0, FrameTimings.getSnapshot(FrameTimings.SECTION_FRAME).totalCount);
+
+        // 重新开启后不把关闭期间的间隔算作一帧
+        FrameTimings.setEnabled(true);
+        frameAfter(10);
+        frameAfter(1);
+        FrameTimings.Snapshot snapshot = FrameTimings.getSnapshot(FrameTimings.SECTION_FRAME);
+        assertEquals(1, snapshot.totalCount);
+        assertEquals(0, snapshot.overBudgetCount);
+    }
+
+    @Test
+    public void perCallSectionCountsCallsOverTheBudget() {
+        FrameTimings.setBudgetNanos(FrameTimings.SECTION_CLOCK_DRAW, 1);
+        long start = FrameTimings.begin();
+        assertTrue(start != 0);
+        FrameTimings.end(FrameTimings.SECTION_CLOCK_DRAW, start - 1000000L);
+        FrameTimings.Snapshot snapshot = FrameTimings.getSnapshot(FrameTimings.SECTION_CLOCK_DRAW);
+        assertEquals(1, snapshot.totalCount);
+        assertEquals(1, snapshot.overBudgetCount);
+        FrameTimings.setBudgetNanos(FrameTimings.SECTION_CLOCK_DRAW, FrameTimings.DEFAULT_BUDGET_NANOS);
+    }
+}
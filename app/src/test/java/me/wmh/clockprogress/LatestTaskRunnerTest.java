@@ -0,0 +1,156 @@
+package me.wmh.clockprogress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 只返回最新任务的结果：被取代或取消的任务，无论结果是否已经在返回主线程的途中，都不会回调
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class LatestTaskRunnerTest {
+
+    /**
+     * 手动执行的线程池，测试决定任务什么时候在"后台"完成
+     */
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void run(int index) {
+            tasks.get(index).run();
+        }
+    }
+
+    private class RecordingCallback implements LatestTaskRunner.Callback<String> {
+        @Override
+        public void onResult(String result) {
+            mDelivered.add(result);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            mDelivered.add("error:" + e.getMessage());
+        }
+    }
+
+    private final List<String> mDelivered = new ArrayList<String>();
+    private ManualExecutor mExecutor;
+    private LatestTaskRunner<String> mRunner;
+
+    @Before
+    public void setUp() {
+        // 结果先停在主线程的队列里，由测试决定什么时候送达
+        ShadowLooper.pauseMainLooper();
+        mExecutor = new ManualExecutor();
+        mRunner = new LatestTaskRunner<String>();
+        mRunner.setExecutor(mExecutor);
+    }
+
+    private static Callable<String> returning(final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return value;
+            }
+        };
+    }
+
+    private void start(String value) {
+        mRunner.start(returning(value), new RecordingCallback());
+    }
+
+    @Test
+    public void resultIsDeliveredOnTheMainThread() {
+        start("a");
+        assertTrue(mRunner.isRunning());
+        mExecutor.run(0);
+        assertTrue(mDelivered.isEmpty());
+
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(Arrays.asList("a"), mDelivered);
+        assertFalse(mRunner.isRunning());
+        assertEquals(0, mRunner.getDroppedCount());
+    }
+
+    @Test
+    public void supersededTaskThatHasNotRunIsNeverDelivered() {
+        start("a");
+        start("b");
+        // 第一个任务已经被取消，执行时不会调用callable
+        mExecutor.run(0);
+        mExecutor.run(1);
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(Arrays.asList("b"), mDelivered);
+    }
+
+    @Test
+    public void supersededResultInFlightIsDropped() {
+        start("a");
+        mExecutor.run(0);
+        // 结果已经post到主线程，这时开始新的任务
+        start("b");
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(mDelivered.isEmpty());
+        assertEquals(1, mRunner.getDroppedCount());
+        assertTrue(mRunner.isRunning());
+
+        mExecutor.run(1);
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(Arrays.asList("b"), mDelivered);
+    }
+
+    @Test
+    public void cancelledResultInFlightIsDropped() {
+        start("a");
+        mExecutor.run(0);
+        assertTrue(mRunner.cancel());
+        assertFalse(mRunner.isRunning());
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(mDelivered.isEmpty());
+        assertEquals(1, mRunner.getDroppedCount());
+        assertFalse(mRunner.cancel());
+    }
+
+    @Test
+    public void cancelledBeforeRunningIsNeverDelivered() {
+        start("a");
+        mRunner.cancel();
+        mExecutor.run(0);
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(mDelivered.isEmpty());
+        // 被取消的任务不会post结果，也就没有丢弃
+        assertEquals(0, mRunner.getDroppedCount());
+    }
+
+    @Test
+    public void errorIsDeliveredWithItsCause() {
+        mRunner.start(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IllegalStateException("boom");
+            }
+        }, new RecordingCallback());
+        mExecutor.run(0);
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(Arrays.asList("error:boom"), mDelivered);
+    }
+}
@@ -0,0 +1,90 @@
+package me.wmh.clockprogress;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 按id比较新旧数据：插入、删除、修改的数量，以及内容没有变化的项沿用旧对象
+ */
+public class ListDifferTest {
+
+    private static class Item {
+        final long id;
+        final String text;
+
+        Item(long id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private static final ListDiffer.ItemCallback<Item> CALLBACK = new ListDiffer.ItemCallback<Item>() {
+        @Override
+        public long getItemStableId(Item item) {
+            return item.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Item oldItem, Item newItem) {
+            return oldItem.text.equals(newItem.text);
+        }
+    };
+
+    @Test
+    public void countsInsertedRemovedChangedAndUnchanged() {
+        Item a = new Item(1, "a");
+        Item b = new Item(2, "b");
+        Item c = new Item(3, "c");
+        List<Item> oldItems = Arrays.asList(a, b, c);
+        Item z = new Item(0, "z");
+        Item sameA = new Item(1, "a");
+        Item newB = new Item(2, "B");
+        Item d = new Item(4, "d");
+
+        ListDiffer.Result<Item> result = ListDiffer.diff(oldItems, Arrays.asList(z, sameA, newB, d), CALLBACK);
+        assertEquals(2, result.inserted);
+        assertEquals(1, result.removed);
+        assertEquals(1, result.changed);
+        assertEquals(1, result.unchanged);
+
+        // 顺序和新数据一致；没有变化的项是旧对象，其余是新对象
+        assertEquals(4, result.items.size());
+        assertSame(z, result.items.get(0));
+        assertSame(a, result.items.get(1));
+        assertSame(newB, result.items.get(2));
+        assertSame(d, result.items.get(3));
+    }
+
+    @Test
+    public void prependingKeepsEveryOldObject() {
+        Item a = new Item(1, "a");
+        Item b = new Item(2, "b");
+        ListDiffer.Result<Item> result = ListDiffer.diff(Arrays.asList(a, b),
+                Arrays.asList(new Item(-1, "new"), new Item(1, "a"), new Item(2, "b")), CALLBACK);
+        assertEquals(1, result.inserted);
+        assertEquals(0, result.removed);
+        assertEquals(0, result.changed);
+        assertEquals(2, result.unchanged);
+        assertSame(a, result.items.get(1));
+        assertSame(b, result.items.get(2));
+    }
+
+    @Test
+    public void emptyOldOrNewList() {
+        List<Item> items = Arrays.asList(new Item(1, "a"), new Item(2, "b"));
+        ListDiffer.Result<Item> added = ListDiffer.diff(Collections.<Item>emptyList(), items, CALLBACK);
+        assertEquals(2, added.inserted);
+        assertEquals(0, added.removed);
+
+        ListDiffer.Result<Item> cleared = ListDiffer.diff(items, Collections.<Item>emptyList(), CALLBACK);
+        assertEquals(0, cleared.inserted);
+        assertEquals(2, cleared.removed);
+        assertEquals(0, cleared.items.size());
+    }
+}
@@ -0,0 +1,87 @@
+package me.wmh.clockprogress;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 加载更多的预加载距离，以及每个游标只请求一次
+ * <br>和CustomListView一样，最后一个数据项的位置是count - 1，FootView可见时lastItemIndex等于count。
+ */
+public class LoadMorePrefetcherTest {
+
+    private static final int COUNT = 20;
+
+    private LoadMorePrefetcher mPrefetcher;
+
+    @Before
+    public void setUp() {
+        mPrefetcher = new LoadMorePrefetcher();
+    }
+
+    @Test
+    public void withoutPrefetchOnlyLoadsWhenIdleAtTheEnd() {
+        assertFalse(mPrefetcher.shouldLoadMore(COUNT - 1, COUNT, true));
+        assertFalse(mPrefetcher.shouldLoadMore(COUNT, COUNT, false));
+        assertTrue(mPrefetcher.shouldLoadMore(COUNT, COUNT, true));
+    }
+
+    @Test
+    public void prefetchStartsWithinTheDistanceWhileScrolling() {
+        mPrefetcher.setPrefetchDistance(5);
+        assertFalse(mPrefetcher.shouldLoadMore(COUNT - 6, COUNT, false));
+        assertTrue(mPrefetcher.shouldLoadMore(COUNT - 5, COUNT, false));
+        assertTrue(mPrefetcher.shouldLoadMore(COUNT - 5, COUNT, true));
+    }
+
+    @Test
+    public void eachCursorIsRequestedOnceWhileScrolling() {
+        mPrefetcher.setPrefetchDistance(5);
+        assertTrue(mPrefetcher.shouldLoadMore(COUNT - 5, COUNT, false));
+        assertEquals(COUNT, mPrefetcher.begin(COUNT));
+        // 请求进行中，继续滚动不会再请求
+        for (int last = COUNT - 4; last <= COUNT; last++) {
+            assertFalse(mPrefetcher.shouldLoadMore(last, COUNT, false));
+            assertFalse(mPrefetcher.shouldLoadMore(last, COUNT, true));
+        }
+
+        // 返回了空页，条数没有变化：滚动中不再对同一个游标请求，停止滚动时仍然可以重试
+        assertTrue(mPrefetcher.complete(COUNT));
+        assertFalse(mPrefetcher.isInFlight());
+        assertFalse(mPrefetcher.shouldLoadMore(COUNT - 3, COUNT, false));
+        assertTrue(mPrefetcher.shouldLoadMore(COUNT, COUNT, true));
+
+        // 新的一页追加后是新的游标
+        assertTrue(mPrefetcher.shouldLoadMore(2 * COUNT - 5, 2 * COUNT, false));
+    }
+
+    @Test
+    public void cancelledCursorIgnoresItsResultAndCanBeRequestedAgain() {
+        mPrefetcher.setPrefetchDistance(5);
+        mPrefetcher.begin(COUNT);
+        assertEquals(COUNT, mPrefetcher.getInFlightCursor());
+        assertEquals(COUNT, mPrefetcher.cancel());
+        assertEquals(LoadMorePrefetcher.NO_CURSOR, mPrefetcher.cancel());
+        assertEquals(1, mPrefetcher.getCancelledCount());
+        // 被取消的请求晚到的结果
+        assertFalse(mPrefetcher.complete(COUNT));
+
+        assertTrue(mPrefetcher.shouldLoadMore(COUNT - 5, COUNT, false));
+        mPrefetcher.begin(COUNT);
+        // 不是当前请求的游标
+        assertFalse(mPrefetcher.complete(COUNT - 1));
+        assertTrue(mPrefetcher.isInFlight());
+        assertTrue(mPrefetcher.complete(COUNT));
+        assertEquals(LoadMorePrefetcher.NO_CURSOR, mPrefetcher.getInFlightCursor());
+    }
+
+    @Test
+    public void negativeDistanceMeansNoPrefetch() {
+        mPrefetcher.setPrefetchDistance(-3);
+        assertEquals(0, mPrefetcher.getPrefetchDistance());
+        assertFalse(mPrefetcher.shouldLoadMore(COUNT, COUNT, false));
+    }
+}
@@ -0,0 +1,115 @@
+package me.wmh.clockprogress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 磁盘缓存的压缩：中途退出后重新打开只能读到完整的记录
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageDiskCacheTest {
+
+    /**
+     * 文件头8 + RESET 20 + 6条25字节的页记录，第7条写入时压缩
+     */
+    private static final int MAX_BYTES = 180;
+
+    private static final PageDiskCache.Codec<String> CODEC = new PageDiskCache.Codec<String>() {
+        @Override
+        public byte[] encode(List<String> items) throws IOException {
+            return items.get(0).getBytes("UTF-8");
+        }
+
+        @Override
+        public List<String> decode(byte[] data) throws IOException {
+            return Collections.singletonList(new String(data, "UTF-8"));
+        }
+    };
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("page-cache", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private static List<String> page(int index, int version) {
+        return Arrays.asList("p" + index + "-v" + version);
+    }
+
+    @Test
+    public void interruptedCompactionReopensConsistently() throws Exception {
+        PageDiskCache<String> cache = new PageDiskCache<String>(mFile, MAX_BYTES, CODEC);
+        cache.saveFirstPage(page(0, 1), 1000);
+        for (int i = 1; i < 4; i++) {
+            cache.savePage(i, page(i, 1));
+        }
+        cache.loadPage(0);
+        for (int i = 0; i < 2; i++) {
+            cache.savePage(i, page(i, 2));
+        }
+        cache.loadPage(0);
+
+        // 下一次写入需要压缩，重写完RESET和第0页后"进程退出"
+        cache.setCompactionHook(new PageDiskCache.CompactionHook() {
+            @Override
+            public void onRecordRewritten(int count) {
+                if (count == 2) {
+                    throw new IllegalStateException("killed");
+                }
+            }
+        });
+        cache.savePage(2, page(2, 2));
+        try {
+            cache.loadPage(2);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        PageDiskCache<String> reopened = new PageDiskCache<String>(mFile, MAX_BYTES, CODEC);
+        assertEquals(page(0, 2), reopened.loadPage(0));
+        for (int i = 1; i < 4; i++) {
+            assertNull(reopened.loadPage(i));
+        }
+    }
+
+    @Test
+    public void completedCompactionKeepsLatestPages() throws Exception {
+        PageDiskCache<String> cache = new PageDiskCache<String>(mFile, MAX_BYTES, CODEC);
+        cache.saveFirstPage(page(0, 1), 1000);
+        for (int version = 1; version <= 3; version++) {
+            for (int i = 1; i < 4; i++) {
+                cache.savePage(i, page(i, version));
+            }
+            cache.loadPage(0);
+        }
+
+        PageDiskCache<String> reopened = new PageDiskCache<String>(mFile, MAX_BYTES, CODEC);
+        assertEquals(page(0, 1), reopened.loadPage(0));
+        for (int i = 1; i < 4; i++) {
+            List<String> items = reopened.loadPage(i);
+            assertTrue(String.valueOf(items), page(i, 3).equals(items));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package me.wmh.clockprogress;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分页窗口：重新加载的页条数变化时位置不变，加载失败的页可以重试
+ */
+public class PageStoreTest {
+
+    private PageStore<String> mStore;
+    private final List<Integer> mReloadRequests = new ArrayList<Integer>();
+
+    @Before
+    public void setUp() {
+        mStore = new PageStore<String>();
+        mStore.setPrefetchPages(0);
+        mStore.setListener(new PageStore.Listener() {
+            @Override
+            public void onPageEvicted(int pageIndex) {
+            }
+
+            @Override
+            public void onPageReloadRequested(int pageIndex) {
+                mReloadRequests.add(pageIndex);
+            }
+        });
+        for (int i = 0; i < 4; i++) {
+            mStore.appendPage(page(i, 3));
+        }
+        // 滚到最后之后只保留两页，前两页被释放；再回到开头，第0页需要重新加载
+        mStore.onVisibleRangeChanged(9, 11);
+        mStore.setMaxResidentItems(6);
+        mStore.onVisibleRangeChanged(0, 2);
+        assertEquals(Arrays.asList(0), mReloadRequests);
+        mReloadRequests.clear();
+    }
+
+    private static List<String> page(int index, int size) {
+        List<String> items = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            items.add(index + "-" + i);
+        }
+        return items;
+    }
+
+    @Test
+    public void largerReloadIsTruncated() {
+        assertTrue(mStore.setPageItems(mStore.getGeneration(), 0, page(0, 5)));
+        assertEquals(12, mStore.getCount());
+        assertEquals("0-2", mStore.getItem(2));
+        assertEquals("2-0", mStore.getItem(6));
+        assertEquals(1, mStore.getSizeMismatchCount());
+    }
+
+    @Test
+    public void smallerReloadIsPadded() {
+        assertTrue(mStore.setPageItems(mStore.getGeneration(), 0, page(0, 2)));
+        assertEquals(12, mStore.getCount());
+        assertEquals("0-1", mStore.getItem(1));
+        assertNull(mStore.getItem(2));
+        assertEquals("2-0", mStore.getItem(6));
+        assertEquals(1, mStore.getSizeMismatchCount());
+        assertTrue(mReloadRequests.isEmpty());
+    }
+
+    @Test
+    public void failedPageIsRetried() {
+        mStore.onPageReloadFailed(mStore.getGeneration(), 0);
+        assertTrue(mStore.isFailed(1));
+        assertFalse(mStore.isFailed(6));
+        // 失败后绑定不会反复请求
+        assertNull(mStore.getItem(1));
+        assertTrue(mReloadRequests.isEmpty());
+
+        assertEquals(1, mStore.retryFailedPages());
+        assertEquals(Arrays.asList(0), mReloadRequests);
+        assertFalse(mStore.isFailed(1));
+        assertEquals(0, mStore.retryFailedPages());
+
+        assertTrue(mStore.setPageItems(mStore.getGeneration(), 0, page(0, 3)));
+        assertEquals("0-1", mStore.getItem(1));
+    }
+}
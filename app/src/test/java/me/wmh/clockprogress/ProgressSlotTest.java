@@ -0,0 +1,77 @@
+package me.wmh.clockprogress;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 跨线程进度槽：只保留最新值，post次数不超过take次数
+ */
+public class ProgressSlotTest {
+
+    @Test
+    public void onlyFirstOfferUntilTakeAsksForPost() {
+        ProgressSlot slot = new ProgressSlot();
+        assertTrue(slot.offer(0.1f));
+        assertFalse(slot.offer(0.2f));
+        assertFalse(slot.offer(0.3f));
+        assertEquals(0.3f, slot.take(), 0f);
+        assertTrue(Float.isNaN(slot.take()));
+        assertTrue(slot.offer(0.4f));
+    }
+
+    @Test
+    public void clearDropsPendingValue() {
+        ProgressSlot slot = new ProgressSlot();
+        assertTrue(slot.offer(0.5f));
+        slot.clear();
+        assertTrue(Float.isNaN(slot.take()));
+    }
+
+    @Test
+    public void concurrentWritersNeverLoseTheLastValue() throws InterruptedException {
+        final ProgressSlot slot = new ProgressSlot();
+        final int writers = 4;
+        final int offersPerWriter = 100000;
+        final AtomicInteger posts = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 1; i <= offersPerWriter; i++) {
+                        if (slot.offer(i / (float) offersPerWriter)) {
+                            posts.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        // 模拟UI线程：每次有post就take一次
+        int takes = 0;
+        float last = Float.NaN;
+        while (done.getCount() > 0 || takes < posts.get()) {
+            if (takes < posts.get()) {
+                takes++;
+                float value = slot.take();
+                if (!Float.isNaN(value)) {
+                    last = value;
+                }
+            }
+        }
+        done.await();
+        float remaining = slot.take();
+        if (!Float.isNaN(remaining)) {
+            last = remaining;
+        }
+        // 每次post都正好对应一次take
+        assertEquals(posts.get(), takes);
+        assertEquals(1f, last, 0f);
+    }
+}
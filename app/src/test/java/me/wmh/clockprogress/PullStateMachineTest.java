@@ -0,0 +1,218 @@
+package me.wmh.clockprogress;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static me.wmh.clockprogress.PullStateMachine.EFFECT_FOOTER_STATE;
+import static me.wmh.clockprogress.PullStateMachine.EFFECT_HEADER_OFFSET;
+import static me.wmh.clockprogress.PullStateMachine.EFFECT_HEADER_STATE;
+import static me.wmh.clockprogress.PullStateMachine.EFFECT_HIDE_FOOTER;
+import static me.wmh.clockprogress.PullStateMachine.EFFECT_KEEP_HEADER;
+import static me.wmh.clockprogress.PullStateMachine.EFFECT_LOAD_MORE;
+import static me.wmh.clockprogress.PullStateMachine.EFFECT_NONE;
+import static me.wmh.clockprogress.PullStateMachine.EFFECT_REFRESH;
+import static me.wmh.clockprogress.PullStateMachine.FOOTER_AUTO_LOAD_DONE;
+import static me.wmh.clockprogress.PullStateMachine.FOOTER_LOADING;
+import static me.wmh.clockprogress.PullStateMachine.FOOTER_MANUAL_LOAD_DONE;
+import static me.wmh.clockprogress.PullStateMachine.HEADER_REFRESHING;
+import static me.wmh.clockprogress.PullStateMachine.HEADER_REFRESHING_DONE;
+import static me.wmh.clockprogress.PullStateMachine.PULL_TO_REFRESH;
+import static me.wmh.clockprogress.PullStateMachine.RATIO;
+import static me.wmh.clockprogress.PullStateMachine.RELEASE_TO_REFRESH;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 下拉、松手和加载更多的状态变化，以及每一步返回的EFFECT_*
+ */
+public class PullStateMachineTest {
+
+    private static final int HEADER_HEIGHT = 100;
+
+    /**
+     * 下拉距离在各区间内的y坐标(按下的位置是0)
+     */
+    private static final int Y_UP = 0;
+    private static final int Y_PULL = 10 * RATIO;
+    private static final int Y_PULL_MORE = 20 * RATIO;
+    private static final int Y_RELEASE = HEADER_HEIGHT * RATIO;
+    private static final int Y_RELEASE_MORE = 2 * HEADER_HEIGHT * RATIO;
+
+    /**
+     * {当前状态, 移动到的y, 新状态, 返回的EFFECT_*}
+     */
+    private static final int[][] MOVES = {
+            {HEADER_REFRESHING_DONE, Y_UP, HEADER_REFRESHING_DONE, EFFECT_NONE},
+            {HEADER_REFRESHING_DONE, Y_PULL, PULL_TO_REFRESH, EFFECT_HEADER_STATE | EFFECT_HEADER_OFFSET},
+            // 一次移动最多进入PULL_TO_REFRESH
+            {HEADER_REFRESHING_DONE, Y_RELEASE, PULL_TO_REFRESH, EFFECT_HEADER_STATE | EFFECT_HEADER_OFFSET},
+
+            {PULL_TO_REFRESH, Y_UP, HEADER_REFRESHING_DONE, EFFECT_KEEP_HEADER | EFFECT_HEADER_STATE},
+            {PULL_TO_REFRESH, Y_PULL_MORE, PULL_TO_REFRESH, EFFECT_KEEP_HEADER | EFFECT_HEADER_OFFSET},
+            {PULL_TO_REFRESH, Y_RELEASE, RELEASE_TO_REFRESH,
+                    EFFECT_KEEP_HEADER | EFFECT_HEADER_STATE | EFFECT_HEADER_OFFSET},
+
+            {RELEASE_TO_REFRESH, Y_UP, HEADER_REFRESHING_DONE, EFFECT_KEEP_HEADER | EFFECT_HEADER_STATE},
+            {RELEASE_TO_REFRESH, Y_PULL, PULL_TO_REFRESH,
+                    EFFECT_KEEP_HEADER | EFFECT_HEADER_STATE | EFFECT_HEADER_OFFSET},
+            {RELEASE_TO_REFRESH, Y_RELEASE_MORE, RELEASE_TO_REFRESH, EFFECT_KEEP_HEADER | EFFECT_HEADER_OFFSET},
+
+            // 刷新中不处理移动
+            {HEADER_REFRESHING, Y_UP, HEADER_REFRESHING, EFFECT_NONE},
+            {HEADER_REFRESHING, Y_PULL, HEADER_REFRESHING, EFFECT_NONE},
+            {HEADER_REFRESHING, Y_RELEASE, HEADER_REFRESHING, EFFECT_NONE},
+    };
+
+    /**
+     * {当前状态, 新状态, 返回的EFFECT_*}
+     */
+    private static final int[][] UPS = {
+            {HEADER_REFRESHING_DONE, HEADER_REFRESHING_DONE, EFFECT_NONE},
+            {PULL_TO_REFRESH, HEADER_REFRESHING_DONE, EFFECT_HEADER_STATE},
+            {RELEASE_TO_REFRESH, HEADER_REFRESHING, EFFECT_HEADER_STATE | EFFECT_REFRESH},
+            {HEADER_REFRESHING, HEADER_REFRESHING, EFFECT_NONE},
+    };
+
+    private static final int NO = 0;
+    private static final int YES = 1;
+
+    /**
+     * {canLoadMore, autoLoadMore, scrollToLoadMore, 正在刷新, 正在加载更多, reachedEnd, idle, 返回的EFFECT_*, 之后的FootView状态}
+     */
+    private static final int[][] LOAD_MORE_CHECKS = {
+            {YES, YES, YES, NO, NO, YES, NO, EFFECT_LOAD_MORE | EFFECT_FOOTER_STATE, FOOTER_LOADING},
+            {YES, YES, YES, NO, NO, NO, YES, EFFECT_NONE, FOOTER_AUTO_LOAD_DONE},
+            // 正在加载更多时不重复请求
+            {YES, YES, YES, NO, YES, YES, YES, EFFECT_NONE, FOOTER_LOADING},
+            // 正在下拉刷新时不自动加载更多
+            {YES, YES, YES, YES, NO, YES, YES, EFFECT_NONE, FOOTER_AUTO_LOAD_DONE},
+            // 手动加载：停止滚动后显示"点击加载"
+            {YES, NO, YES, NO, NO, YES, YES, EFFECT_FOOTER_STATE, FOOTER_MANUAL_LOAD_DONE},
+            {YES, NO, YES, NO, NO, YES, NO, EFFECT_NONE, FOOTER_AUTO_LOAD_DONE},
+            // 加载更多被关闭，移除FootView
+            {NO, YES, YES, NO, NO, YES, YES, EFFECT_HIDE_FOOTER, FOOTER_AUTO_LOAD_DONE},
+            // 已经没有更多内容
+            {YES, YES, NO, NO, NO, YES, YES, EFFECT_NONE, FOOTER_AUTO_LOAD_DONE},
+    };
+
+    private PullStateMachine mMachine;
+
+    @Before
+    public void setUp() {
+        mMachine = newMachine();
+    }
+
+    private static PullStateMachine newMachine() {
+        PullStateMachine machine = new PullStateMachine();
+        machine.setHeaderHeight(HEADER_HEIGHT);
+        machine.setCanRefresh(true);
+        return machine;
+    }
+
+    /**
+     * 从初始状态按下并移动到指定的HeadView状态
+     */
+    private static void enter(PullStateMachine machine, int headState) {
+        if (headState == HEADER_REFRESHING) {
+            machine.startRefreshing();
+            machine.onDown(0, 0);
+            return;
+        }
+        machine.onDown(0, 0);
+        if (headState == PULL_TO_REFRESH || headState == RELEASE_TO_REFRESH) {
+            machine.onMove(Y_PULL, 0);
+        }
+        if (headState == RELEASE_TO_REFRESH) {
+            machine.onMove(Y_RELEASE, 0);
+        }
+        assertEquals(headState, machine.getHeadState());
+    }
+
+    @Test
+    public void moveTransitions() {
+        for (int i = 0; i < MOVES.length; i++) {
+            int[] row = MOVES[i];
+            PullStateMachine machine = newMachine();
+            enter(machine, row[0]);
+            assertEquals("effects of move " + i, row[3], machine.onMove(row[1], 0));
+            assertEquals("state after move " + i, row[2], machine.getHeadState());
+            if ((row[3] & EFFECT_HEADER_OFFSET) != 0) {
+                assertEquals("padding after move " + i, row[1] / RATIO - HEADER_HEIGHT, machine.getHeaderPaddingTop());
+            }
+        }
+    }
+
+    @Test
+    public void upTransitions() {
+        for (int i = 0; i < UPS.length; i++) {
+            int[] row = UPS[i];
+            PullStateMachine machine = newMachine();
+            enter(machine, row[0]);
+            assertEquals("effects of up " + i, row[2], machine.onUp());
+            assertEquals("state after up " + i, row[1], machine.getHeadState());
+            assertEquals("recorded after up " + i, false, machine.isRecored());
+        }
+    }
+
+    @Test
+    public void loadMoreChecks() {
+        for (int i = 0; i < LOAD_MORE_CHECKS.length; i++) {
+            int[] row = LOAD_MORE_CHECKS[i];
+            PullStateMachine machine = newMachine();
+            machine.setCanLoadMore(row[0] == YES);
+            machine.setAutoLoadMore(row[1] == YES);
+            machine.setScrollToLoadMore(row[2] == YES);
+            if (row[3] == YES) {
+                machine.startRefreshing();
+            }
+            if (row[4] == YES) {
+                assertEquals(EFFECT_LOAD_MORE, machine.onFooterClick());
+            }
+            assertEquals("effects of check " + i, row[7], machine.onLoadMoreCheck(row[5] == YES, row[6] == YES));
+            assertEquals("footer after check " + i, row[8], machine.getFooterState());
+        }
+    }
+
+    @Test
+    public void pullIsBlockedWhileLoadingMoreUnlessCancellable() {
+        mMachine.setCanLoadMore(true);
+        mMachine.onFooterClick();
+        assertEquals(FOOTER_LOADING, mMachine.getFooterState());
+        mMachine.onDown(0, 0);
+        assertEquals(EFFECT_NONE, mMachine.onMove(Y_PULL, 0));
+        assertEquals(HEADER_REFRESHING_DONE, mMachine.getHeadState());
+
+        mMachine.setLoadMoreCancellable(true);
+        mMachine.onDown(0, 0);
+        assertEquals(EFFECT_HEADER_STATE | EFFECT_HEADER_OFFSET, mMachine.onMove(Y_PULL, 0));
+        assertEquals(PULL_TO_REFRESH, mMachine.getHeadState());
+    }
+
+    @Test
+    public void footerClickIsIgnoredWhileRefreshing() {
+        mMachine.setCanLoadMore(true);
+        mMachine.startRefreshing();
+        assertEquals(EFFECT_NONE, mMachine.onFooterClick());
+        assertEquals(FOOTER_AUTO_LOAD_DONE, mMachine.getFooterState());
+
+        assertEquals(EFFECT_HEADER_STATE, mMachine.onRefreshFinished());
+        assertEquals(-HEADER_HEIGHT, mMachine.getHeaderPaddingTop());
+        assertEquals(EFFECT_LOAD_MORE, mMachine.onFooterClick());
+        assertEquals(EFFECT_NONE, mMachine.onFooterClick());
+        assertEquals(EFFECT_FOOTER_STATE, mMachine.onLoadMoreFinished());
+        assertEquals(FOOTER_AUTO_LOAD_DONE, mMachine.getFooterState());
+    }
+
+    /**
+     * 列表没有滚动到顶部时不记录起点，滚到顶部后从那里开始算下拉距离
+     */
+    @Test
+    public void pullStartsWhenTheFirstItemBecomesVisible() {
+        mMachine.onDown(0, 5);
+        assertEquals(EFFECT_NONE, mMachine.onMove(Y_PULL, 5));
+        assertEquals(false, mMachine.isRecored());
+        assertEquals(EFFECT_NONE, mMachine.onMove(Y_PULL, 0));
+        assertEquals(HEADER_REFRESHING_DONE, mMachine.getHeadState());
+        assertEquals(EFFECT_HEADER_STATE | EFFECT_HEADER_OFFSET, mMachine.onMove(Y_PULL + Y_PULL, 0));
+        assertEquals(10 - HEADER_HEIGHT, mMachine.getHeaderPaddingTop());
+    }
+}
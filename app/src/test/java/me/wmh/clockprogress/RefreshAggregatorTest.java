@@ -0,0 +1,192 @@
+package me.wmh.clockprogress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 多数据源并行刷新：并行请求、超时、部分结果
+ */
+public class RefreshAggregatorTest {
+
+    private ExecutorService mExecutor;
+    private RefreshAggregator mAggregator;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(4);
+        mAggregator = new RefreshAggregator(null);
+        mAggregator.setExecutor(mExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private static Callable<String> sleeping(final String value, final long millis) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(millis);
+                return value;
+            }
+        };
+    }
+
+    private static Callable<String> failing(final long millis) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(millis);
+                throw new IllegalStateException("boom");
+            }
+        };
+    }
+
+    @Test
+    public void sourcesRunInParallel() throws Exception {
+        mAggregator.addSource("a", sleeping("A", 200));
+        mAggregator.addSource("b", sleeping("B", 200));
+        mAggregator.addSource("c", sleeping("C", 200));
+        RefreshAggregator.Result result = mAggregator.onCreateRefreshTask().call();
+        assertTrue(result.isComplete());
+        assertEquals("B", result.<String>getValue("b"));
+        // 串行需要600ms
+        assertTrue(result.getElapsedNanos() < TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(result.get("a").getLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void optionalTimeoutGivesPartialResult() throws Exception {
+        mAggregator.addSource("fast", sleeping("F", 10), 1000, true);
+        mAggregator.addSource("slow", sleeping("S", 5000), 100, false);
+        RefreshAggregator.Result result = mAggregator.onCreateRefreshTask().call();
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getSucceededCount());
+        assertTrue(result.get("slow").isTimedOut());
+        assertNull(result.getValue("slow"));
+        assertTrue(result.getElapsedNanos() < TimeUnit.MILLISECONDS.toNanos(1000));
+    }
+
+    @Test
+    public void timeoutStartsWhenTheSourceStartsRunning() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            mAggregator.setExecutor(single);
+            mAggregator.addSource("first", sleeping("F", 200), 1000, false);
+            // 在唯一的线程后面排队200ms，从开始执行算起不会超时
+            mAggregator.addSource("queued", sleeping("Q", 50), 150, false);
+            RefreshAggregator.Result result = mAggregator.onCreateRefreshTask().call();
+            assertTrue(result.isComplete());
+            assertEquals("Q", result.<String>getValue("queued"));
+            // 耗时不包括排队的时间
+            assertTrue(result.get("queued").getLatencyNanos() < TimeUnit.MILLISECONDS.toNanos(150));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    /**
+     * 不响应中断的数据源超时后仍然占着唯一的线程，排在后面的数据源永远不会开始；排队超过上限后整个刷新也要结束
+     */
+    @Test
+    public void saturatedPoolStillFinishes() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            mAggregator.setExecutor(single);
+            mAggregator.setMaxQueueWaitMs(300);
+            mAggregator.addSource("hung", new Callable<String>() {
+                @Override
+                public String call() {
+                    while (true) {
+                        try {
+                            release.await();
+                            return "H";
+                        } catch (InterruptedException e) {
+                            // 忽略中断，模拟卡住的网络请求
+                        }
+                    }
+                }
+            }, 100, false);
+            mAggregator.addSource("queued", sleeping("Q", 0), 1000, false);
+            long start = System.nanoTime();
+            try {
+                mAggregator.onCreateRefreshTask().call();
+                fail();
+            } catch (RefreshAggregator.AggregateException e) {
+                RefreshAggregator.Result result = e.getResult();
+                assertTrue(result.get("hung").isTimedOut());
+                assertTrue(result.get("hung").isStarted());
+                assertTrue(result.get("queued").isTimedOut());
+                assertFalse(result.get("queued").isStarted());
+            }
+            long elapsed = System.nanoTime() - start;
+            assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(300));
+            assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(1000));
+        } finally {
+            release.countDown();
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void requiredFailureFailsFastAndCancelsTheRest() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        mAggregator.addSource("main", failing(20), 1000, true);
+        mAggregator.addSource("extra", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return "E";
+            }
+        }, 10000, false);
+        long start = System.nanoTime();
+        try {
+            mAggregator.onCreateRefreshTask().call();
+            fail();
+        } catch (RefreshAggregator.AggregateException e) {
+            RefreshAggregator.Result result = e.getResult();
+            assertFalse(result.get("main").isSucceeded());
+            assertTrue(result.get("extra").isCancelled());
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void allOptionalFailedIsAnError() throws Exception {
+        mAggregator.addSource("a", failing(0));
+        mAggregator.addSource("b", failing(0));
+        try {
+            mAggregator.onCreateRefreshTask().call();
+            fail();
+        } catch (RefreshAggregator.AggregateException e) {
+            assertEquals(0, e.getResult().getSucceededCount());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateNameIsRejected() {
+        mAggregator.addSource("a", sleeping("A", 0));
+        mAggregator.addSource("a", sleeping("A", 0));
+    }
+}
@@ -0,0 +1,71 @@
+package me.wmh.clockprogress;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 刷新去重和新鲜度：进行中合并，有效期内不请求
+ */
+public class RefreshGateTest {
+
+    @Test
+    public void triggersWhileInFlightAreCoalesced() {
+        RefreshGate gate = new RefreshGate();
+        assertEquals(RefreshGate.START, gate.onTrigger(1000, 0, false));
+        assertEquals(RefreshGate.COALESCE, gate.onTrigger(1001, 0, false));
+        assertEquals(RefreshGate.COALESCE, gate.onTrigger(1002, 0, true));
+        gate.onFinished();
+        assertFalse(gate.isInFlight());
+        assertEquals(RefreshGate.START, gate.onTrigger(1003, 0, false));
+        assertEquals(2, gate.getStartedCount());
+        assertEquals(2, gate.getCoalescedCount());
+    }
+
+    @Test
+    public void withoutTtlEveryTriggerStarts() {
+        RefreshGate gate = new RefreshGate();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(RefreshGate.START, gate.onTrigger(1000 + i, 999, false));
+            gate.onFinished();
+        }
+        assertEquals(0, gate.getSuppressedCount());
+    }
+
+    @Test
+    public void freshDataIsSuppressedUnlessForced() {
+        RefreshGate gate = new RefreshGate();
+        gate.setTtlMillis(5000);
+        assertEquals(RefreshGate.SUPPRESS, gate.onTrigger(12000, 10000, false));
+        assertFalse(gate.isInFlight());
+        assertEquals(RefreshGate.START, gate.onTrigger(12000, 10000, true));
+        gate.onFinished();
+        // 刚好过期
+        assertEquals(RefreshGate.START, gate.onTrigger(15000, 10000, false));
+        gate.onFinished();
+        assertEquals(1, gate.getSuppressedCount());
+        assertEquals(2, gate.getStartedCount());
+    }
+
+    @Test
+    public void clockMovedBackIsNotFresh() {
+        RefreshGate gate = new RefreshGate();
+        gate.setTtlMillis(5000);
+        assertFalse(gate.isFresh(9000, 10000));
+        assertFalse(gate.isFresh(10000, 0));
+        assertTrue(gate.isFresh(10000, 10000));
+    }
+
+    @Test
+    public void resetCountsKeepsInFlight() {
+        RefreshGate gate = new RefreshGate();
+        gate.onTrigger(0, 0, false);
+        gate.onTrigger(1, 0, false);
+        gate.resetCounts();
+        assertEquals(0, gate.getStartedCount());
+        assertEquals(0, gate.getCoalescedCount());
+        assertTrue(gate.isInFlight());
+    }
+}
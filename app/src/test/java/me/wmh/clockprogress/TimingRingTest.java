@@ -0,0 +1,77 @@
+package me.wmh.clockprogress;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 分位数按最近的样本计算，超过预算的计数和最大值按记录过的全部样本
+ */
+public class TimingRingTest {
+
+    private static final float[] PERCENTILES = {50f, 90f, 95f, 99f};
+    private static final long BUDGET = 100;
+
+    @Test
+    public void percentilesOfShuffledSamples() {
+        TimingRing ring = new TimingRing(100, BUDGET);
+        // 1..100，乱序加入
+        for (int i = 0; i < 100; i++) {
+            ring.add((i * 37) % 100 + 1);
+        }
+        long[] out = new long[PERCENTILES.length];
+        ring.percentiles(PERCENTILES, out);
+        assertArrayEquals(new long[]{50, 90, 95, 99}, out);
+        assertEquals(100, ring.getMaxNanos());
+        assertEquals(100, ring.getSize());
+    }
+
+    @Test
+    public void onlySamplesAboveTheBudgetCount() {
+        TimingRing ring = new TimingRing(8, BUDGET);
+        ring.add(BUDGET - 1);
+        ring.add(BUDGET);
+        ring.add(BUDGET + 1);
+        ring.add(3 * BUDGET);
+        assertEquals(4, ring.getTotalCount());
+        assertEquals(2, ring.getOverBudgetCount());
+
+        ring.setBudgetNanos(2 * BUDGET);
+        ring.add(BUDGET + 1);
+        assertEquals(2, ring.getOverBudgetCount());
+    }
+
+    @Test
+    public void wrapsToTheMostRecentSamples() {
+        TimingRing ring = new TimingRing(4, BUDGET);
+        ring.add(1000);
+        for (int i = 1; i <= 8; i++) {
+            ring.add(i);
+        }
+        long[] out = new long[PERCENTILES.length];
+        ring.percentiles(PERCENTILES, out);
+        // 只保留5..8，最早的1000已经被覆盖
+        assertArrayEquals(new long[]{6, 8, 8, 8}, out);
+        assertEquals(4, ring.getSize());
+        assertEquals(9, ring.getTotalCount());
+        assertEquals(1, ring.getOverBudgetCount());
+        assertEquals(1000, ring.getMaxNanos());
+    }
+
+    @Test
+    public void emptyAndReset() {
+        TimingRing ring = new TimingRing(4, BUDGET);
+        long[] out = {-1, -1, -1, -1};
+        ring.percentiles(PERCENTILES, out);
+        assertArrayEquals(new long[]{0, 0, 0, 0}, out);
+
+        ring.add(3 * BUDGET);
+        ring.reset();
+        ring.percentiles(PERCENTILES, out);
+        assertArrayEquals(new long[]{0, 0, 0, 0}, out);
+        assertEquals(0, ring.getTotalCount());
+        assertEquals(0, ring.getOverBudgetCount());
+        assertEquals(0, ring.getMaxNanos());
+    }
+}
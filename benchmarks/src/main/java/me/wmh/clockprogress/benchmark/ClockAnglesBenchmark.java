@@ -0,0 +1,58 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.ClockAngles;
+
+/**
+ * setClockByPaddingTop中下拉距离到秒针角度的换算
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockAnglesBenchmark {
+
+    /**
+     * HeadView的高度(像素)
+     */
+    private static final int HEADER_HEIGHT = 120;
+
+    @Param({"0", "1", "6"})
+    public float resolution;
+
+    private double ratio;
+    private int padding;
+
+    @Setup
+    public void setUp() {
+        ratio = ClockAngles.ratioFor(-HEADER_HEIGHT);
+        padding = -HEADER_HEIGHT;
+    }
+
+    /**
+     * 模拟下拉过程中每次onScroll的换算
+     */
+    @Benchmark
+    public float pullDegree() {
+        padding++;
+        if (padding >= 0) {
+            padding = -HEADER_HEIGHT + 1;
+        }
+        return ClockAngles.pullDegree(ratio, -HEADER_HEIGHT, padding, resolution);
+    }
+}
@@ -0,0 +1,51 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.ClockKinematics;
+
+/**
+ * 自动转动时每帧的表针角度计算(原来Handler中的更新)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockKinematicsBenchmark {
+
+    /**
+     * 60Hz下一帧的时长
+     */
+    private static final long FRAME_NANOS = 16666667L;
+
+    private final ClockKinematics kinematics = new ClockKinematics();
+    private long now;
+
+    @Setup
+    public void setUp() {
+        now = 0;
+        kinematics.start(now);
+    }
+
+    @Benchmark
+    public void updateOneFrame(Blackhole blackhole) {
+        now += FRAME_NANOS;
+        kinematics.update(now);
+        blackhole.consume(kinematics.getSecondDegree());
+        blackhole.consume(kinematics.getMinuteDegree());
+    }
+}
@@ -0,0 +1,53 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.LastUpdatedLabel;
+
+/**
+ * "上次更新"文字：缓存与每次new SimpleDateFormat的对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LastUpdatedLabelBenchmark {
+
+    private static final String PATTERN = "yyyy-MM-dd HH:mm";
+
+    private final LastUpdatedLabel label = new LastUpdatedLabel("上次更新:", PATTERN);
+    private long time = 1420070400000L;
+
+    /**
+     * 每次前进1秒，大部分调用在同一分钟内
+     */
+    @Benchmark
+    public String cachedLabel() {
+        time += 1000;
+        return label.format(time);
+    }
+
+    /**
+     * 原来的写法
+     */
+    @Benchmark
+    public String newFormatter() {
+        time += 1000;
+        return "上次更新:" + new SimpleDateFormat(PATTERN, Locale.CHINA).format(new Date(time));
+    }
+}
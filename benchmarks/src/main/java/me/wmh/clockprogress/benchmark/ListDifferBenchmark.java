@@ -0,0 +1,72 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.ListDiffer;
+
+/**
+ * 刷新结果与旧数据的比较
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListDifferBenchmark {
+
+    private static final ListDiffer.ItemCallback<String> CALLBACK = new ListDiffer.ItemCallback<String>() {
+        @Override
+        public long getItemStableId(String item) {
+            return Long.parseLong(item.substring(0, item.indexOf(':')));
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    @Param({"100", "1000"})
+    public int size;
+
+    private List<String> oldItems;
+    private List<String> newItems;
+
+    /**
+     * 新数据在顶部插入10条，每10条修改1条
+     */
+    @Setup
+    public void setUp() {
+        oldItems = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            oldItems.add(i + ":item");
+        }
+        newItems = new ArrayList<String>(size + 10);
+        for (int i = 0; i < 10; i++) {
+            newItems.add((size + i) + ":item");
+        }
+        for (int i = 0; i < size; i++) {
+            newItems.add(i % 10 == 0 ? i + ":changed" : oldItems.get(i));
+        }
+    }
+
+    @Benchmark
+    public ListDiffer.Result<String> diff() {
+        return ListDiffer.diff(oldItems, newItems, CALLBACK);
+    }
+}
@@ -0,0 +1,59 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.LoadMorePrefetcher;
+
+/**
+ * 滚动过程中每次onScroll的加载更多判断
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoadMorePrefetcherBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private final LoadMorePrefetcher prefetcher = new LoadMorePrefetcher();
+    private int count;
+    private int lastIndex;
+
+    @Setup
+    public void setUp() {
+        prefetcher.setPrefetchDistance(5);
+        count = PAGE_SIZE;
+        lastIndex = 0;
+    }
+
+    /**
+     * 一直向下滚动，到达预加载位置时加载一页并立即完成
+     */
+    @Benchmark
+    public boolean scrollStep() {
+        lastIndex++;
+        boolean load = prefetcher.shouldLoadMore(lastIndex, count, false);
+        if (load) {
+            int cursor = prefetcher.begin(count);
+            count += PAGE_SIZE;
+            prefetcher.complete(cursor);
+        }
+        if (count > 100000) {
+            setUp();
+        }
+        return load;
+    }
+}
@@ -0,0 +1,87 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.PageStore;
+
+/**
+ * 分页缓存的查找、可见范围变化和释放
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PageStoreBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int VISIBLE_ITEMS = 10;
+
+    @Param({"50", "500"})
+    public int pageCount;
+
+    private PageStore<Integer> store;
+    private List<List<Integer>> pages;
+    private int first;
+
+    @Setup
+    public void setUp() {
+        pages = new ArrayList<List<Integer>>(pageCount);
+        store = new PageStore<Integer>();
+        // 重新加载请求直接用原来的数据完成
+        store.setListener(new PageStore.Listener() {
+            @Override
+            public void onPageEvicted(int pageIndex) {
+            }
+
+            @Override
+            public void onPageReloadRequested(int pageIndex) {
+                store.setPageItems(store.getGeneration(), pageIndex, pages.get(pageIndex));
+            }
+        });
+        store.setMaxResidentItems(PAGE_SIZE * 5);
+        for (int p = 0; p < pageCount; p++) {
+            List<Integer> page = new ArrayList<Integer>(PAGE_SIZE);
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                page.add(p * PAGE_SIZE + i);
+            }
+            pages.add(page);
+            store.appendPage(page);
+        }
+        first = 0;
+    }
+
+    @Benchmark
+    public Integer getItem() {
+        first = (first + 7) % store.getCount();
+        return store.getItem(first);
+    }
+
+    /**
+     * 一直向下滚动，每次移动一行，到底后回到顶部
+     */
+    @Benchmark
+    public int scrollStep() {
+        first++;
+        if (first + VISIBLE_ITEMS >= store.getCount()) {
+            first = 0;
+        }
+        store.onVisibleRangeChanged(first, first + VISIBLE_ITEMS - 1);
+        return store.getResidentItemCount();
+    }
+}
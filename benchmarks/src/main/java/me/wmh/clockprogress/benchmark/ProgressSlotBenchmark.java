@@ -0,0 +1,51 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.ProgressSlot;
+
+/**
+ * 多个工作线程频繁setProgress，一个线程模拟UI线程取值
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ProgressSlotBenchmark {
+
+    private final ProgressSlot slot = new ProgressSlot();
+
+    private float value;
+
+    @Benchmark
+    @Group("progress")
+    @GroupThreads(3)
+    public boolean offer() {
+        value += 0.001f;
+        if (value > 1f) {
+            value = 0f;
+        }
+        return slot.offer(value);
+    }
+
+    @Benchmark
+    @Group("progress")
+    @GroupThreads(1)
+    public float take() {
+        return slot.take();
+    }
+}
@@ -0,0 +1,82 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.PullStateMachine;
+
+/**
+ * 下拉刷新和加载更多的状态变化(原来onTouchEvent/onScrollStateChanged中的判断)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PullStateMachineBenchmark {
+
+    private static final int HEADER_HEIGHT = 120;
+
+    /**
+     * 一次完整下拉的移动次数，拉到松手刷新的距离再推回一半
+     */
+    private static final int MOVES_PER_GESTURE = 100;
+
+    private final PullStateMachine machine = new PullStateMachine();
+    private int move;
+
+    @Setup
+    public void setUp() {
+        machine.setHeaderHeight(HEADER_HEIGHT);
+        machine.setCanRefresh(true);
+        machine.setCanLoadMore(true);
+        move = 0;
+    }
+
+    /**
+     * 每次调用处理一个触摸事件：按下、移动若干次、松手、刷新完成
+     */
+    @Benchmark
+    public int pullGesture() {
+        int effects;
+        if (move == 0) {
+            effects = machine.onDown(0, 0);
+        } else if (move <= MOVES_PER_GESTURE) {
+            int half = MOVES_PER_GESTURE / 2;
+            int distance = move <= half ? move : MOVES_PER_GESTURE - move + half / 2;
+            effects = machine.onMove(distance * HEADER_HEIGHT * PullStateMachine.RATIO * 3 / (2 * half), 0);
+        } else if (move == MOVES_PER_GESTURE + 1) {
+            effects = machine.onUp();
+        } else {
+            effects = machine.onRefreshFinished();
+            move = -1;
+        }
+        move++;
+        return effects;
+    }
+
+    /**
+     * 滚动过程中的加载更多判断，每32次到达底部一次并立即完成
+     */
+    @Benchmark
+    public int loadMoreCheck() {
+        move++;
+        boolean reachedEnd = (move & 31) == 0;
+        int effects = machine.onLoadMoreCheck(reachedEnd, false);
+        if ((effects & PullStateMachine.EFFECT_LOAD_MORE) != 0) {
+            machine.onLoadMoreFinished();
+        }
+        return effects;
+    }
+}
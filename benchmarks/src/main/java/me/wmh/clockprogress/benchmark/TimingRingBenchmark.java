@@ -0,0 +1,46 @@
+package me.wmh.clockprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import me.wmh.clockprogress.TimingRing;
+
+/**
+ * 耗时统计的记录和分位数计算
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimingRingBenchmark {
+
+    private static final float[] PERCENTILES = {50f, 90f, 95f, 99f};
+
+    private final TimingRing ring = new TimingRing(256, 16666667L);
+    private final long[] out = new long[PERCENTILES.length];
+    private long sample;
+
+    @Benchmark
+    public void add() {
+        sample = (sample + 1234567L) % 30000000L;
+        ring.add(sample);
+    }
+
+    @Benchmark
+    public long[] percentiles() {
+        ring.add(sample++);
+        ring.percentiles(PERCENTILES, out);
+        return out;
+    }
+}